@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
  *
  * This file is part of Liber Server.
  *
@@ -19,14 +19,335 @@
 
 package org.liber.config;
 
+import lombok.Data;
+import org.liber.utils.CompressionUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Properties specific to Liber.
  * <p>
  * Properties are configured in the {@code application.yml} file.
  * See {@link io.github.jhipster.config.JHipsterProperties} for a good example.
  */
+@Data
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Security security = new Security();
+
+    private final Analytics analytics = new Analytics();
+
+    private final ReportContent reportContent = new ReportContent();
+
+    private final ReportPdf reportPdf = new ReportPdf();
+
+    private final ChangeFeed changeFeed = new ChangeFeed();
+
+    private final Sync sync = new Sync();
+
+    private final Threads threads = new Threads();
+
+    private final Startup startup = new Startup();
+
+    private final Tenancy tenancy = new Tenancy();
+
+    private final Duplicates duplicates = new Duplicates();
+
+    private final Purge purge = new Purge();
+
+    private final Archive archive = new Archive();
+
+    private final ReportPartitions reportPartitions = new ReportPartitions();
+
+    private final Invalidation invalidation = new Invalidation();
+
+    @Data
+    public static class Security {
+
+        private final LoginThrottle loginThrottle = new LoginThrottle();
+
+        private final PasswordHashing passwordHashing = new PasswordHashing();
+
+        private final BasicAuthenticationCache basicAuthenticationCache = new BasicAuthenticationCache();
+
+        private final TokenRevocation tokenRevocation = new TokenRevocation();
+    }
+
+    /**
+     * Limits for failed attempts on {@code /api/authenticate}. Failures decay exponentially, so a blocked
+     * login or address is released again once its failures decay to one less than the limit.
+     */
+    @Data
+    public static class LoginThrottle {
+
+        private boolean enabled = true;
+
+        private int maxFailuresPerLogin = 5;
+
+        private int maxFailuresPerIp = 20;
+
+        private long halfLifeSeconds = 300;
+
+        private int stripes = 64;
+
+        private int entriesPerStripe = 64;
+    }
+
+    /**
+     * Bounds for the executor running the password hashing, which is CPU bound and must not starve the
+     * request threads.
+     */
+    @Data
+    public static class PasswordHashing {
+
+        private int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        private int queueCapacity = 64;
+
+        private long timeoutMillis = 10000;
+    }
+
+    /**
+     * Short-lived cache of successful HTTP Basic authentications, so scripts calling the API repeatedly do not
+     * pay a database lookup and a password hash on every request.
+     */
+    @Data
+    public static class BasicAuthenticationCache {
+
+        private boolean enabled = true;
+
+        private long timeToLiveSeconds = 60;
+
+        private int maxEntries = 1000;
+    }
+
+    /**
+     * Revoked tokens are checked in memory; every instance reads the revocations made since its last refresh,
+     * looking {@code overlapSeconds} back to catch transactions committed late.
+     */
+    @Data
+    public static class TokenRevocation {
+
+        private long refreshMillis = 5000;
+
+        private long overlapSeconds = 60;
+
+        private String cleanupCron = "0 15 4 * * ?";
+    }
+
+    /**
+     * The drug use aggregates are kept up to date on every anamnesis change; the scheduled rebuild moves
+     * patients to their current age band and repairs any drift.
+     */
+    @Data
+    public static class Analytics {
+
+        private String rebuildCron = "0 30 3 * * ?";
+    }
+
+    /**
+     * Opt-in compressed storage of the report content. Content of at least {@code thresholdBytes} UTF-8 bytes is
+     * compressed in the application, which also cuts the bytes sent between the database and the application.
+     */
+    @Data
+    public static class ReportContent {
+
+        private boolean compressionEnabled = false;
+
+        private CompressionUtils.Codec codec = CompressionUtils.Codec.ZSTD;
+
+        private int thresholdBytes = 8192;
+
+        private int migrationBatchSize = 100;
+    }
+
+    /**
+     * Rendering of reports to PDF. Renders run on their own bounded executor; a request waits up to
+     * {@code latencyBudgetMillis} and otherwise gets a job to poll. Rendered files are kept in
+     * {@code cacheDirectory}, least recently used first out once {@code cacheMaxBytes} is exceeded.
+     */
+    @Data
+    public static class ReportPdf {
+
+        private String cacheDirectory = System.getProperty("java.io.tmpdir") + "/liber-report-pdf";
+
+        private long cacheMaxBytes = 512L * 1024 * 1024;
+
+        private int poolSize = 2;
+
+        private int queueCapacity = 32;
+
+        private long latencyBudgetMillis = 2000;
+    }
+
+    /**
+     * Server-sent change feed. The last {@code replayBufferSize} events are kept for clients resuming with
+     * {@code Last-Event-ID}; a client with more than {@code subscriberQueueCapacity} events waiting is disconnected
+     * and resumes from the buffer when it reconnects.
+     */
+    @Data
+    public static class ChangeFeed {
+
+        private int replayBufferSize = 1000;
+
+        private int subscriberQueueCapacity = 256;
+
+        private int maxSubscribers = 500;
+
+        private int senderThreads = 2;
+
+        private long heartbeatMillis = 15000;
+
+        private long timeoutMillis = 30L * 60 * 1000;
+    }
+
+    /**
+     * Delta sync of offline-capable clients. Each sync starts {@code overlapSeconds} before the end of the previous
+     * one, so rows of transactions that committed after it read their window are not missed. Tombstones are kept
+     * for {@code tombstoneRetentionDays}; a client syncing from further back gets everything again.
+     */
+    @Data
+    public static class Sync {
+
+        private int pageSize = 500;
+
+        private long overlapSeconds = 120;
+
+        private int tombstoneRetentionDays = 90;
+    }
+
+    /**
+     * Threads running requests, {@code @Async} tasks and scheduled jobs. {@code VIRTUAL} runs them on virtual threads
+     * and needs Java 21 or later; database connections are then handed out through a semaphore sized like the pool.
+     */
+    @Data
+    public static class Threads {
+
+        private Mode mode = Mode.PLATFORM;
+
+        public enum Mode {
+            PLATFORM, VIRTUAL
+        }
+    }
+
+    /**
+     * Startup under the {@code fast-start} profile. The beans in {@code lazyBeans} are created on first use instead
+     * of at startup; a bean some eager bean depends on is still created with it.
+     */
+    @Data
+    public static class Startup {
+
+        private List<String> lazyBeans = new ArrayList<>();
+    }
+
+    /**
+     * Schema per tenant, to serve several clinics from one process and one connection pool. Each of {@code tenants}
+     * names a PostgreSQL schema, created and migrated at startup next to {@code defaultSchema}, which stays the
+     * schema of the {@code default} tenant. A request works on the tenant of its token, or before logging in on the
+     * one of its {@code X-Tenant} header.
+     */
+    @Data
+    public static class Tenancy {
+
+        private boolean enabled = false;
+
+        private String defaultSchema = "public";
+
+        private List<String> tenants = new ArrayList<>();
+    }
+
+    /**
+     * Duplicate patient detection. Pairs sharing a blocking key are scored from {@code 0} to {@code 100} and kept
+     * for review from {@code minScore}; keys shared by more than {@code maxBlockSize} patients are ignored. Every
+     * patient is checked again on {@code detectCron}, and each one as it is saved.
+     */
+    @Data
+    public static class Duplicates {
+
+        private int minScore = 70;
+
+        private int maxBlockSize = 100;
+
+        private String detectCron = "0 0 2 * * ?";
+    }
+
+    /**
+     * Removal of patients with everything recorded about them. Purges run one at a time on a background thread, at
+     * most {@code queueCapacity} waiting, and delete {@code batchSize} patients per transaction. With
+     * {@code retentionYears} above {@code 0}, the patients with nothing recorded for that long are purged on
+     * {@code retentionCron}.
+     */
+    @Data
+    public static class Purge {
+
+        private int batchSize = 100;
+
+        private int queueCapacity = 16;
+
+        private int retentionYears = 0;
+
+        private String retentionCron = "0 0 5 * * ?";
+    }
+
+    /**
+     * Archival of the finished hospitalizations and of the reports unchanged for {@code ageYears}, {@code 0} to keep
+     * everything in the main tables. They are moved on {@code cron}, {@code batchSize} rows per transaction with a
+     * pause of {@code pauseMillis} in between.
+     */
+    @Data
+    public static class Archive {
+
+        private int ageYears = 0;
+
+        private int batchSize = 500;
+
+        private long pauseMillis = 200;
+
+        private String cron = "0 30 3 * * ?";
+    }
+
+    /**
+     * Range partitions of the {@code report} table by creation date, a month or a year each as {@code interval}
+     * says. On {@code cron}, the partitions for the current interval and the {@code ahead} ones after it are created.
+     */
+    @Data
+    public static class ReportPartitions {
+
+        private Interval interval = Interval.MONTH;
+
+        private int ahead = 3;
+
+        private String cron = "0 0 4 * * ?";
+
+        public enum Interval {
+            MONTH, YEAR
+        }
+    }
+
+    /**
+     * Invalidation of the local caches of every instance. Evictions are sent to the other instances every
+     * {@code coalesceMillis}, a cache of a tenant being evicted whole above {@code maxKeysPerCache} keys. The
+     * {@code POSTGRES} transport uses {@code NOTIFY} on {@code channel}, reconnecting after {@code reconnectMillis};
+     * {@code LOCAL} stays within the JVM.
+     */
+    @Data
+    public static class Invalidation {
+
+        private Transport transport = Transport.POSTGRES;
+
+        private String channel = "liber_invalidation";
+
+        private long coalesceMillis = 100;
+
+        private int maxKeysPerCache = 256;
+
+        private long reconnectMillis = 5000;
+
+        public enum Transport {
+            POSTGRES, LOCAL
+        }
+    }
 }
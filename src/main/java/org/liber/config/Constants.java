@@ -32,6 +32,8 @@ public final class Constants {
     public static final String DEFAULT_LANGUAGE = "en";
     public static final String ANONYMOUS_USER = "anonymoususer";
 
+    public static final String SPRING_PROFILE_FAST_START = "fast-start";
+
     private Constants() {
     }
 }
@@ -22,16 +22,33 @@ package org.liber.config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.repository.config.BootstrapMode;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 
 @Configuration
-@EnableJpaRepositories("org.liber.domain.repository")
 @EnableJpaAuditing(auditorAwareRef = "springSecurityAuditorAware")
 @EnableTransactionManagement
 public class DatabaseConfiguration {
 
     private final Logger log = LoggerFactory.getLogger(DatabaseConfiguration.class);
+
+    @Configuration
+    @Profile("!" + Constants.SPRING_PROFILE_FAST_START)
+    @EnableJpaRepositories("org.liber.domain.repository")
+    static class RepositoryConfiguration {
+    }
+
+    /*
+     * Repositories are only initialized once the context is refreshed, so Hibernate can boot in the background until
+     * then, see StartupConfiguration.
+     */
+    @Configuration
+    @Profile(Constants.SPRING_PROFILE_FAST_START)
+    @EnableJpaRepositories(value = "org.liber.domain.repository", bootstrapMode = BootstrapMode.DEFERRED)
+    static class DeferredRepositoryConfiguration {
+    }
 }
@@ -70,6 +70,9 @@ public class LiquibaseConfiguration {
         liquibase.setTestRollbackOnUpdate(liquibaseProperties.isTestRollbackOnUpdate());
         if (env.acceptsProfiles(Profiles.of(JHipsterConstants.SPRING_PROFILE_NO_LIQUIBASE))) {
             liquibase.setShouldRun(false);
+        } else if (env.getProperty("application.tenancy.enabled", Boolean.class, false)) {
+            liquibase.setShouldRun(false);
+            log.debug("Liquibase runs per tenant, see TenancyConfiguration");
         } else {
             liquibase.setShouldRun(liquibaseProperties.isEnabled());
             log.debug("Configuring Liquibase");
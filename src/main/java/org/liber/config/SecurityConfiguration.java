@@ -19,12 +19,17 @@
 
 package org.liber.config;
 
+import org.liber.config.tenancy.TenantFilter;
+import org.liber.config.tenancy.TenantRegistry;
 import org.liber.security.*;
 import org.liber.security.jwt.*;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
@@ -34,6 +39,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
 import org.springframework.web.filter.CorsFilter;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
@@ -48,15 +54,30 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     private final CorsFilter corsFilter;
     private final SecurityProblemSupport problemSupport;
 
-    public SecurityConfiguration(TokenProvider tokenProvider, CorsFilter corsFilter, SecurityProblemSupport problemSupport) {
+    private final BasicAuthenticationCache basicAuthenticationCache;
+
+    private final ObjectProvider<TenantRegistry> tenantRegistry;
+
+    public SecurityConfiguration(TokenProvider tokenProvider, CorsFilter corsFilter, SecurityProblemSupport problemSupport,
+                                 BasicAuthenticationCache basicAuthenticationCache, ObjectProvider<TenantRegistry> tenantRegistry) {
         this.tokenProvider = tokenProvider;
         this.corsFilter = corsFilter;
         this.problemSupport = problemSupport;
+        this.basicAuthenticationCache = basicAuthenticationCache;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    /**
+     * Evaluates the {@code @PreAuthorize} expressions against the authority mask of the principal.
+     */
+    @Bean
+    public static MethodSecurityExpressionHandler methodSecurityExpressionHandler() {
+        return new AuthorityMaskExpressionHandler();
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), applicationProperties.getSecurity().getPasswordHashing(), meterRegistry);
     }
 
     @Override
@@ -103,10 +124,15 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers("/management/prometheus").permitAll()
             .antMatchers("/management/**").hasAuthority(AuthoritiesConstants.ADMIN)
         .and()
-            .httpBasic()
-        .and()
+            .addFilterAt(basicAuthenticationFilter(), BasicAuthenticationFilter.class)
             .apply(securityConfigurerAdapter());
         // @formatter:on
+        // after the JWT filter, which finds the tenant of the token, and before the authentications looking up users
+        tenantRegistry.ifAvailable(registry -> http.addFilterBefore(new TenantFilter(registry), BasicAuthenticationFilter.class));
+    }
+
+    private BasicAuthenticationFilter basicAuthenticationFilter() throws Exception {
+        return new BasicAuthenticationFilter(new CachingAuthenticationManager(authenticationManager(), basicAuthenticationCache), problemSupport);
     }
 
     private JWTConfigurer securityConfigurerAdapter() {
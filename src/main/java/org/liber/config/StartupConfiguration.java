@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryBuilderCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import springfox.documentation.spring.web.plugins.DocumentationPluginsBootstrapper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Startup shortcuts of the {@code fast-start} profile, next to the settings in {@code application-fast-start.yml}.
+ */
+@Configuration
+@Profile(Constants.SPRING_PROFILE_FAST_START)
+public class StartupConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupConfiguration.class);
+
+    /*
+     * Runs before any bean is created, so the properties are bound from the environment directly.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor lazyBeansPostProcessor(Environment environment) {
+        return beanFactory -> {
+            ApplicationProperties.Startup properties = Binder.get(environment)
+                .bind("application.startup", ApplicationProperties.Startup.class)
+                .orElseGet(ApplicationProperties.Startup::new);
+            for (String name : properties.getLazyBeans())
+                if (beanFactory.containsBeanDefinition(name)) {
+                    log.debug("Creating bean {} on first use", name);
+                    beanFactory.getBeanDefinition(name).setLazyInit(true);
+                }
+        };
+    }
+
+    /*
+     * Hibernate boots on the task executor while the rest of the context is created. The repositories, deferred in
+     * DatabaseConfiguration, wait for it when the context is refreshed.
+     */
+    @Bean
+    public EntityManagerFactoryBuilderCustomizer backgroundEntityManagerFactoryBootstrap(@Qualifier("taskExecutor") Executor taskExecutor) {
+        return builder -> builder.setBootstrapExecutor(new TaskExecutorAdapter(taskExecutor));
+    }
+
+    /*
+     * Springfox scans every request mapping when it starts. With its auto-startup off that happens once the
+     * application serves requests, on the task executor.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> apiDocumentationStarter(ObjectProvider<DocumentationPluginsBootstrapper> bootstrapper,
+                                                                             @Qualifier("taskExecutor") Executor taskExecutor) {
+        return event -> bootstrapper.ifAvailable(documentation -> taskExecutor.execute(documentation::start));
+    }
+}
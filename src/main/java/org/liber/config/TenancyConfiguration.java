@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config;
+
+import io.github.jhipster.config.JHipsterConstants;
+import org.hibernate.MultiTenancyStrategy;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.function.StandardSQLFunction;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.type.StandardBasicTypes;
+import org.liber.config.tenancy.TenantConnectionProvider;
+import org.liber.config.tenancy.TenantIdentifierResolver;
+import org.liber.config.tenancy.TenantLiquibase;
+import org.liber.config.tenancy.TenantRegistry;
+import org.liber.config.tenancy.TenantTaskScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import javax.sql.DataSource;
+
+/**
+ * Serves several tenants, each in its own schema, when {@code application.tenancy.enabled} is set; see
+ * {@link ApplicationProperties.Tenancy}.
+ * <p>
+ * Hibernate takes its connections from the {@link TenantConnectionProvider}, over the same pool as before, the
+ * schemas are migrated by the {@link TenantLiquibase} instead of the {@code liquibase} bean, and the
+ * {@code @ForEachTenant} jobs run once per tenant.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.tenancy.enabled", havingValue = "true")
+public class TenancyConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(TenancyConfiguration.class);
+
+    @Bean
+    public TenantRegistry tenantRegistry(ApplicationProperties applicationProperties) {
+        TenantRegistry tenantRegistry = new TenantRegistry(applicationProperties.getTenancy());
+        log.info("Serving tenants {}", tenantRegistry.getTenants());
+        return tenantRegistry;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer tenantHibernatePropertiesCustomizer(DataSource dataSource, TenantRegistry tenantRegistry,
+                                                                             ApplicationProperties applicationProperties) {
+        // extensions are installed once per database, in the default schema, which tenant connections don't search
+        String unaccent = applicationProperties.getTenancy().getDefaultSchema() + ".unaccent";
+        MetadataBuilderContributor functions = builder ->
+            builder.applySqlFunction("unaccent", new StandardSQLFunction(unaccent, StandardBasicTypes.STRING));
+        return properties -> {
+            properties.put(AvailableSettings.MULTI_TENANT, MultiTenancyStrategy.SCHEMA);
+            properties.put(AvailableSettings.MULTI_TENANT_CONNECTION_PROVIDER, new TenantConnectionProvider(dataSource, tenantRegistry));
+            properties.put(AvailableSettings.MULTI_TENANT_IDENTIFIER_RESOLVER, new TenantIdentifierResolver());
+            properties.put(EntityManagerFactoryBuilderImpl.METADATA_BUILDER_CONTRIBUTOR, functions);
+        };
+    }
+
+    @Bean
+    public TenantLiquibase tenantLiquibase(DataSource dataSource, LiquibaseProperties liquibaseProperties, TenantRegistry tenantRegistry,
+                                           ResourceLoader resourceLoader, Environment env) {
+        boolean shouldRun = liquibaseProperties.isEnabled() && !env.acceptsProfiles(Profiles.of(JHipsterConstants.SPRING_PROFILE_NO_LIQUIBASE));
+        return new TenantLiquibase(dataSource, liquibaseProperties, tenantRegistry, resourceLoader, shouldRun);
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(TaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean
+    public SchedulingConfigurer tenantSchedulingConfigurer(ThreadPoolTaskScheduler taskScheduler, TenantRegistry tenantRegistry) {
+        return registrar -> registrar.setTaskScheduler(new TenantTaskScheduler(taskScheduler, tenantRegistry));
+    }
+}
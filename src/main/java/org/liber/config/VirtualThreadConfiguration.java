@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.undertow.Undertow;
+import org.liber.utils.VirtualThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskSchedulingProperties;
+import org.springframework.boot.task.TaskSchedulerCustomizer;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs request handling and scheduled jobs on virtual threads when {@code application.threads.mode} is
+ * {@code VIRTUAL}; the {@code @Async} executor is switched in {@link AsyncConfiguration}. Executors of CPU bound work,
+ * like password hashing and PDF rendering, keep their bounded platform pools.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.threads.mode", havingValue = "virtual")
+public class VirtualThreadConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    @Bean
+    public TaskSchedulerCustomizer virtualThreadTaskSchedulerCustomizer(TaskSchedulingProperties taskSchedulingProperties) {
+        return scheduler -> scheduler.setThreadFactory(VirtualThreadUtils.factory(taskSchedulingProperties.getThreadNamePrefix()));
+    }
+
+    /*
+     * Database connections are the bounded resource behind most requests, so they are rationed before the pool.
+     */
+    @Bean
+    public static BeanPostProcessor boundedDataSourcePostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource))
+                    return bean;
+                HikariDataSource dataSource = (HikariDataSource) bean;
+                // fills in the defaults, like the pool size, which are otherwise only set when the pool starts
+                dataSource.validate();
+                log.debug("Bounding {} to {} concurrent connections", beanName, dataSource.getMaximumPoolSize());
+                return new BoundedDataSource(dataSource, dataSource.getMaximumPoolSize(), dataSource.getConnectionTimeout(),
+                    meterRegistry.getObject());
+            }
+        };
+    }
+
+    @Configuration
+    @ConditionalOnClass(Undertow.class)
+    @ConditionalOnProperty(name = "application.threads.mode", havingValue = "virtual")
+    static class UndertowVirtualThreadConfiguration {
+
+        @Bean
+        public WebServerFactoryCustomizer<UndertowServletWebServerFactory> virtualThreadUndertowCustomizer() {
+            return factory -> factory.addDeploymentInfoCustomizers(deploymentInfo -> deploymentInfo
+                .setExecutor(VirtualThreadUtils.executor("liber-http-"))
+                .setAsyncExecutor(VirtualThreadUtils.executor("liber-http-async-")));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.config.invalidation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.TenantContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcasts the evictions of the local caches to every instance.
+ * <p>
+ * Caches subscribe under their name and publish an eviction when the data behind an entry changes. Once the
+ * transaction commits, the eviction reaches the subscribers of this instance right away and those of the other
+ * instances through the {@link InvalidationTransport}, after at most {@code coalesceMillis}: the evictions published
+ * in the meantime are sent together, repeated ones once, and a cache of a tenant getting more than
+ * {@code maxKeysPerCache} keys is evicted whole instead. When the transport may have missed invalidations, every
+ * subscriber is flushed.
+ */
+@Slf4j
+@Component
+public class InvalidationBus implements InitializingBean, DisposableBean {
+
+    private static final Set<String> WHOLE_CACHE = Collections.emptySet();
+
+    private final InvalidationTransport transport;
+    private final long coalesceMillis;
+    private final int maxKeysPerCache;
+    private final ScheduledExecutorService sender;
+    private final Map<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+    private final Map<Invalidation, Set<String>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    public InvalidationBus(InvalidationTransport transport, ApplicationProperties applicationProperties) {
+        this.transport = transport;
+        this.coalesceMillis = applicationProperties.getInvalidation().getCoalesceMillis();
+        this.maxKeysPerCache = applicationProperties.getInvalidation().getMaxKeysPerCache();
+        this.sender = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("liber-invalidation-"));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        transport.start(this::deliver, this::reset);
+    }
+
+    @Override
+    public void destroy() {
+        sender.shutdownNow();
+        flush();
+        transport.stop();
+    }
+
+    public void subscribe(String cache, InvalidationListener listener) {
+        listeners.computeIfAbsent(cache, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Publishes an eviction of the current tenant once the current transaction commits, or right away without one.
+     *
+     * @param cache the name of the cache.
+     * @param key   the key of the entry, {@code null} to evict every entry of the tenant.
+     */
+    public void publishAfterCommit(String cache, String key) {
+        Invalidation invalidation = new Invalidation(TenantContext.getTenant(), cache, key);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(invalidation);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(invalidation);
+            }
+        });
+    }
+
+    private void publish(Invalidation invalidation) {
+        deliver(Collections.singletonList(invalidation));
+        Invalidation scope = new Invalidation(invalidation.getTenant(), invalidation.getCache(), null);
+        synchronized (pending) {
+            Set<String> keys = pending.get(scope);
+            if (invalidation.getKey() == null || keys != null && keys != WHOLE_CACHE && keys.size() >= maxKeysPerCache)
+                pending.put(scope, WHOLE_CACHE);
+            else if (keys == null)
+                pending.put(scope, new LinkedHashSet<>(Collections.singleton(invalidation.getKey())));
+            else if (keys != WHOLE_CACHE)
+                keys.add(invalidation.getKey());
+            if (!flushScheduled && !sender.isShutdown()) {
+                flushScheduled = true;
+                sender.schedule(this::flush, coalesceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    void flush() {
+        List<Invalidation> invalidations = new ArrayList<>();
+        synchronized (pending) {
+            pending.forEach((scope, keys) -> {
+                if (keys == WHOLE_CACHE)
+                    invalidations.add(scope);
+                else
+                    keys.forEach(key -> invalidations.add(new Invalidation(scope.getTenant(), scope.getCache(), key)));
+            });
+            pending.clear();
+            flushScheduled = false;
+        }
+        if (invalidations.isEmpty())
+            return;
+        try {
+            transport.send(invalidations);
+        } catch (RuntimeException e) {
+            log.warn("Could not send {} cache invalidations: {}", invalidations.size(), e.getMessage());
+        }
+    }
+
+    private void deliver(List<Invalidation> invalidations) {
+        for (Invalidation invalidation : invalidations)
+            for (InvalidationListener listener : listeners.getOrDefault(invalidation.getCache(), Collections.emptyList())) {
+                try {
+                    listener.evict(invalidation.getTenant(), invalidation.getKey());
+                } catch (RuntimeException e) {
+                    log.warn("Could not evict {} from the {} cache: {}", invalidation.getKey(), invalidation.getCache(), e.getMessage());
+                }
+            }
+    }
+
+    private void reset() {
+        log.debug("Flushing the local caches");
+        listeners.forEach((cache, subscribed) -> subscribed.forEach(listener -> {
+            try {
+                listener.evictAll();
+            } catch (RuntimeException e) {
+                log.warn("Could not flush the {} cache: {}", cache, e.getMessage());
+            }
+        }));
+    }
+}
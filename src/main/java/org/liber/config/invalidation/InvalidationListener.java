@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.config.invalidation;
+
+/**
+ * A local cache subscribed to the {@link InvalidationBus}.
+ */
+public interface InvalidationListener {
+
+    /**
+     * Evicts an entry of a tenant.
+     *
+     * @param tenant the tenant.
+     * @param key    the key of the entry, {@code null} to evict every entry of the tenant.
+     */
+    void evict(String tenant, String key);
+
+    /**
+     * Evicts every entry of every tenant, as some invalidations may have been missed.
+     */
+    void evictAll();
+}
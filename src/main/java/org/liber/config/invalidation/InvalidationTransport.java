@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.config.invalidation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidations between the instances of the application.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Starts receiving the invalidations sent by the other instances.
+     *
+     * @param receiver called with each batch received.
+     * @param onReset  called whenever invalidations may have been missed, such as after a reconnection.
+     */
+    void start(Consumer<List<Invalidation>> receiver, Runnable onReset);
+
+    /**
+     * Sends invalidations to the other instances, without waiting for them to be delivered.
+     *
+     * @param invalidations the invalidations.
+     */
+    void send(List<Invalidation> invalidations);
+
+    void stop();
+}
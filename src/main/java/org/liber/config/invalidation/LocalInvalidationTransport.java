@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.config.invalidation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Transport between the buses of one JVM whose transports share a group, for tests and single instances.
+ */
+@Component
+@ConditionalOnProperty(name = "application.invalidation.transport", havingValue = "local")
+public class LocalInvalidationTransport implements InvalidationTransport {
+
+    private final Set<LocalInvalidationTransport> group;
+
+    private volatile Consumer<List<Invalidation>> receiver;
+
+    public LocalInvalidationTransport() {
+        this(ConcurrentHashMap.newKeySet());
+    }
+
+    public LocalInvalidationTransport(Set<LocalInvalidationTransport> group) {
+        this.group = group;
+    }
+
+    @Override
+    public void start(Consumer<List<Invalidation>> receiver, Runnable onReset) {
+        this.receiver = receiver;
+        group.add(this);
+    }
+
+    @Override
+    public void send(List<Invalidation> invalidations) {
+        for (LocalInvalidationTransport member : group)
+            if (member != this)
+                member.receiver.accept(invalidations);
+    }
+
+    @Override
+    public void stop() {
+        group.remove(this);
+    }
+}
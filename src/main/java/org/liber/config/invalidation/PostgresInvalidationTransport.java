@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.config.invalidation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Transport sending invalidations with PostgreSQL {@code NOTIFY} and receiving them with {@code LISTEN}.
+ * <p>
+ * A thread of its own holds a connection outside the pool, as the pooled ones don't auto-commit and are not always
+ * listening. Between waits for notifications, it sends the batches queued, split in payloads under the size limit of
+ * {@code NOTIFY}. Each payload carries the id of the instance, so its own notifications are skipped. After the
+ * connection fails, it reconnects every {@code reconnectMillis}, sends what was queued meanwhile and resets the bus,
+ * as the notifications of the other instances meanwhile are lost. When the queue overflows, it is replaced by a
+ * reset of the other instances.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "application.invalidation.transport", havingValue = "postgres", matchIfMissing = true)
+public class PostgresInvalidationTransport implements InvalidationTransport {
+
+    private static final int MAX_PAYLOAD_BYTES = 7000;
+    private static final int MAX_QUEUED_PAYLOADS = 1000;
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final String channel;
+    private final int pollMillis;
+    private final long reconnectMillis;
+    private final String node = UUID.randomUUID().toString();
+    private final BlockingQueue<String> outgoing = new LinkedBlockingQueue<>(MAX_QUEUED_PAYLOADS);
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresInvalidationTransport(DataSourceProperties dataSourceProperties, ObjectMapper objectMapper, ApplicationProperties applicationProperties) {
+        ApplicationProperties.Invalidation properties = applicationProperties.getInvalidation();
+        if (!CHANNEL.matcher(properties.getChannel()).matches())
+            throw new IllegalArgumentException("Invalid invalidation channel " + properties.getChannel());
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.channel = properties.getChannel();
+        this.pollMillis = (int) Math.max(1, properties.getCoalesceMillis());
+        this.reconnectMillis = properties.getReconnectMillis();
+    }
+
+    @Override
+    public void start(Consumer<List<Invalidation>> receiver, Runnable onReset) {
+        running = true;
+        listener = new Thread(() -> listen(receiver, onReset), "liber-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void send(List<Invalidation> invalidations) {
+        List<Invalidation> payload = new ArrayList<>();
+        int bytes = 0;
+        for (Invalidation invalidation : invalidations) {
+            int size = size(invalidation);
+            if (!payload.isEmpty() && bytes + size > MAX_PAYLOAD_BYTES) {
+                queue(new Message(node, payload, false));
+                payload = new ArrayList<>();
+                bytes = 0;
+            }
+            payload.add(invalidation);
+            bytes += size;
+        }
+        if (!payload.isEmpty())
+            queue(new Message(node, payload, false));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            try {
+                listener.join(pollMillis + 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void queue(Message message) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to encode cache invalidations", e);
+        }
+        if (outgoing.offer(payload))
+            return;
+        log.warn("Too many cache invalidations queued, resetting the other instances instead");
+        outgoing.clear();
+        queue(new Message(node, null, true));
+    }
+
+    private void listen(Consumer<List<Invalidation>> receiver, Runnable onReset) {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("listen " + channel);
+                }
+                onReset.run();
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                try (PreparedStatement notify = connection.prepareStatement("select pg_notify(?, ?)")) {
+                    while (running) {
+                        for (String payload = outgoing.peek(); payload != null; payload = outgoing.peek()) {
+                            notify.setString(1, channel);
+                            notify.setString(2, payload);
+                            notify.execute();
+                            outgoing.remove();
+                        }
+                        PGNotification[] received = notifications.getNotifications(pollMillis);
+                        if (received != null)
+                            for (PGNotification notification : received)
+                                receive(notification.getParameter(), receiver, onReset);
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running)
+                    return;
+                log.warn("Lost the cache invalidation connection, reconnecting in {} ms: {}", reconnectMillis, e.getMessage());
+                try {
+                    Thread.sleep(reconnectMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload, Consumer<List<Invalidation>> receiver, Runnable onReset) {
+        Message message;
+        try {
+            message = objectMapper.readValue(payload, Message.class);
+        } catch (IOException e) {
+            log.warn("Skipping an unreadable cache invalidation: {}", e.getMessage());
+            return;
+        }
+        if (node.equals(message.getNode()))
+            return;
+        if (message.isReset())
+            onReset.run();
+        else
+            receiver.accept(message.getInvalidations());
+    }
+
+    private static int size(Invalidation invalidation) {
+        return 48 + bytes(invalidation.getTenant()) + bytes(invalidation.getCache()) + bytes(invalidation.getKey());
+    }
+
+    private static int bytes(String value) {
+        return value == null ? 4 : 2 * value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * A payload: a batch of invalidations, or a reset of every cache.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Message {
+
+        private String node;
+
+        private List<Invalidation> invalidations;
+
+        private boolean reset;
+    }
+}
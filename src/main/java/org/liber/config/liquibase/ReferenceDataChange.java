@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.liquibase;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Liquibase change running the {@link ReferenceDataLoader} for one data set, e.g.
+ * {@code <customChange class="org.liber.config.liquibase.ReferenceDataChange"><param name="dataSet" value="CITY"/></customChange>}.
+ */
+public class ReferenceDataChange implements CustomTaskChange {
+
+    private String dataSet;
+
+    private int rows;
+
+    public String getDataSet() {
+        return dataSet;
+    }
+
+    public void setDataSet(String dataSet) {
+        this.dataSet = dataSet;
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            // the loader uses unqualified table names, so point the connection at the schema being migrated
+            String schema = connection.getSchema();
+            if (database.getDefaultSchemaName() != null)
+                connection.setSchema(database.getDefaultSchemaName());
+            try {
+                rows = new ReferenceDataLoader(connection).load(ReferenceDataLoader.DataSet.valueOf(dataSet));
+            } finally {
+                connection.setSchema(schema);
+            }
+        } catch (SQLException | IOException e) {
+            throw new CustomChangeException("Could not load reference data " + dataSet, e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return rows > 0 ? "Loaded " + rows + " " + dataSet + " rows" : "Reference data " + dataSet + " is up to date";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (Arrays.stream(ReferenceDataLoader.DataSet.values()).noneMatch(value -> value.name().equals(dataSet)))
+            errors.addError("dataSet must be one of " + Arrays.toString(ReferenceDataLoader.DataSet.values()));
+        if (!(database.getConnection() instanceof JdbcConnection))
+            errors.addError("Reference data can only be loaded through a JDBC connection");
+        return errors;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.liquibase;
+
+import liquibase.util.csv.CSVReader;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the country, state and city reference data from the CSV files into the database.
+ * <p>
+ * On PostgreSQL the rows are streamed with {@code COPY FROM STDIN}, straight into the table when it is empty or
+ * through a temporary table and an upsert otherwise; other databases (H2 in tests) get multi-row {@code MERGE}
+ * statements. The checksum of every loaded file is kept in {@code reference_data_load}, so loading a file that did
+ * not change is a no-op. Rows are never deleted, as addresses may still point to them.
+ * <p>
+ * The caller owns the transaction: {@link ReferenceDataChange} runs it inside a Liquibase change set and
+ * {@link #main(String[])} commits after every data set.
+ */
+public class ReferenceDataLoader {
+
+    public static final String DEFAULT_LOCATION = "classpath:config/liquibase/data/";
+
+    private static final int MERGE_ROWS = 500;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(ReferenceDataLoader.class);
+
+    private final Connection connection;
+
+    private final ResourceLoader resourceLoader = new DefaultResourceLoader(ReferenceDataLoader.class.getClassLoader());
+
+    private final String location;
+
+    public enum DataSet {
+        COUNTRY("country", "countries.csv",
+            new Column("id", "id", true), new Column("name", "native", false)),
+        STATE("state", "states.csv",
+            new Column("id", "id", true), new Column("name", "name", false),
+            new Column("country_id", "country_id", true), new Column("abbreviation", "state_code", false)),
+        CITY("city", "cities.csv",
+            new Column("id", "id", true), new Column("name", "name", false),
+            new Column("state_id", "state_id", true));
+
+        private final String table;
+
+        private final String file;
+
+        private final List<Column> columns;
+
+        DataSet(String table, String file, Column... columns) {
+            this.table = table;
+            this.file = file;
+            this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        private String columnList() {
+            return columns.stream().map(column -> column.name).collect(Collectors.joining(", "));
+        }
+
+        private String describe() {
+            return table + columns.stream().map(column -> column.name + "<-" + column.header + (column.numeric ? "#" : ""))
+                .collect(Collectors.joining(",", "(", ")"));
+        }
+    }
+
+    private static final class Column {
+
+        private final String name;
+
+        private final String header;
+
+        private final boolean numeric;
+
+        private Column(String name, String header, boolean numeric) {
+            this.name = name;
+            this.header = header;
+            this.numeric = numeric;
+        }
+    }
+
+    private interface RowHandler {
+
+        void accept(String[] values) throws SQLException, IOException;
+    }
+
+    public ReferenceDataLoader(Connection connection) {
+        this(connection, DEFAULT_LOCATION);
+    }
+
+    /**
+     * @param location Spring resource location of the directory holding the CSV files, e.g. {@code file:/tmp/data/}.
+     */
+    public ReferenceDataLoader(Connection connection, String location) {
+        this.connection = connection;
+        this.location = location.endsWith("/") ? location : location + "/";
+    }
+
+    /**
+     * Loads a data set unless the same file was already loaded.
+     *
+     * @return the number of rows read from the file, or {@code 0} if its checksum matched the last load.
+     */
+    public int load(DataSet dataSet) throws SQLException, IOException {
+        Resource resource = resourceLoader.getResource(location + dataSet.file);
+        String checksum = checksum(dataSet, resource);
+        if (checksum.equals(loadedChecksum(dataSet))) {
+            log.debug("Reference data {} is up to date", dataSet);
+            return 0;
+        }
+        long start = System.nanoTime();
+        int rows = isPostgres() ? copy(dataSet, resource) : merge(dataSet, resource);
+        recordLoad(dataSet, checksum, rows);
+        log.info("Loaded {} {} rows in {} ms", rows, dataSet, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private boolean isPostgres() throws SQLException {
+        return connection.isWrapperFor(PGConnection.class);
+    }
+
+    private int copy(DataSet dataSet, Resource resource) throws SQLException, IOException {
+        boolean empty;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT 1 FROM " + dataSet.table + " LIMIT 1")) {
+            empty = !resultSet.next();
+        }
+        if (empty)
+            return copyInto(dataSet.table, dataSet, resource);
+
+        String stage = "reference_data_stage_" + dataSet.table;
+        String columns = dataSet.columnList();
+        String updates = dataSet.columns.stream().skip(1)
+            .map(column -> column.name + " = EXCLUDED." + column.name).collect(Collectors.joining(", "));
+        String current = dataSet.columns.stream().skip(1)
+            .map(column -> dataSet.table + "." + column.name).collect(Collectors.joining(", ", "(", ")"));
+        String excluded = dataSet.columns.stream().skip(1)
+            .map(column -> "EXCLUDED." + column.name).collect(Collectors.joining(", ", "(", ")"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE " + stage + " (LIKE " + dataSet.table + " INCLUDING DEFAULTS)");
+            int rows = copyInto(stage, dataSet, resource);
+            statement.executeUpdate("INSERT INTO " + dataSet.table + " (" + columns + ") SELECT " + columns + " FROM " + stage
+                + " ON CONFLICT (id) DO UPDATE SET " + updates + " WHERE " + current + " IS DISTINCT FROM " + excluded);
+            statement.execute("DROP TABLE " + stage);
+            return rows;
+        }
+    }
+
+    private int copyInto(String table, DataSet dataSet, Resource resource) throws SQLException, IOException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+            .copyIn("COPY " + table + " (" + dataSet.columnList() + ") FROM STDIN WITH (FORMAT csv)");
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+        try {
+            int rows = readRows(dataSet, resource, values -> {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0)
+                        buffer.append(',');
+                    // an unquoted empty field is NULL, a quoted one an empty string
+                    if (values[i] != null)
+                        buffer.append('"').append(values[i].replace("\"", "\"\"")).append('"');
+                }
+                buffer.append('\n');
+                if (buffer.length() >= COPY_BUFFER_SIZE)
+                    flush(copyIn, buffer);
+            });
+            flush(copyIn, buffer);
+            copyIn.endCopy();
+            return rows;
+        } finally {
+            if (copyIn.isActive())
+                copyIn.cancelCopy();
+        }
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private int merge(DataSet dataSet, Resource resource) throws SQLException, IOException {
+        String row = dataSet.columns.stream().map(column -> "?").collect(Collectors.joining(", ", "(", ")"));
+        String sql = "MERGE INTO " + dataSet.table + " (" + dataSet.columnList() + ") KEY (id) VALUES ";
+        String[][] pending = new String[MERGE_ROWS][];
+        int[] count = {0};
+        try (PreparedStatement full = connection.prepareStatement(sql + String.join(", ", Collections.nCopies(MERGE_ROWS, row)))) {
+            int rows = readRows(dataSet, resource, values -> {
+                pending[count[0]++] = values;
+                if (count[0] == MERGE_ROWS) {
+                    bind(full, dataSet, pending, MERGE_ROWS);
+                    full.executeUpdate();
+                    count[0] = 0;
+                }
+            });
+            if (count[0] > 0) {
+                try (PreparedStatement rest = connection.prepareStatement(sql + String.join(", ", Collections.nCopies(count[0], row)))) {
+                    bind(rest, dataSet, pending, count[0]);
+                    rest.executeUpdate();
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static void bind(PreparedStatement statement, DataSet dataSet, String[][] rows, int count) throws SQLException {
+        int parameter = 1;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < dataSet.columns.size(); j++) {
+                String value = rows[i][j];
+                if (!dataSet.columns.get(j).numeric)
+                    statement.setString(parameter++, value);
+                else if (value == null)
+                    statement.setNull(parameter++, Types.BIGINT);
+                else
+                    statement.setLong(parameter++, Long.parseLong(value));
+            }
+        }
+    }
+
+    private int readRows(DataSet dataSet, Resource resource, RowHandler handler) throws SQLException, IOException {
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            CSVReader csv = new CSVReader(reader);
+            String[] header = csv.readNext();
+            if (header == null)
+                throw new IOException(resource.getDescription() + " has no header");
+            List<String> headers = Arrays.asList(header);
+            int[] indexes = new int[dataSet.columns.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = headers.indexOf(dataSet.columns.get(i).header);
+                if (indexes[i] < 0)
+                    throw new IOException(resource.getDescription() + " has no " + dataSet.columns.get(i).header + " column");
+            }
+            int rows = 0;
+            String[] line;
+            while ((line = csv.readNext()) != null) {
+                if (line.length == 1 && line[0].isEmpty())
+                    continue;
+                String[] values = new String[indexes.length];
+                for (int i = 0; i < indexes.length; i++) {
+                    String value = line[indexes[i]];
+                    values[i] = value.isEmpty() && dataSet.columns.get(i).numeric ? null : value;
+                }
+                handler.accept(values);
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    private static String checksum(DataSet dataSet, Resource resource) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(dataSet.describe().getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+            while (in.read(buffer) != -1) {
+                // the digest is updated while reading
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private String loadedChecksum(DataSet dataSet) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT checksum FROM reference_data_load WHERE data_set = ?")) {
+            statement.setString(1, dataSet.name());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    private void recordLoad(DataSet dataSet, String checksum, int rows) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+            "UPDATE reference_data_load SET checksum = ?, row_count = ?, loaded_date = CURRENT_TIMESTAMP WHERE data_set = ?")) {
+            update.setString(1, checksum);
+            update.setInt(2, rows);
+            update.setString(3, dataSet.name());
+            if (update.executeUpdate() > 0)
+                return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+            "INSERT INTO reference_data_load (data_set, checksum, row_count, loaded_date) VALUES (?, ?, ?, CURRENT_TIMESTAMP)")) {
+            insert.setString(1, dataSet.name());
+            insert.setString(2, checksum);
+            insert.setInt(3, rows);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Loads the reference data into an existing database, outside of Liquibase.
+     * <p>
+     * Arguments: {@code --url=<jdbc url> --username=<user> [--password=<password>] [--location=<resource location>]
+     * [--data-sets=COUNTRY,STATE,CITY]}.
+     */
+    public static void main(String[] args) throws SQLException, IOException {
+        CommandLinePropertySource<?> arguments = new SimpleCommandLinePropertySource(args);
+        String url = arguments.getProperty("url");
+        if (url == null)
+            throw new IllegalArgumentException("Usage: --url=<jdbc url> --username=<user> [--password=<password>] "
+                + "[--location=<resource location>] [--data-sets=COUNTRY,STATE,CITY]");
+        String location = arguments.containsProperty("location") ? arguments.getProperty("location") : DEFAULT_LOCATION;
+        List<DataSet> dataSets = arguments.containsProperty("data-sets")
+            ? Arrays.stream(arguments.getProperty("data-sets").split(",")).map(String::trim).map(DataSet::valueOf).collect(Collectors.toList())
+            : Arrays.asList(DataSet.values());
+        try (Connection connection = DriverManager.getConnection(url, arguments.getProperty("username"), arguments.getProperty("password"))) {
+            connection.setAutoCommit(false);
+            ReferenceDataLoader loader = new ReferenceDataLoader(connection, location);
+            for (DataSet dataSet : dataSets) {
+                loader.load(dataSet);
+                connection.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands Hibernate connections of the shared pool switched to the schema of the tenant.
+ * <p>
+ * The schema is set on every checkout, since the connection may have served another tenant last, and an unknown
+ * tenant gets no connection at all.
+ */
+public class TenantConnectionProvider implements MultiTenantConnectionProvider {
+
+    private final DataSource dataSource;
+
+    private final TenantRegistry tenantRegistry;
+
+    public TenantConnectionProvider(DataSource dataSource, TenantRegistry tenantRegistry) {
+        this.dataSource = dataSource;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    @Override
+    public Connection getAnyConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    @Override
+    public void releaseAnyConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public Connection getConnection(String tenant) throws SQLException {
+        if (!tenantRegistry.isKnown(tenant))
+            throw new SQLException("Unknown tenant " + tenant);
+        Connection connection = getAnyConnection();
+        try {
+            connection.setSchema(tenantRegistry.getSchema(tenant));
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void releaseConnection(String tenant, Connection connection) throws SQLException {
+        releaseAnyConnection(connection);
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class unwrapType) {
+        return unwrapType.isInstance(this) || DataSource.class.isAssignableFrom(unwrapType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isInstance(this))
+            return (T) this;
+        if (DataSource.class.isAssignableFrom(unwrapType))
+            return (T) dataSource;
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+/**
+ * Tenant the current thread works on.
+ * <p>
+ * Requests get theirs from the {@link TenantFilter}; work handed to other threads has to carry it along, see
+ * {@link #wrap(Runnable)}. Threads without one work on the {@link #DEFAULT_TENANT}, which is all there is unless
+ * tenancy is enabled.
+ */
+public final class TenantContext {
+
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final ThreadLocal<String> TENANT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    public static String getTenant() {
+        String tenant = TENANT.get();
+        return tenant == null ? DEFAULT_TENANT : tenant;
+    }
+
+    public static void setTenant(String tenant) {
+        TENANT.set(tenant);
+    }
+
+    public static void clear() {
+        TENANT.remove();
+    }
+
+    /**
+     * Runs a task on a tenant, restoring the tenant of the thread afterwards.
+     */
+    public static void runAs(String tenant, Runnable task) {
+        String previous = TENANT.get();
+        TENANT.set(tenant);
+        try {
+            task.run();
+        } finally {
+            TENANT.set(previous);
+        }
+    }
+
+    /**
+     * Binds a task to the tenant of the calling thread, to run it on another thread.
+     */
+    public static Runnable wrap(Runnable task) {
+        String tenant = TENANT.get();
+        return () -> runAs(tenant, task);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Sets the tenant of a request in the {@link TenantContext}.
+ * <p>
+ * Runs after the JWT filter: a request authenticated by its token works on the tenant of the token, whatever its
+ * headers say. Any other request, like a login, names its tenant in the {@code X-Tenant} header or works on the
+ * default one.
+ */
+public class TenantFilter extends OncePerRequestFilter {
+
+    public static final String TENANT_HEADER = "X-Tenant";
+
+    private final TenantRegistry tenantRegistry;
+
+    public TenantFilter(TenantRegistry tenantRegistry) {
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String tenant;
+        if (authentication != null && authentication.getDetails() instanceof String) {
+            tenant = (String) authentication.getDetails();
+            if (!tenantRegistry.isKnown(tenant)) {
+                SecurityContextHolder.clearContext();
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unknown tenant");
+                return;
+            }
+        } else {
+            String header = request.getHeader(TENANT_HEADER);
+            tenant = StringUtils.hasText(header) ? header.trim() : TenantContext.DEFAULT_TENANT;
+            if (!tenantRegistry.isKnown(tenant)) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tenant");
+                return;
+            }
+        }
+        TenantContext.setTenant(tenant);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the schema of every tenant and migrates it, the default one first, one after the other.
+ * <p>
+ * The connection Liquibase works on is switched to the schema, so the SQL of custom changes, like the reference data
+ * loading, lands there too.
+ */
+public class TenantLiquibase implements InitializingBean {
+
+    private final Logger log = LoggerFactory.getLogger(TenantLiquibase.class);
+
+    private final DataSource dataSource;
+
+    private final LiquibaseProperties liquibaseProperties;
+
+    private final TenantRegistry tenantRegistry;
+
+    private final ResourceLoader resourceLoader;
+
+    private final boolean shouldRun;
+
+    public TenantLiquibase(DataSource dataSource, LiquibaseProperties liquibaseProperties, TenantRegistry tenantRegistry,
+                           ResourceLoader resourceLoader, boolean shouldRun) {
+        this.dataSource = dataSource;
+        this.liquibaseProperties = liquibaseProperties;
+        this.tenantRegistry = tenantRegistry;
+        this.resourceLoader = resourceLoader;
+        this.shouldRun = shouldRun;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException, SQLException {
+        if (!shouldRun)
+            return;
+        for (String tenant : tenantRegistry.getTenants()) {
+            String schema = tenantRegistry.getSchema(tenant);
+            long start = System.currentTimeMillis();
+            createSchema(schema);
+            SpringLiquibase liquibase = new SchemaSpringLiquibase();
+            liquibase.setDataSource(dataSource);
+            liquibase.setResourceLoader(resourceLoader);
+            liquibase.setChangeLog("classpath:config/liquibase/master.xml");
+            liquibase.setContexts(liquibaseProperties.getContexts());
+            liquibase.setLabels(liquibaseProperties.getLabels());
+            liquibase.setChangeLogParameters(liquibaseProperties.getParameters());
+            liquibase.setDefaultSchema(schema);
+            liquibase.setLiquibaseSchema(schema);
+            liquibase.afterPropertiesSet();
+            log.info("Migrated tenant {} in {} ms", tenant, System.currentTimeMillis() - start);
+        }
+    }
+
+    private void createSchema(String schema) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+            if (!connection.getAutoCommit())
+                connection.commit();
+        }
+    }
+
+    private static class SchemaSpringLiquibase extends SpringLiquibase {
+
+        @Override
+        protected Database createDatabase(Connection connection, ResourceAccessor resourceAccessor) throws DatabaseException {
+            try {
+                connection.setSchema(getDefaultSchema());
+            } catch (SQLException e) {
+                throw new DatabaseException(e);
+            }
+            return super.createDatabase(connection, resourceAccessor);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+import org.liber.config.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The tenants served by this instance, the {@link TenantContext#DEFAULT_TENANT} first, and their schemas.
+ */
+public class TenantRegistry {
+
+    private static final Pattern SCHEMA = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private final Logger log = LoggerFactory.getLogger(TenantRegistry.class);
+
+    private final String defaultSchema;
+
+    private final List<String> tenants;
+
+    public TenantRegistry(ApplicationProperties.Tenancy properties) {
+        this.defaultSchema = validSchema(properties.getDefaultSchema());
+        List<String> tenants = new ArrayList<>();
+        tenants.add(TenantContext.DEFAULT_TENANT);
+        for (String tenant : properties.getTenants()) {
+            if (tenants.contains(validSchema(tenant)) || tenant.equals(defaultSchema))
+                throw new IllegalArgumentException("Tenant " + tenant + " is configured twice");
+            tenants.add(tenant);
+        }
+        this.tenants = Collections.unmodifiableList(tenants);
+    }
+
+    private static String validSchema(String schema) {
+        if (schema == null || !SCHEMA.matcher(schema).matches())
+            throw new IllegalArgumentException("Invalid tenant schema " + schema);
+        return schema;
+    }
+
+    public List<String> getTenants() {
+        return tenants;
+    }
+
+    public boolean isKnown(String tenant) {
+        return tenants.contains(tenant);
+    }
+
+    public String getSchema(String tenant) {
+        return TenantContext.DEFAULT_TENANT.equals(tenant) ? defaultSchema : tenant;
+    }
+
+    /**
+     * Runs a task once on every tenant. A tenant failing is logged and does not keep the task from the others.
+     */
+    public void forEach(Runnable task) {
+        for (String tenant : tenants) {
+            try {
+                TenantContext.runAs(tenant, task);
+            } catch (RuntimeException e) {
+                log.error("Task failed on tenant {}", tenant, e);
+            }
+        }
+    }
+}
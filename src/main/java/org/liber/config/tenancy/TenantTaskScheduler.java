@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * {@link TaskScheduler} running the {@link ForEachTenant} jobs once for every tenant, one after the other. The
+ * tenant is set before the job is called, so a transaction it starts is on that tenant.
+ */
+public class TenantTaskScheduler implements TaskScheduler {
+
+    private final TaskScheduler delegate;
+
+    private final TenantRegistry tenantRegistry;
+
+    public TenantTaskScheduler(TaskScheduler delegate, TenantRegistry tenantRegistry) {
+        this.delegate = delegate;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    private Runnable perTenant(Runnable task) {
+        if (task instanceof ScheduledMethodRunnable
+            && AnnotatedElementUtils.hasAnnotation(((ScheduledMethodRunnable) task).getMethod(), ForEachTenant.class))
+            return () -> tenantRegistry.forEach(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        return delegate.schedule(perTenant(task), trigger);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+        return delegate.schedule(perTenant(task), startTime);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+        return delegate.scheduleAtFixedRate(perTenant(task), startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+        return delegate.scheduleAtFixedRate(perTenant(task), period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+        return delegate.scheduleWithFixedDelay(perTenant(task), startTime, delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return delegate.scheduleWithFixedDelay(perTenant(task), delay);
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.liber.converters;
 
+import org.liber.domain.entities.ArchivedHospitalization;
 import org.liber.domain.entities.Hospitalization;
 import org.liber.service.dto.HospitalizationDTO;
 
@@ -37,4 +38,18 @@ public class HospitalizationConverter {
         }
         return dto;
     }
+
+    public static HospitalizationDTO convert(ArchivedHospitalization entity) {
+        HospitalizationDTO dto = HospitalizationDTO.builder()
+            .patientId(entity.getPatient().getId())
+            .startDate(entity.getStartDate())
+            .endDate(entity.getEndDate())
+            .name(entity.getPatient().getName())
+            .build();
+        if (entity.getReleaseReason() != null) {
+            dto.setReleaseReasonId(entity.getReleaseReason().getId());
+            dto.setReleaseReasonName(entity.getReleaseReason().getName());
+        }
+        return dto;
+    }
 }
@@ -32,6 +32,7 @@ public class PatientConverter {
     public static PatientDTO convert(Patient entity) {
         return PatientDTO.builder()
             .id(entity.getId())
+            .version(entity.getVersion())
             .addressCityId(entity.getAddressCity().getId())
             .addressComplement(entity.getAddressComplement())
             .addressNeighborhood(entity.getAddressNeighborhood())
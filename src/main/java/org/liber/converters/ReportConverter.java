@@ -19,6 +19,7 @@
 
 package org.liber.converters;
 
+import org.liber.domain.entities.ArchivedReport;
 import org.liber.domain.entities.Report;
 import org.liber.service.dto.ReportDTO;
 
@@ -29,6 +30,23 @@ public class ReportConverter {
     public static ReportDTO convert(Report entity) {
         return ReportDTO.builder()
             .id(entity.getId())
+            .version(entity.getVersion())
+            .authorId(entity.getAuthor().getId())
+            .authorFirstName(entity.getAuthor().getFirstName())
+            .authorLastName(entity.getAuthor().getLastName())
+            .content(entity.getContent())
+            .createdDate(entity.getCreatedDate().atZone(ZoneId.systemDefault()).toLocalDate())
+            .patientId(entity.getPatient().getId())
+            .status(entity.getStatus())
+            .title(entity.getTitle())
+            .type(entity.getType())
+            .build();
+    }
+
+    public static ReportDTO convert(ArchivedReport entity) {
+        return ReportDTO.builder()
+            .id(entity.getId())
+            .version(entity.getVersion())
             .authorId(entity.getAuthor().getId())
             .authorFirstName(entity.getAuthor().getFirstName())
             .authorLastName(entity.getAuthor().getLastName())
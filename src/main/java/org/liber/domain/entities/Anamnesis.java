@@ -20,12 +20,15 @@
 package org.liber.domain.entities;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -94,35 +97,45 @@ public class Anamnesis implements Serializable {
     @JoinColumn(name = "lives_with_kinship_id", nullable = false)
     private Kinship livesWithKinship;
 
-    @OneToMany(mappedBy = "anamnesis")
-    private Set<AnamnesisOtherInstitution> anamnesisOtherInstitutions;
+    @OneToMany(mappedBy = "anamnesis", cascade = CascadeType.ALL, orphanRemoval = true)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Set<AnamnesisOtherInstitution> anamnesisOtherInstitutions = new HashSet<>();
 
     @ManyToMany
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @JoinTable(
         name = "anamnesis_justice_problem",
         joinColumns = @JoinColumn(name = "anamnesis_id"),
         inverseJoinColumns = @JoinColumn(name = "justice_problem_id"))
-    private Set<JusticeProblem> justiceProblems;
+    private Set<JusticeProblem> justiceProblems = new HashSet<>();
 
     @ManyToMany
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @JoinTable(
         name = "anamnesis_drug_used",
         joinColumns = @JoinColumn(name = "anamnesis_id"),
         inverseJoinColumns = @JoinColumn(name = "drug_id"))
-    private Set<Drug> drugsUsed;
+    private Set<Drug> drugsUsed = new HashSet<>();
 
     @ManyToMany
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @JoinTable(
         name = "anamnesis_controlled_medication",
         joinColumns = @JoinColumn(name = "anamnesis_id"),
         inverseJoinColumns = @JoinColumn(name = "controlled_medication_id"))
-    private Set<ControlledMedication> controlledMedications;
+    private Set<ControlledMedication> controlledMedications = new HashSet<>();
 
     @ManyToMany
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @JoinTable(
         name = "anamnesis_health_problem",
         joinColumns = @JoinColumn(name = "anamnesis_id"),
         inverseJoinColumns = @JoinColumn(name = "health_problem_id"))
-    private Set<HealthProblem> healthProblems;
+    private Set<HealthProblem> healthProblems = new HashSet<>();
 
 }
@@ -19,18 +19,21 @@
 
 package org.liber.domain.entities;
 
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * A anamnesis other institution.
  */
-@Data
 @NoArgsConstructor
+@Getter
+@Setter
 @Entity
 @Table(name = "anamnesis_other_institution")
 public class AnamnesisOtherInstitution implements Serializable {
@@ -55,4 +58,16 @@ public class AnamnesisOtherInstitution implements Serializable {
     @Column(name = "period_in_days", nullable = false)
     private Integer periodInDays;
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AnamnesisOtherInstitution that = (AnamnesisOtherInstitution) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
 }
@@ -19,6 +19,7 @@
 
 package org.liber.domain.entities;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -27,6 +28,7 @@ import java.io.Serializable;
 
 @Data
 @NoArgsConstructor
+@AllArgsConstructor
 @Embeddable
 public class AnamnesisOtherInstitutionPK implements Serializable {
 
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.domain.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A finished hospitalization moved to the archive, read only.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Immutable
+@IdClass(HospitalizationPK.class)
+@Table(name = "hospitalization_archive")
+public class ArchivedHospitalization implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "patient_id", nullable = false)
+    private Patient patient;
+
+    @Id
+    @Column(name = "start_date")
+    private LocalDate startDate;
+
+    @Column(name = "end_date")
+    private LocalDate endDate;
+
+    @ManyToOne
+    @JoinColumn(name = "release_reason_id")
+    private ReleaseReason releaseReason;
+
+    @Column(name = "last_modified_date", nullable = false)
+    private Instant lastModifiedDate;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "archived_date", nullable = false)
+    private Instant archivedDate;
+}
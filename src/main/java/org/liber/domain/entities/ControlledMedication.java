@@ -19,13 +19,18 @@
 
 package org.liber.domain.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
+import java.time.Instant;
 
 /**
  * A controlled medication.
@@ -33,6 +38,7 @@ import java.io.Serializable;
 @Data
 @NoArgsConstructor
 @Entity
+@EntityListeners(AuditingEntityListener.class)
 @Table(name = "controlled_medication")
 public class ControlledMedication implements Serializable {
 
@@ -50,6 +56,12 @@ public class ControlledMedication implements Serializable {
     @Column(name = "name", length = 50, nullable = false, unique = true)
     private String name;
 
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Instant lastModifiedDate = Instant.now();
+
     @PrePersist
     @PreUpdate
     private void toLowerCase() {
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.AgeBand;
+import org.liber.domain.enums.DrugUseDimension;
+import org.liber.domain.enums.Sex;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Precomputed drug use counters by dimension, age band and sex.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@IdClass(DrugUseAggregatePK.class)
+@Table(name = "drug_use_aggregate")
+public class DrugUseAggregate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dimension", length = 20, nullable = false)
+    private DrugUseDimension dimension;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "age_band", length = 20, nullable = false)
+    private AgeBand ageBand;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "sex", length = 15, nullable = false)
+    private Sex sex;
+
+    /**
+     * The drug id, the comma separated drug ids of a combination or {@code *} for totals.
+     */
+    @Id
+    @Column(name = "item", length = 1000, nullable = false)
+    private String item;
+
+    @Column(name = "patients", nullable = false)
+    private Long patients;
+
+    @Column(name = "overdoses", nullable = false)
+    private Long overdoses;
+
+    @Column(name = "drug_use_frequence_sum", nullable = false)
+    private Long drugUseFrequenceSum;
+}
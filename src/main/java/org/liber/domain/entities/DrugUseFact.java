@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.AgeBand;
+import org.liber.domain.enums.Sex;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * The analytics facts of a patient, taken from its latest anamnesis.
+ * <p>
+ * It keeps what the patient currently adds to {@link DrugUseAggregate}, so a change can be applied as a delta.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "drug_use_fact")
+public class DrugUseFact implements Persistable<Long>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "patient_id", nullable = false)
+    private Long patientId;
+
+    @Column(name = "anamnesis_id", nullable = false)
+    private Long anamnesisId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "sex", length = 15, nullable = false)
+    private Sex sex;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "age_band", length = 20, nullable = false)
+    private AgeBand ageBand;
+
+    @Column(name = "favorite_drug_id", nullable = false)
+    private Long favoriteDrugId;
+
+    @Column(name = "overdose", nullable = false)
+    private Boolean overdose;
+
+    @Column(name = "drug_use_frequence", nullable = false)
+    private Integer drugUseFrequence;
+
+    /**
+     * Ids of the drugs used, ascending and comma separated.
+     */
+    @Column(name = "drug_ids", length = 1000, nullable = false)
+    private String drugIds;
+
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public Long getId() {
+        return patientId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    private void markPersisted() {
+        this.persisted = true;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.DuplicateStatus;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Two patients that may be the same person, {@code patientId} being the lower id. Pending until an admin merges
+ * them or dismisses the pair; a dismissed pair is not suggested again.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@IdClass(DuplicateCandidatePK.class)
+@Table(name = "duplicate_candidate")
+public class DuplicateCandidate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "patient_id", nullable = false)
+    private Long patientId;
+
+    @Id
+    @Column(name = "duplicate_id", nullable = false)
+    private Long duplicateId;
+
+    @Column(name = "score", nullable = false)
+    private Integer score;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 15, nullable = false)
+    private DuplicateStatus status;
+
+    @Column(name = "detected_date", nullable = false)
+    private Instant detectedDate;
+}
@@ -19,12 +19,16 @@
 
 package org.liber.domain.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDate;
 
 /**
@@ -34,6 +38,7 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @EqualsAndHashCode
 @Entity
+@EntityListeners(AuditingEntityListener.class)
 @IdClass(HospitalizationPK.class)
 @Table(name = "hospitalization")
 public class Hospitalization implements Serializable {
@@ -55,4 +60,13 @@ public class Hospitalization implements Serializable {
     @JoinColumn(name = "release_reason_id")
     private ReleaseReason releaseReason;
 
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Instant lastModifiedDate = Instant.now();
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -19,13 +19,19 @@
 
 package org.liber.domain.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.Set;
 
 /**
@@ -34,6 +40,7 @@ import java.util.Set;
 @Data
 @NoArgsConstructor
 @Entity
+@EntityListeners(AuditingEntityListener.class)
 @Table(name = "justice_problem")
 public class JusticeProblem implements Serializable {
 
@@ -52,8 +59,16 @@ public class JusticeProblem implements Serializable {
     private String name;
 
     @ManyToMany(mappedBy = "justiceProblems")
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private Set<Anamnesis> anamneses;
 
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Instant lastModifiedDate = Instant.now();
+
     @PrePersist
     @PreUpdate
     private void toLowerCase() {
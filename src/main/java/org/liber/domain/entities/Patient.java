@@ -19,9 +19,13 @@
 
 package org.liber.domain.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.liber.domain.enums.Sex;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -38,6 +42,7 @@ import java.util.Set;
 @Data
 @NoArgsConstructor
 @Entity
+@EntityListeners(AuditingEntityListener.class)
 @Table(name = "patient")
 public class Patient implements Serializable {
 
@@ -51,7 +56,7 @@ public class Patient implements Serializable {
 
     @NotNull
     @Size(max = 100)
-    @Column(name = "name", length = 100, unique = true, nullable = false)
+    @Column(name = "name", length = 100, nullable = false)
     private String name;
 
     @NotNull
@@ -124,6 +129,17 @@ public class Patient implements Serializable {
     @JoinColumn(name = "address_city_id")
     private City addressCity;
 
-    @OneToMany(mappedBy = "patient", cascade = {CascadeType.REMOVE})
+    // documents added to a managed patient are persisted when it is flushed, without being looked up first
+    @OneToMany(mappedBy = "patient", cascade = {CascadeType.PERSIST, CascadeType.REMOVE})
     private Set<PatientDocument> documents = new HashSet<PatientDocument>();
+
+    @LastModifiedDate
+    @Column(name = "last_modified_date", nullable = false)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Instant lastModifiedDate = Instant.now();
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -27,6 +27,7 @@ import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
@@ -57,6 +58,27 @@ public class PatientDocument implements Serializable {
     @Column(name = "value", length = 20, nullable = false)
     private String value;
 
+    @Size(max = 20)
+    @Column(name = "normalized_value", length = 20, nullable = false)
+    private String normalizedValue;
+
+    /**
+     * Normalizes a document number the way it is indexed, keeping only its letters and digits, uppercased, so
+     * {@code 123.456.789-00} and {@code 12345678900} or {@code mg-12.345.678} and {@code MG12345678} are the same.
+     *
+     * @param value the number as typed.
+     * @return the normalized number.
+     */
+    public static String normalize(String value) {
+        return value == null ? "" : value.replaceAll("[^0-9A-Za-z]", "").toUpperCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void normalizeValue() {
+        this.normalizedValue = normalize(value);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -19,10 +19,15 @@
 
 package org.liber.domain.entities;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.liber.domain.enums.ReportStatus;
 import org.liber.domain.enums.ReportType;
+import org.liber.utils.CompressionUtils;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -55,9 +60,25 @@ public class Report extends AbstractAuditingEntity implements Serializable {
     @Column(name = "title", nullable = false)
     private String title;
 
-    @Column(name = "content", columnDefinition = "TEXT", nullable = false)
+    /**
+     * The content stored as text, {@code null} when it is stored compressed.
+     */
+    @Column(name = "content", columnDefinition = "TEXT")
     private String content;
 
+    /**
+     * The content compressed by {@link CompressionUtils}, {@code null} when it is stored as text.
+     */
+    @Column(name = "compressed_content")
+    @ToString.Exclude
+    private byte[] compressedContent;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient String decompressedContent;
+
     @ManyToOne(optional = false)
     @JoinColumn(name = "patient_id", nullable = false)
     private Patient patient;
@@ -65,4 +86,39 @@ public class Report extends AbstractAuditingEntity implements Serializable {
     @ManyToOne(optional = false)
     @JoinColumn(name = "author_id", nullable = false)
     private User author;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public String getContent() {
+        if (compressedContent == null)
+            return content;
+        if (decompressedContent == null)
+            decompressedContent = CompressionUtils.decompress(compressedContent);
+        return decompressedContent;
+    }
+
+    /**
+     * Stores the content as text.
+     *
+     * @param content the content.
+     */
+    public void setContent(String content) {
+        this.content = content;
+        this.compressedContent = null;
+        this.decompressedContent = null;
+    }
+
+    /**
+     * Stores the content compressed.
+     *
+     * @param compressedContent the content compressed by {@link CompressionUtils}.
+     * @param content           the same content as text, kept to avoid decompressing it again.
+     */
+    public void setCompressedContent(byte[] compressedContent, String content) {
+        this.content = null;
+        this.compressedContent = compressedContent;
+        this.decompressedContent = content;
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.entities;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.SyncEntityType;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The record of a deleted entity, kept for the sync to tell clients what to drop.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "sync_tombstone")
+public class SyncTombstone implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sync_tombstone_id_seq")
+    @SequenceGenerator(name = "sync_tombstone_id_seq", sequenceName = "sync_tombstone_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity", length = 30, nullable = false)
+    private SyncEntityType entity;
+
+    @Column(name = "entity_id", length = 60, nullable = false)
+    private String entityId;
+
+    @Column(name = "deleted_date", nullable = false)
+    private Instant deletedDate = Instant.now();
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.enums;
+
+import java.time.LocalDate;
+import java.time.Period;
+
+/**
+ * Age bands used by the analytics, computed at the time the figures are written.
+ */
+public enum AgeBand {
+
+    UNDER_18(0, 17),
+    FROM_18_TO_24(18, 24),
+    FROM_25_TO_34(25, 34),
+    FROM_35_TO_44(35, 44),
+    FROM_45_TO_59(45, 59),
+    FROM_60(60, Integer.MAX_VALUE);
+
+    private final int minAge;
+    private final int maxAge;
+
+    AgeBand(int minAge, int maxAge) {
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    public static AgeBand of(LocalDate birthDate, LocalDate today) {
+        int age = Period.between(birthDate, today).getYears();
+        for (AgeBand band : values()) {
+            if (age >= band.minAge && age <= band.maxAge)
+                return band;
+        }
+        return UNDER_18;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.enums;
+
+import org.liber.security.AuthoritiesConstants;
+
+import java.util.Collection;
+
+/**
+ * The entities published on the change feed, with the authorities that can read them.
+ */
+public enum ChangeEntityType {
+    PATIENT(AuthoritiesConstants.SOCIAL_ASSISTANT, AuthoritiesConstants.PSYCHOLOGIST, AuthoritiesConstants.PSYCHIATRIST, AuthoritiesConstants.DENTIST),
+    HOSPITALIZATION(AuthoritiesConstants.SOCIAL_ASSISTANT, AuthoritiesConstants.PSYCHOLOGIST, AuthoritiesConstants.PSYCHIATRIST, AuthoritiesConstants.DENTIST),
+    REPORT(AuthoritiesConstants.SOCIAL_ASSISTANT, AuthoritiesConstants.PSYCHOLOGIST, AuthoritiesConstants.PSYCHIATRIST, AuthoritiesConstants.DENTIST);
+
+    private final String[] readAuthorities;
+
+    ChangeEntityType(String... readAuthorities) {
+        this.readAuthorities = readAuthorities;
+    }
+
+    public boolean isReadableBy(Collection<String> authorities) {
+        for (String authority : readAuthorities)
+            if (authorities.contains(authority))
+                return true;
+        return false;
+    }
+}
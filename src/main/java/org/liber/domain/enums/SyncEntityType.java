@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.enums;
+
+/**
+ * The entities sent by the sync. Lookup tables are small and sent in one go; patients, hospitalizations and
+ * reports are paged through in this order.
+ */
+public enum SyncEntityType {
+    DOCUMENT_TYPE,
+    MARITAL_STATUS,
+    HOUSING_CONDITION,
+    SCHOLARITY,
+    KINSHIP,
+    PROFESSION,
+    JUSTICE_PROBLEM,
+    HEALTH_PROBLEM,
+    DRUG,
+    CONTROLLED_MEDICATION,
+    OTHER_INSTITUTION,
+    RELEASE_REASON,
+    PATIENT,
+    HOSPITALIZATION,
+    REPORT
+}
@@ -20,8 +20,67 @@
 package org.liber.domain.repository;
 
 import org.liber.domain.entities.Anamnesis;
+import org.liber.service.dto.AnamnesisDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface AnamnesisRepository extends JpaRepository<Anamnesis, Long> {
 
+    String DTO_SELECT = "select new org.liber.service.dto.AnamnesisDTO(a.id, a.patient.id, a.overdose, a.psychoticBreak, a.drugAbuseSeizure, " +
+        "a.favoriteDrug.id, a.drugUseFrequence, a.housingCondition.id, a.quantityPeopleInHouse, a.familyIncome, a.inGovernmentProgram, " +
+        "a.livesWithKinship.id) from Anamnesis a ";
+
+    @Query(DTO_SELECT + "where a.id=:id")
+    List<AnamnesisDTO> findDTOById(@Param("id") Long id);
+
+    @Query(DTO_SELECT + "where a.patient.id=:patientId order by a.id")
+    List<AnamnesisDTO> findDTOsByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * Reads every link of the anamnesis in one round trip, as rows of anamnesis id, link kind, referenced id and,
+     * for other institutions, the period in days.
+     */
+    @Query(value = "select anamnesis_id, 'JUSTICE_PROBLEM', justice_problem_id, cast(null as integer) from anamnesis_justice_problem where anamnesis_id in (:ids) " +
+        "union all select anamnesis_id, 'DRUG_USED', drug_id, cast(null as integer) from anamnesis_drug_used where anamnesis_id in (:ids) " +
+        "union all select anamnesis_id, 'CONTROLLED_MEDICATION', controlled_medication_id, cast(null as integer) from anamnesis_controlled_medication where anamnesis_id in (:ids) " +
+        "union all select anamnesis_id, 'HEALTH_PROBLEM', health_problem_id, cast(null as integer) from anamnesis_health_problem where anamnesis_id in (:ids) " +
+        "union all select anamnesis_id, 'OTHER_INSTITUTION', other_institution_id, period_in_days from anamnesis_other_institution where anamnesis_id in (:ids)",
+        nativeQuery = true)
+    List<Object[]> findLinksByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "update anamnesis set patient_id = :toPatientId where patient_id = :fromPatientId", nativeQuery = true)
+    int reassignPatient(@Param("fromPatientId") Long fromPatientId, @Param("toPatientId") Long toPatientId);
+
+    /**
+     * Deletes every link of the anamneses of some patients, before the anamneses themselves.
+     */
+    @Modifying
+    @Query(value = "delete from anamnesis_justice_problem where anamnesis_id in (select a.id from anamnesis a where a.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteJusticeProblemsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from anamnesis_drug_used where anamnesis_id in (select a.id from anamnesis a where a.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteDrugsUsedByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from anamnesis_controlled_medication where anamnesis_id in (select a.id from anamnesis a where a.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteControlledMedicationsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from anamnesis_health_problem where anamnesis_id in (select a.id from anamnesis a where a.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteHealthProblemsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from anamnesis_other_institution where anamnesis_id in (select a.id from anamnesis a where a.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteOtherInstitutionsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from anamnesis where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.ArchivedHospitalization;
+import org.liber.domain.entities.HospitalizationPK;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchivedHospitalizationRepository extends JpaRepository<ArchivedHospitalization, HospitalizationPK> {
+
+    /**
+     * Lists the hospitalizations of a patient starting before a day, newest first.
+     */
+    @Query("select h from ArchivedHospitalization h left join fetch h.releaseReason where h.patient.id=:patientId and h.startDate<:before order by h.startDate desc")
+    List<ArchivedHospitalization> findAllWithReleaseReasonByPatientId(@Param("patientId") Long patientId, @Param("before") LocalDate before, Pageable pageable);
+
+    /**
+     * Moves hospitalizations finished and unchanged since a date to the archive, skipping the ones locked by a
+     * running change.
+     */
+    @Modifying
+    @Query(value = "with moved as (delete from hospitalization where (patient_id, start_date) in (" +
+        "select h.patient_id, h.start_date from hospitalization h where h.end_date < :before and h.last_modified_date < :before " +
+        "order by h.patient_id, h.start_date limit :size for update skip locked) returning *) " +
+        "insert into hospitalization_archive (patient_id, start_date, end_date, release_reason_id, last_modified_date, version, archived_date) select patient_id, start_date, end_date, release_reason_id, last_modified_date, version, :now from moved", nativeQuery = true)
+    int moveToArchive(@Param("before") Instant before, @Param("size") int size, @Param("now") Instant now);
+
+    @Modifying
+    @Query(value = "with moved as (delete from hospitalization_archive where patient_id = :patientId and start_date = :startDate returning *) " +
+        "insert into hospitalization (patient_id, start_date, end_date, release_reason_id, last_modified_date, version) select patient_id, start_date, end_date, release_reason_id, last_modified_date, version from moved", nativeQuery = true)
+    int moveBack(@Param("patientId") Long patientId, @Param("startDate") LocalDate startDate);
+
+    @Modifying
+    @Query(value = "with moved as (delete from hospitalization_archive where patient_id in (:patientIds) returning *) " +
+        "insert into hospitalization (patient_id, start_date, end_date, release_reason_id, last_modified_date, version) select patient_id, start_date, end_date, release_reason_id, last_modified_date, version from moved", nativeQuery = true)
+    int moveBackByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from hospitalization_archive where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+}
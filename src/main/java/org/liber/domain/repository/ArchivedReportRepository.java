@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.ArchivedReport;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.service.dto.ReportSummaryDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ArchivedReportRepository extends JpaRepository<ArchivedReport, Long> {
+
+    List<ArchivedReport> findAllByPatientIdAndStatusOrderByCreatedDateAscIdAsc(Long patientId, ReportStatus status);
+
+    @Query("select r.id, r.version from ArchivedReport r where r.patient.id = :patientId and r.status = :status order by r.createdDate, r.id")
+    List<Object[]> findIdsAndVersionsByPatientIdAndStatus(@Param("patientId") Long patientId, @Param("status") ReportStatus status);
+
+    @Query("select new org.liber.service.dto.ReportSummaryDTO(r.id, r.patient.id, r.version, r.type, r.status, r.title, a.id, a.firstName, a.lastName, r.createdDate, r.lastModifiedDate) from ArchivedReport r join r.author a " +
+        "where r.patient.id=:patientId and (r.createdDate<:before or (r.createdDate=:before and r.id<:beforeId)) order by r.createdDate desc, r.id desc")
+    List<ReportSummaryDTO> findSummariesByPatientId(@Param("patientId") Long patientId, @Param("before") Instant before, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("select r.version from ArchivedReport r where r.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select r.id from ArchivedReport r where r.patient.id in :patientIds")
+    List<Long> findIdsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    /**
+     * Picks and locks reports unchanged since a date, skipping the ones locked by a running change. A report is
+     * never changed before it is created, so the bound on the creation date only skips the newer partitions.
+     */
+    @Query(value = "select r.id from report r where r.last_modified_date < :before and r.created_date < :before order by r.id limit :size for update skip locked", nativeQuery = true)
+    List<Number> lockIdsToArchive(@Param("before") Instant before, @Param("size") int size);
+
+    /**
+     * Copies reports to the archive. Their revisions follow with {@link #moveRevisionsToArchive(Collection)}, then
+     * they are deleted with {@link #deleteHot(Collection)}.
+     */
+    @Modifying
+    @Query(value = "insert into report_archive (id, type, status, title, content, compressed_content, patient_id, author_id, created_by, created_date, reset_date, last_modified_by, last_modified_date, version, archived_date) " +
+        "select id, type, status, title, content, compressed_content, patient_id, author_id, created_by, created_date, reset_date, last_modified_by, last_modified_date, version, :now from report where id in (:ids)", nativeQuery = true)
+    int copyToArchive(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Modifying
+    @Query(value = "with moved as (delete from report_revision where report_id in (:ids) returning *) " +
+        "insert into report_revision_archive (id, report_id, revision, snapshot, status, title, content, content_length, author_id, created_date) select id, report_id, revision, snapshot, status, title, content, content_length, author_id, created_date from moved", nativeQuery = true)
+    int moveRevisionsToArchive(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from report where id in (:ids)", nativeQuery = true)
+    int deleteHot(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Locks archived reports, so only one caller restores each of them.
+     */
+    @Query(value = "select r.id from report_archive r where r.id in (:ids) order by r.id for update", nativeQuery = true)
+    List<Number> lockArchived(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Copies archived reports back. Their revisions follow with {@link #moveRevisionsBack(Collection)}, then they
+     * are deleted from the archive with {@link #deleteArchived(Collection)}.
+     */
+    @Modifying
+    @Query(value = "insert into report (id, type, status, title, content, compressed_content, patient_id, author_id, created_by, created_date, reset_date, last_modified_by, last_modified_date, version) select id, type, status, title, content, compressed_content, patient_id, author_id, created_by, created_date, reset_date, last_modified_by, last_modified_date, version from report_archive where id in (:ids)", nativeQuery = true)
+    int copyBack(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "with moved as (delete from report_revision_archive where report_id in (:ids) returning *) " +
+        "insert into report_revision (id, report_id, revision, snapshot, status, title, content, content_length, author_id, created_date) select id, report_id, revision, snapshot, status, title, content, content_length, author_id, created_date from moved", nativeQuery = true)
+    int moveRevisionsBack(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from report_archive where id in (:ids)", nativeQuery = true)
+    int deleteArchived(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from report_revision_archive where report_id in (select r.id from report_archive r where r.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteRevisionsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from report_archive where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+}
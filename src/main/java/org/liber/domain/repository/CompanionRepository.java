@@ -21,6 +21,19 @@ package org.liber.domain.repository;
 
 import org.liber.domain.entities.Companion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 
 public interface CompanionRepository extends JpaRepository<Companion, Long> {
+
+    @Modifying
+    @Query(value = "update companion set patient_id = :toPatientId where patient_id = :fromPatientId", nativeQuery = true)
+    int reassignPatient(@Param("fromPatientId") Long fromPatientId, @Param("toPatientId") Long toPatientId);
+
+    @Modifying
+    @Query(value = "delete from companion where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
 }
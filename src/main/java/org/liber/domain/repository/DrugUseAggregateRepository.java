@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.DrugUseAggregate;
+import org.liber.domain.entities.DrugUseAggregatePK;
+import org.liber.domain.enums.AgeBand;
+import org.liber.domain.enums.DrugUseDimension;
+import org.liber.domain.enums.Sex;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DrugUseAggregateRepository extends JpaRepository<DrugUseAggregate, DrugUseAggregatePK> {
+
+    @Query("select a from DrugUseAggregate a where a.dimension = :dimension and (:ageBand is null or a.ageBand = :ageBand) " +
+        "and (:sex is null or a.sex = :sex) order by a.patients desc, a.item")
+    List<DrugUseAggregate> findAllByFilter(@Param("dimension") DrugUseDimension dimension, @Param("ageBand") AgeBand ageBand, @Param("sex") Sex sex);
+
+    /**
+     * Adds a delta to a counter row, creating it when missing, in a single statement safe under concurrency.
+     */
+    @Modifying
+    @Query(value = "insert into drug_use_aggregate (dimension, age_band, sex, item, patients, overdoses, drug_use_frequence_sum) " +
+        "values (:dimension, :ageBand, :sex, :item, :patients, :overdoses, :drugUseFrequence) " +
+        "on conflict (dimension, age_band, sex, item) do update set patients = drug_use_aggregate.patients + excluded.patients, " +
+        "overdoses = drug_use_aggregate.overdoses + excluded.overdoses, " +
+        "drug_use_frequence_sum = drug_use_aggregate.drug_use_frequence_sum + excluded.drug_use_frequence_sum", nativeQuery = true)
+    void add(@Param("dimension") String dimension, @Param("ageBand") String ageBand, @Param("sex") String sex, @Param("item") String item,
+             @Param("patients") long patients, @Param("overdoses") long overdoses, @Param("drugUseFrequence") long drugUseFrequence);
+
+    @Modifying
+    @Query("delete from DrugUseAggregate a where a.patients <= 0")
+    void deleteEmpty();
+
+    @Modifying
+    @Query("delete from DrugUseAggregate")
+    void deleteAllAggregates();
+
+    /**
+     * Recomputes every counter from the facts in one statement.
+     */
+    @Modifying
+    @Query(value = "insert into drug_use_aggregate (dimension, age_band, sex, item, patients, overdoses, drug_use_frequence_sum) " +
+        "select c.dimension, c.age_band, c.sex, c.item, count(*), sum(case when c.overdose then 1 else 0 end), sum(c.drug_use_frequence) from (" +
+        "select 'TOTAL' as dimension, f.age_band, f.sex, '*' as item, f.overdose, f.drug_use_frequence from drug_use_fact f " +
+        "union all select 'FAVORITE_DRUG', f.age_band, f.sex, cast(f.favorite_drug_id as varchar), f.overdose, f.drug_use_frequence from drug_use_fact f " +
+        "union all select 'DRUG_USED', f.age_band, f.sex, d.item, f.overdose, f.drug_use_frequence from drug_use_fact f cross join unnest(string_to_array(f.drug_ids, ',')) as d(item) " +
+        "union all select 'COMBINATION', f.age_band, f.sex, f.drug_ids, f.overdose, f.drug_use_frequence from drug_use_fact f where f.drug_ids like '%,%'" +
+        ") c group by c.dimension, c.age_band, c.sex, c.item", nativeQuery = true)
+    void rebuildFromFacts();
+
+    /**
+     * Takes the facts of some patients out of the counters in one statement, like {@link #rebuildFromFacts()} with the
+     * opposite sign.
+     */
+    @Modifying
+    @Query(value = "insert into drug_use_aggregate (dimension, age_band, sex, item, patients, overdoses, drug_use_frequence_sum) " +
+        "select c.dimension, c.age_band, c.sex, c.item, -count(*), -sum(case when c.overdose then 1 else 0 end), -sum(c.drug_use_frequence) from (" +
+        "select 'TOTAL' as dimension, f.age_band, f.sex, '*' as item, f.overdose, f.drug_use_frequence from drug_use_fact f where f.patient_id in (:patientIds) " +
+        "union all select 'FAVORITE_DRUG', f.age_band, f.sex, cast(f.favorite_drug_id as varchar), f.overdose, f.drug_use_frequence from drug_use_fact f where f.patient_id in (:patientIds) " +
+        "union all select 'DRUG_USED', f.age_band, f.sex, d.item, f.overdose, f.drug_use_frequence from drug_use_fact f cross join unnest(string_to_array(f.drug_ids, ',')) as d(item) where f.patient_id in (:patientIds) " +
+        "union all select 'COMBINATION', f.age_band, f.sex, f.drug_ids, f.overdose, f.drug_use_frequence from drug_use_fact f where f.drug_ids like '%,%' and f.patient_id in (:patientIds)" +
+        ") c group by c.dimension, c.age_band, c.sex, c.item " +
+        "on conflict (dimension, age_band, sex, item) do update set patients = drug_use_aggregate.patients + excluded.patients, " +
+        "overdoses = drug_use_aggregate.overdoses + excluded.overdoses, " +
+        "drug_use_frequence_sum = drug_use_aggregate.drug_use_frequence_sum + excluded.drug_use_frequence_sum", nativeQuery = true)
+    void subtractFactsOf(@Param("patientIds") Collection<Long> patientIds);
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.DrugUseFact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface DrugUseFactRepository extends JpaRepository<DrugUseFact, Long> {
+
+    /**
+     * Reads the latest anamnesis of each patient as rows of patient id, anamnesis id, sex, birth date, favorite drug
+     * id, overdose, drug use frequence and the ascending comma separated ids of the drugs used.
+     */
+    String INPUT_SELECT = "select a.patient_id, a.id, p.sex, cast(p.birth_date as date), a.favorite_drug_id, a.overdose, a.drug_use_frequence, " +
+        "coalesce((select string_agg(cast(d.drug_id as varchar), ',' order by d.drug_id) from anamnesis_drug_used d where d.anamnesis_id = a.id), '') " +
+        "from anamnesis a join patient p on p.id = a.patient_id " +
+        "where a.id = (select max(l.id) from anamnesis l where l.patient_id = a.patient_id) ";
+
+    @Query(value = INPUT_SELECT, nativeQuery = true)
+    List<Object[]> findAllInputs();
+
+    @Query(value = INPUT_SELECT + "and a.patient_id = :patientId", nativeQuery = true)
+    List<Object[]> findInputsByPatientId(@Param("patientId") Long patientId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from DrugUseFact f where f.patientId = :patientId")
+    Optional<DrugUseFact> findWithLockByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * Serializes the refreshes of a patient, including the first one, when there is no fact row to lock yet.
+     * {@code no key update} does not conflict with the key share lock taken by inserting an anamnesis.
+     */
+    @Query(value = "select p.id from patient p where p.id = :patientId for no key update", nativeQuery = true)
+    List<Number> lockPatient(@Param("patientId") Long patientId);
+
+    /**
+     * Waits for the running refreshes and holds new ones until the transaction ends.
+     */
+    @Modifying
+    @Query(value = "lock table drug_use_fact, drug_use_aggregate in exclusive mode", nativeQuery = true)
+    void lockTables();
+
+    @Modifying
+    @Query("delete from DrugUseFact")
+    void deleteAllFacts();
+
+    @Modifying
+    @Query(value = "delete from drug_use_fact where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+}
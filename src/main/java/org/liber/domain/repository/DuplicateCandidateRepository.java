@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.DuplicateCandidate;
+import org.liber.domain.entities.DuplicateCandidatePK;
+import org.liber.domain.enums.DuplicateStatus;
+import org.liber.service.dto.DuplicateCandidateDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The duplicate candidates and the {@code patient_match_key} blocking keys they are found with.
+ */
+public interface DuplicateCandidateRepository extends JpaRepository<DuplicateCandidate, DuplicateCandidatePK> {
+
+    @Query(value = "select new org.liber.service.dto.DuplicateCandidateDTO(c.patientId, p.name, p.birthDate, p.motherName, " +
+        "c.duplicateId, d.name, d.birthDate, d.motherName, c.score, c.status, c.detectedDate) " +
+        "from DuplicateCandidate c, Patient p, Patient d where p.id = c.patientId and d.id = c.duplicateId " +
+        "and c.status = :status and c.score >= :minScore order by c.score desc, c.patientId, c.duplicateId",
+        countQuery = "select count(c) from DuplicateCandidate c where c.status = :status and c.score >= :minScore")
+    Page<DuplicateCandidateDTO> findAllByStatus(@Param("status") DuplicateStatus status, @Param("minScore") int minScore, Pageable pageable);
+
+    @Modifying
+    @Query("update DuplicateCandidate c set c.status = :status where c.patientId = :patientId and c.duplicateId = :duplicateId")
+    int updateStatus(@Param("patientId") Long patientId, @Param("duplicateId") Long duplicateId, @Param("status") DuplicateStatus status);
+
+    @Modifying
+    @Query("delete from DuplicateCandidate c where c.status = org.liber.domain.enums.DuplicateStatus.PENDING")
+    void deleteAllPending();
+
+    @Modifying
+    @Query("delete from DuplicateCandidate c where c.status = org.liber.domain.enums.DuplicateStatus.PENDING and (c.patientId = :patientId or c.duplicateId = :patientId)")
+    void deletePendingOf(@Param("patientId") Long patientId);
+
+    /**
+     * Adds a candidate, leaving a pair already known, dismissed or not, as it is.
+     */
+    @Modifying
+    @Query(value = "insert into duplicate_candidate (patient_id, duplicate_id, score, status, detected_date) " +
+        "values (:patientId, :duplicateId, :score, 'PENDING', :now) on conflict (patient_id, duplicate_id) do nothing", nativeQuery = true)
+    void insertPending(@Param("patientId") Long patientId, @Param("duplicateId") Long duplicateId, @Param("score") int score, @Param("now") Instant now);
+
+    @Modifying
+    @Query(value = "delete from patient_match_key", nativeQuery = true)
+    void deleteAllMatchKeys();
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "delete from patient_match_key where patient_id = :patientId", nativeQuery = true)
+    void deleteMatchKeysOf(@Param("patientId") Long patientId);
+
+    /**
+     * Stores blocking keys in one statement, given as space separated {@code <patientId>|<key>} entries.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "insert into patient_match_key (match_key, patient_id) " +
+        "select distinct split_part(e, '|', 2), cast(split_part(e, '|', 1) as bigint) from unnest(string_to_array(:entries, ' ')) e", nativeQuery = true)
+    void insertMatchKeys(@Param("entries") String entries);
+
+    /**
+     * Lists the keys shared by more than {@code maxBlockSize} patients, like a document number typed as zeros. Their
+     * patients are not compared: they would add many pairs and little evidence.
+     */
+    @Query(value = "select match_key from patient_match_key group by match_key having count(*) > :maxBlockSize", nativeQuery = true)
+    List<String> findOversizedKeys(@Param("maxBlockSize") int maxBlockSize);
+
+    /**
+     * Lists, as rows of lower and higher id, the pairs of patients sharing a key whose lower id is one of {@code ids}.
+     */
+    @Query(value = "select distinct a.patient_id as patient_id, b.patient_id as duplicate_id from patient_match_key a " +
+        "join patient_match_key b on b.match_key = a.match_key and b.patient_id > a.patient_id " +
+        "where a.patient_id in (:ids) and a.match_key not in (:excludedKeys)", nativeQuery = true)
+    List<Object[]> findPairs(@Param("ids") Collection<Long> ids, @Param("excludedKeys") Collection<String> excludedKeys);
+
+    /**
+     * Lists the patients sharing a key with a patient, skipping keys shared by more than {@code maxBlockSize}.
+     */
+    @Query(value = "select distinct o.patient_id from patient_match_key k " +
+        "join patient_match_key o on o.match_key = k.match_key and o.patient_id <> k.patient_id " +
+        "where k.patient_id = :patientId and (select count(*) from patient_match_key s where s.match_key = k.match_key) <= :maxBlockSize", nativeQuery = true)
+    List<Number> findMatchesOf(@Param("patientId") Long patientId, @Param("maxBlockSize") int maxBlockSize);
+}
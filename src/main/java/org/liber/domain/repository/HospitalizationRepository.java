@@ -24,10 +24,14 @@ import org.liber.domain.entities.HospitalizationPK;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface HospitalizationRepository extends JpaRepository<Hospitalization, HospitalizationPK> {
@@ -38,6 +42,35 @@ public interface HospitalizationRepository extends JpaRepository<Hospitalization
     @Query("select h from Hospitalization h where (:patientId is null or h.patient.id=:patientId) and (lower(h.patient.name) like lower(unaccent(cast(:patientName as string)))) and (cast(:startDate as timestamp) is null or h.startDate>=:startDate)")
     Page<Hospitalization> findAllByFilter(@Param("patientId") Long patientId, @Param("patientName") String patientName, @Param("startDate") Instant startDate, Pageable pageable);
 
+    /**
+     * Lists the hospitalizations of a patient starting before a day, newest first.
+     */
+    @Query("select h from Hospitalization h left join fetch h.releaseReason where h.patient.id=:patientId and h.startDate<:before order by h.startDate desc")
+    List<Hospitalization> findAllWithReleaseReasonByPatientId(@Param("patientId") Long patientId, @Param("before") LocalDate before, Pageable pageable);
+
+    @Query("select h from Hospitalization h join fetch h.patient p left join fetch h.releaseReason where h.lastModifiedDate<=:until and " +
+        "(h.lastModifiedDate>:afterDate or (h.lastModifiedDate=:afterDate and (p.id>:afterPatientId or (p.id=:afterPatientId and h.startDate>:afterStartDate)))) " +
+        "order by h.lastModifiedDate, p.id, h.startDate")
+    List<Hospitalization> findModifiedAfter(@Param("afterDate") Instant afterDate, @Param("afterPatientId") Long afterPatientId, @Param("afterStartDate") LocalDate afterStartDate,
+                                            @Param("until") Instant until, Pageable pageable);
+
     @Query("select h from Hospitalization h where h.patient.id=:patientId and h.endDate is null")
     Optional<Hospitalization> findCurrentByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * Moves the hospitalizations of a merged patient to the one it is merged into, but for those starting on a day
+     * the latter already has one.
+     */
+    @Modifying
+    @Query(value = "update hospitalization set patient_id = :toPatientId, last_modified_date = :now, version = version + 1 " +
+        "where patient_id = :fromPatientId and start_date not in (select h.start_date from hospitalization h where h.patient_id = :toPatientId)", nativeQuery = true)
+    int reassignPatient(@Param("fromPatientId") Long fromPatientId, @Param("toPatientId") Long toPatientId, @Param("now") Instant now);
+
+    @Modifying
+    @Query(value = "delete from hospitalization where patient_id = :patientId", nativeQuery = true)
+    int deleteAllByPatientId(@Param("patientId") Long patientId);
+
+    @Modifying
+    @Query(value = "delete from hospitalization where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
 }
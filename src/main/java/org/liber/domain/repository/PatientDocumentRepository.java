@@ -22,7 +22,49 @@ package org.liber.domain.repository;
 import org.liber.domain.entities.PatientDocument;
 import org.liber.domain.entities.PatientDocumentPK;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface PatientDocumentRepository extends JpaRepository<PatientDocument, PatientDocumentPK> {
 
+    /**
+     * Reads the documents of patients as rows of patient id, document type id and normalized value.
+     */
+    @Query("select d.patient.id, d.document.id, d.normalizedValue from PatientDocument d where d.patient.id in :patientIds")
+    List<Object[]> findValuesByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    /**
+     * Finds the patients having a document, by its type and {@link PatientDocument#normalize normalized} value.
+     */
+    @Query("select d.patient.id from PatientDocument d where d.document.id = :documentId and d.normalizedValue = :normalizedValue")
+    List<Long> findPatientIdsByDocument(@Param("documentId") Long documentId, @Param("normalizedValue") String normalizedValue);
+
+    /**
+     * Finds the patients having any of some documents, given as comma separated lists of document type ids and of
+     * their normalized values, in the same order.
+     */
+    @Query(value = "select d.patient_id from patient_document d " +
+        "join unnest(cast(string_to_array(:documentIds, ',') as bigint[]), string_to_array(:normalizedValues, ',')) as v(document_id, normalized_value) " +
+        "on d.document_id = v.document_id and d.normalized_value = v.normalized_value", nativeQuery = true)
+    List<Number> findPatientIdsByDocuments(@Param("documentIds") String documentIds, @Param("normalizedValues") String normalizedValues);
+
+    /**
+     * Moves the documents of a merged patient to the one it is merged into, but for the types the latter already has.
+     */
+    @Modifying
+    @Query(value = "update patient_document set patient_id = :toPatientId where patient_id = :fromPatientId " +
+        "and document_id not in (select d.document_id from patient_document d where d.patient_id = :toPatientId)", nativeQuery = true)
+    int reassignPatient(@Param("fromPatientId") Long fromPatientId, @Param("toPatientId") Long toPatientId);
+
+    @Modifying
+    @Query(value = "delete from patient_document where patient_id = :patientId", nativeQuery = true)
+    int deleteAllByPatientId(@Param("patientId") Long patientId);
+
+    @Modifying
+    @Query(value = "delete from patient_document where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
 }
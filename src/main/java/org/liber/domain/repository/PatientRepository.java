@@ -22,12 +22,89 @@ package org.liber.domain.repository;
 import org.liber.domain.entities.Patient;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface PatientRepository extends JpaRepository<Patient, Long> {
 
+    /**
+     * Condition on a patient {@code p} with nothing recorded since {@code :before}: neither it nor its reports
+     * changed since, and each of its hospitalizations ended and was last changed before it, archived ones included.
+     */
+    String INACTIVE_SINCE = "p.last_modified_date < :before " +
+        "and not exists (select 1 from hospitalization h where h.patient_id = p.id and (h.end_date is null or h.end_date >= :before or h.last_modified_date >= :before)) " +
+        "and not exists (select 1 from report r where r.patient_id = p.id and r.last_modified_date >= :before) " +
+        "and not exists (select 1 from hospitalization_archive h where h.patient_id = p.id and (h.end_date >= :before or h.last_modified_date >= :before)) " +
+        "and not exists (select 1 from report_archive r where r.patient_id = p.id and r.last_modified_date >= :before) ";
+
     @Query("select p from Patient p where lower(unaccent(cast(p.name as string))) like lower(unaccent(cast(:filter as string)))")
     Page<Patient> findAllByFilter(@Param("filter") String filter, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"documents", "documents.document", "birthPlace.state.country", "addressCity.state.country", "maritalStatus", "scholarity", "profession"})
+    Optional<Patient> findWithDocumentsById(Long id);
+
+    @Query("select p.lastModifiedDate, p.id from Patient p where p.lastModifiedDate<=:until and (p.lastModifiedDate>:afterDate or (p.lastModifiedDate=:afterDate and p.id>:afterId)) order by p.lastModifiedDate, p.id")
+    List<Object[]> findIdsModifiedAfter(@Param("afterDate") Instant afterDate, @Param("afterId") Long afterId, @Param("until") Instant until, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"documents", "documents.document", "maritalStatus", "scholarity", "profession"})
+    List<Patient> findAllWithDocumentsByIdIn(Collection<Long> ids);
+
+    /**
+     * Counts how many of the rows a patient refers to exist, in a single round trip. Cities and document types are
+     * given as comma separated lists of ids.
+     */
+    @Query(value = "select (select count(*) from city where id = any(cast(string_to_array(:cityIds, ',') as bigint[]))) " +
+        "+ (select count(*) from marital_status where id = :maritalStatusId) " +
+        "+ (select count(*) from scholarity where id = :scholarityId) " +
+        "+ (select count(*) from profession where id = :professionId) " +
+        "+ (select count(*) from document_type where id = any(cast(string_to_array(:documentIds, ',') as bigint[])))", nativeQuery = true)
+    long countExistingReferences(@Param("cityIds") String cityIds, @Param("maritalStatusId") Long maritalStatusId,
+                                 @Param("scholarityId") Long scholarityId, @Param("professionId") Long professionId,
+                                 @Param("documentIds") String documentIds);
+
+    @Query("select p.version from Patient p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select p.id from Patient p where p.id > :afterId order by p.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Reads what the duplicate detection compares as rows of id, name, mother name, birth date and sex.
+     */
+    @Query("select p.id, p.name, p.motherName, p.birthDate, p.sex from Patient p where p.id in :ids")
+    List<Object[]> findMatchFieldsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select p.id from patient p where p.id in (:ids) order by p.id for update", nativeQuery = true)
+    List<Number> lockPatients(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes a merged patient, left without dependent rows, without loading it.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "delete from patient where id = :id", nativeQuery = true)
+    int deleteMerged(@Param("id") Long id);
+
+    /**
+     * Deletes purged patients, once left without dependent rows.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "delete from patient where id in (:ids)", nativeQuery = true)
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select p.id from patient p where p.id > :afterId and " + INACTIVE_SINCE + "order by p.id", nativeQuery = true)
+    List<Number> findIdsInactiveSince(@Param("before") Instant before, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(value = "select p.id from patient p where p.id in (:ids) and " + INACTIVE_SINCE, nativeQuery = true)
+    List<Number> findIdsInactiveSinceByIdIn(@Param("before") Instant before, @Param("ids") Collection<Long> ids);
+
+    @Query(value = "select count(*) from patient p where " + INACTIVE_SINCE, nativeQuery = true)
+    long countInactiveSince(@Param("before") Instant before);
 }
@@ -20,6 +20,8 @@
 package org.liber.domain.repository;
 
 import org.liber.domain.entities.Report;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.service.dto.ReportSummaryDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -27,11 +29,64 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface ReportRepository extends JpaRepository<Report, Long> {
 
     Page<Report> findAllByPatientId(Long patientId, Pageable pageable);
 
+    List<Report> findAllByPatientIdAndStatusOrderByCreatedDateAscIdAsc(Long patientId, ReportStatus status);
+
+    @Query("select r.id, r.version from Report r where r.patient.id = :patientId and r.status = :status order by r.createdDate, r.id")
+    List<Object[]> findIdsAndVersionsByPatientIdAndStatus(@Param("patientId") Long patientId, @Param("status") ReportStatus status);
+
+    @Query("select r.id from Report r where r.patient.id in :patientIds")
+    List<Long> findIdsByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    @Modifying
+    @Query(value = "delete from report where patient_id in (:patientIds)", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+
+    /**
+     * Reads a page of the reports of a patient, newest first. The plain bound on the creation date lets PostgreSQL
+     * skip the partitions after it.
+     */
+    @Query("select new org.liber.service.dto.ReportSummaryDTO(r.id, r.patient.id, r.version, r.type, r.status, r.title, a.id, a.firstName, a.lastName, r.createdDate, r.lastModifiedDate) from Report r join r.author a " +
+        "where r.patient.id=:patientId and r.createdDate<=:before and (r.createdDate<:before or (r.createdDate=:before and r.id<:beforeId)) order by r.createdDate desc, r.id desc")
+    List<ReportSummaryDTO> findSummariesByPatientId(@Param("patientId") Long patientId, @Param("before") Instant before, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("select new org.liber.service.dto.ReportSummaryDTO(r.id, r.patient.id, r.version, r.type, r.status, r.title, a.id, a.firstName, a.lastName, r.createdDate, r.lastModifiedDate) from Report r join r.author a " +
+        "where r.lastModifiedDate<=:until and (r.lastModifiedDate>:afterDate or (r.lastModifiedDate=:afterDate and r.id>:afterId)) order by r.lastModifiedDate, r.id")
+    List<ReportSummaryDTO> findSummariesModifiedAfter(@Param("afterDate") Instant afterDate, @Param("afterId") Long afterId, @Param("until") Instant until, Pageable pageable);
+
+    @Query("select r.version from Report r where r.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select r.id from Report r where r.content is not null and function('octet_length', r.content) >= :thresholdBytes order by r.id")
+    List<Long> findIdsToCompress(@Param("thresholdBytes") long thresholdBytes, Pageable pageable);
+
+    @Query("select r.id from Report r where r.compressedContent is not null order by r.id")
+    List<Long> findIdsToDecompress(Pageable pageable);
+
+    /**
+     * Changes how the content is stored without changing the version, as the content itself is the same.
+     */
+    @Modifying
+    @Query("update Report r set r.content = :content, r.compressedContent = :compressedContent where r.id = :id and r.version = :version")
+    int updateContentStorage(@Param("id") Long id, @Param("version") Long version, @Param("content") String content, @Param("compressedContent") byte[] compressedContent);
+
+    /**
+     * Creates the partitions following the last one, each spanning a {@code step}, until {@code until} is covered.
+     *
+     * @return the number of partitions created.
+     */
+    @Query(value = "select create_report_partitions(:until, :step)", nativeQuery = true)
+    int createPartitions(@Param("until") Instant until, @Param("step") String step);
+
     @Modifying
-    @Query("delete from Report r where r.patient.id=:patientId")
-    void deleteByPatientId(@Param("patientId") Long patientId);
+    @Query(value = "update report set patient_id = :toPatientId, last_modified_date = :now, version = version + 1 where patient_id = :fromPatientId", nativeQuery = true)
+    int reassignPatient(@Param("fromPatientId") Long fromPatientId, @Param("toPatientId") Long toPatientId, @Param("now") Instant now);
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.ReportRevision;
+import org.liber.service.dto.ReportRevisionDTO;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReportRevisionRepository extends JpaRepository<ReportRevision, Long> {
+
+    @Query("select new org.liber.service.dto.ReportRevisionDTO(r.revision, r.snapshot, r.status, r.title, a.id, a.firstName, a.lastName, r.createdDate, r.contentLength, length(r.content)) " +
+        "from ReportRevision r join r.author a where r.report.id = :reportId order by r.revision desc")
+    List<ReportRevisionDTO> findDTOsByReportId(@Param("reportId") Long reportId);
+
+    /**
+     * Reads the latest revision number and the latest snapshot revision number of a report, both {@code null} when
+     * it has no revisions yet.
+     */
+    @Query("select max(r.revision), max(case when r.snapshot = true then r.revision else null end) from ReportRevision r where r.report.id = :reportId")
+    List<Object[]> findLatestRevisionsByReportId(@Param("reportId") Long reportId);
+
+    /**
+     * Reads the revisions needed to rebuild a revision: the closest snapshot at or before it, and every delta up to it.
+     */
+    @Query("select r from ReportRevision r join fetch r.author where r.report.id = :reportId and r.revision <= :revision and r.revision >= " +
+        "(select max(s.revision) from ReportRevision s where s.report.id = :reportId and s.snapshot = true and s.revision <= :revision) order by r.revision")
+    List<ReportRevision> findChainByReportIdAndRevision(@Param("reportId") Long reportId, @Param("revision") Integer revision);
+
+    @Modifying
+    @Query(value = "delete from report_revision where report_id = :reportId", nativeQuery = true)
+    int deleteAllByReportId(@Param("reportId") Long reportId);
+
+    @Modifying
+    @Query(value = "delete from report_revision where report_id in (select r.id from report r where r.patient_id in (:patientIds))", nativeQuery = true)
+    int deleteAllByPatientIdIn(@Param("patientIds") Collection<Long> patientIds);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.domain.repository;
+
+import org.liber.domain.entities.SyncTombstone;
+import org.liber.domain.enums.SyncEntityType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface SyncTombstoneRepository extends JpaRepository<SyncTombstone, Long> {
+
+    @Query("select t from SyncTombstone t where t.deletedDate<=:until and (t.deletedDate>:afterDate or (t.deletedDate=:afterDate and t.id>:afterId)) order by t.deletedDate, t.id")
+    List<SyncTombstone> findDeletedAfter(@Param("afterDate") Instant afterDate, @Param("afterId") Long afterId, @Param("until") Instant until, Pageable pageable);
+
+    @Modifying
+    @Query("delete from SyncTombstone t where t.entity=:entity and t.entityId=:entityId")
+    void deleteByEntity(@Param("entity") SyncEntityType entity, @Param("entityId") String entityId);
+
+    @Modifying
+    @Query("delete from SyncTombstone t where t.deletedDate<:before")
+    int deleteDeletedBefore(@Param("before") Instant before);
+
+    /**
+     * Lists the lookup rows changed in a window as entity, id and name. The lookup tables are small, so their
+     * changes are read in one go.
+     */
+    @Query(value =
+        "select 'DOCUMENT_TYPE', id, name from document_type where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'MARITAL_STATUS', id, name from marital_status where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'HOUSING_CONDITION', id, name from housing_condition where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'SCHOLARITY', id, name from scholarity where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'KINSHIP', id, name from kinship where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'PROFESSION', id, name from profession where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'JUSTICE_PROBLEM', id, name from justice_problem where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'HEALTH_PROBLEM', id, name from health_problem where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'DRUG', id, name from drug where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'CONTROLLED_MEDICATION', id, name from controlled_medication where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'OTHER_INSTITUTION', id, name from other_institution where last_modified_date > :since and last_modified_date <= :until " +
+        "union all select 'RELEASE_REASON', id, name from release_reason where last_modified_date > :since and last_modified_date <= :until ", nativeQuery = true)
+    List<Object[]> findLookupsModifiedBetween(@Param("since") Instant since, @Param("until") Instant until);
+
+    /**
+     * Records the deletion of the hospitalizations of a merged patient, under their old key.
+     */
+    @Modifying
+    @Query(value = "insert into sync_tombstone (id, entity, entity_id, deleted_date) " +
+        "select nextval('sync_tombstone_id_seq'), 'HOSPITALIZATION', cast(h.patient_id as varchar) || ':' || cast(cast(h.start_date as date) as varchar), :now " +
+        "from hospitalization h where h.patient_id = :patientId", nativeQuery = true)
+    int insertHospitalizationsOf(@Param("patientId") Long patientId, @Param("now") Instant now);
+
+    /**
+     * Forgets the deletion of the hospitalizations a merge is about to give the keys of {@code toPatientId}.
+     */
+    @Modifying
+    @Query(value = "delete from sync_tombstone where entity = 'HOSPITALIZATION' and entity_id in (" +
+        "select cast(:toPatientId as varchar) || ':' || cast(cast(h.start_date as date) as varchar) from hospitalization h where h.patient_id = :fromPatientId)", nativeQuery = true)
+    int deleteHospitalizationsReassigned(@Param("fromPatientId") Long fromPatientId, @Param("toPatientId") Long toPatientId);
+
+    /**
+     * Records the deletion of some patients.
+     */
+    @Modifying
+    @Query(value = "insert into sync_tombstone (id, entity, entity_id, deleted_date) " +
+        "select nextval('sync_tombstone_id_seq'), 'PATIENT', cast(p.id as varchar), :now from patient p where p.id in (:patientIds)", nativeQuery = true)
+    int insertPatients(@Param("patientIds") Collection<Long> patientIds, @Param("now") Instant now);
+}
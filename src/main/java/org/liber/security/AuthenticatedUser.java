@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * The principal of an authenticated request, carrying its authorities as an {@link AuthorityMask} computed once, so
+ * the authorization checks of the request do not go through the authority collection again.
+ */
+public class AuthenticatedUser extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int authorityMask;
+
+    public AuthenticatedUser(String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.authorityMask = AuthorityMask.of(authorities);
+    }
+
+    public int getAuthorityMask() {
+        return authorityMask;
+    }
+
+    /**
+     * @param authorities an {@link AuthorityMask}.
+     * @return whether the user has any of the authorities.
+     */
+    public boolean hasAnyAuthority(int authorities) {
+        return (authorityMask & authorities) != 0;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * One bit for each of the {@link AuthoritiesConstants}, so a set of authorities fits in an {@code int} and checking
+ * one against another is a single {@code &}. Authorities without a bit are left out of the masks.
+ */
+public final class AuthorityMask {
+
+    public static final int ADMIN = 1;
+    public static final int USER = 1 << 1;
+    public static final int ANONYMOUS = 1 << 2;
+    public static final int DENTIST = 1 << 3;
+    public static final int PSYCHOLOGIST = 1 << 4;
+    public static final int PSYCHIATRIST = 1 << 5;
+    public static final int SECRETARY = 1 << 6;
+    public static final int SOCIAL_ASSISTANT = 1 << 7;
+
+    /**
+     * The authorities allowed to read the reports of a patient.
+     */
+    public static final int CLINICAL_STAFF = DENTIST | PSYCHOLOGIST | PSYCHIATRIST | SOCIAL_ASSISTANT;
+
+    private AuthorityMask() {
+    }
+
+    /**
+     * @param authority the name of an authority.
+     * @return its bit, {@code 0} if it has none.
+     */
+    public static int of(String authority) {
+        if (authority == null)
+            return 0;
+        switch (authority) {
+            case AuthoritiesConstants.ADMIN:
+                return ADMIN;
+            case AuthoritiesConstants.USER:
+                return USER;
+            case AuthoritiesConstants.ANONYMOUS:
+                return ANONYMOUS;
+            case AuthoritiesConstants.DENTIST:
+                return DENTIST;
+            case AuthoritiesConstants.PSYCHOLOGIST:
+                return PSYCHOLOGIST;
+            case AuthoritiesConstants.PSYCHIATRIST:
+                return PSYCHIATRIST;
+            case AuthoritiesConstants.SECRETARY:
+                return SECRETARY;
+            case AuthoritiesConstants.SOCIAL_ASSISTANT:
+                return SOCIAL_ASSISTANT;
+            default:
+                return 0;
+        }
+    }
+
+    public static int of(Collection<? extends GrantedAuthority> authorities) {
+        int mask = 0;
+        for (GrantedAuthority authority : authorities)
+            mask |= of(authority.getAuthority());
+        return mask;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.security;
+
+import org.liber.config.ApplicationProperties;
+import org.liber.config.invalidation.InvalidationBus;
+import org.liber.config.invalidation.InvalidationListener;
+import org.liber.config.tenancy.TenantContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, short-lived cache of successful HTTP Basic authentications.
+ * <p>
+ * Entries are keyed by an HMAC of the credentials under a key generated at startup, so neither the password nor
+ * a digest that could be attacked offline is kept in memory. The tenant is part of the key, as the same login
+ * may exist in several tenants. The least recently used entry is dropped when the cache is full. Evictions reach the
+ * other instances through the {@link InvalidationBus}.
+ */
+@Component
+public class BasicAuthenticationCache implements InvalidationListener {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String CACHE = "basic-authentication";
+
+    private final ApplicationProperties.BasicAuthenticationCache properties;
+
+    private final InvalidationBus invalidationBus;
+
+    private final SecretKeySpec secret;
+
+    private final Map<String, Entry> entries;
+
+    public BasicAuthenticationCache(ApplicationProperties applicationProperties, InvalidationBus invalidationBus) {
+        this.properties = applicationProperties.getSecurity().getBasicAuthenticationCache();
+        this.invalidationBus = invalidationBus;
+        byte[] salt = new byte[32];
+        new SecureRandom().nextBytes(salt);
+        this.secret = new SecretKeySpec(salt, HMAC_ALGORITHM);
+        int maxEntries = properties.getMaxEntries();
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BasicAuthenticationCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        invalidationBus.subscribe(CACHE, this);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Gets the cached authentication for the credentials.
+     *
+     * @param login    the login sent by the client.
+     * @param password the password sent by the client.
+     * @return the authentication, or {@code null} if it is not cached or has expired.
+     */
+    public Authentication get(String login, String password) {
+        String key = key(TenantContext.getTenant(), login, password);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.nanoTime() < 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.authentication;
+        }
+    }
+
+    public void put(String login, String password, Authentication authentication) {
+        String tenant = TenantContext.getTenant();
+        Entry entry = new Entry(tenant, authentication, System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getTimeToLiveSeconds()));
+        String key = key(tenant, login, password);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes every cached authentication of the user of the current tenant.
+     *
+     * @param login the login of the user.
+     */
+    public void evict(String login) {
+        evict(TenantContext.getTenant(), login);
+    }
+
+    /**
+     * Removes the cached authentications of a user of a tenant.
+     *
+     * @param tenant the tenant.
+     * @param login  the login of the user, {@code null} for every user.
+     */
+    @Override
+    public void evict(String tenant, String login) {
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.tenant.equals(tenant) && (login == null || entry.authentication.getName().equalsIgnoreCase(login)));
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Removes every cached authentication of the user now and again, on every instance, once the current transaction
+     * commits, so a request authenticated against the old state in between can not leave a stale entry behind.
+     *
+     * @param login the login of the user.
+     */
+    public void evictAfterCommit(String login) {
+        evict(login);
+        invalidationBus.publishAfterCommit(CACHE, login);
+    }
+
+    private String key(String tenant, String login, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            mac.update((tenant + ":").getBytes(StandardCharsets.UTF_8));
+            mac.update((login.length() + ":" + login).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to compute the authentication cache key", e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String tenant;
+
+        private final Authentication authentication;
+
+        private final long expiresAt;
+
+        private Entry(String tenant, Authentication authentication, long expiresAt) {
+            this.tenant = tenant;
+            this.authentication = authentication;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.security;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * {@link AuthenticationManager} answering repeated username/password authentications from the
+ * {@link BasicAuthenticationCache} before falling back to its delegate.
+ */
+public class CachingAuthenticationManager implements AuthenticationManager {
+
+    private final AuthenticationManager delegate;
+
+    private final BasicAuthenticationCache cache;
+
+    public CachingAuthenticationManager(AuthenticationManager delegate, BasicAuthenticationCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!cache.isEnabled() || !(authentication instanceof UsernamePasswordAuthenticationToken)
+            || !(authentication.getCredentials() instanceof String)) {
+            return delegate.authenticate(authentication);
+        }
+        String login = authentication.getName();
+        // the delegate may erase the credentials, keep them for the cache key
+        String password = (String) authentication.getCredentials();
+        Authentication cached = cache.get(login, password);
+        if (cached != null) {
+            return cached;
+        }
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            cache.put(login, password, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.security;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory counter of events per key whose values decay exponentially over time.
+ * <p>
+ * Keys are spread over independently locked stripes, each one a small fixed-size table. When a stripe is
+ * full the entry with the lowest decayed score is replaced, so memory stays bounded no matter how many
+ * distinct keys are seen, and an attacker flooding new keys can only evict counters that are already cold.
+ */
+public class DecayingCounter {
+
+    private static final double FORGET_BELOW = 0.01;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    private final double decayPerNano;
+
+    private final LongSupplier nanoClock;
+
+    public DecayingCounter(int stripes, int entriesPerStripe, long halfLifeNanos) {
+        this(stripes, entriesPerStripe, halfLifeNanos, System::nanoTime);
+    }
+
+    DecayingCounter(int stripes, int entriesPerStripe, long halfLifeNanos, LongSupplier nanoClock) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe(Math.max(1, entriesPerStripe));
+        }
+        this.stripeMask = size - 1;
+        this.decayPerNano = Math.log(2) / halfLifeNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Adds one event to the key.
+     *
+     * @param key the key.
+     * @return the decayed score after the increment.
+     */
+    public double increment(String key) {
+        Stripe stripe = stripeFor(key);
+        long now = nanoClock.getAsLong();
+        synchronized (stripe) {
+            int slot = stripe.find(key);
+            if (slot < 0) {
+                slot = stripe.coldestSlot(now, decayPerNano);
+                stripe.keys[slot] = key;
+                stripe.scores[slot] = 0;
+            }
+            double score = stripe.decayed(slot, now, decayPerNano) + 1;
+            stripe.scores[slot] = score;
+            stripe.stamps[slot] = now;
+            return score;
+        }
+    }
+
+    /**
+     * Gets the current decayed score of the key.
+     *
+     * @param key the key.
+     * @return the score, {@code 0} if the key is unknown.
+     */
+    public double get(String key) {
+        Stripe stripe = stripeFor(key);
+        long now = nanoClock.getAsLong();
+        synchronized (stripe) {
+            int slot = stripe.find(key);
+            return slot < 0 ? 0 : stripe.decayed(slot, now, decayPerNano);
+        }
+    }
+
+    public void reset(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int slot = stripe.find(key);
+            if (slot >= 0) {
+                stripe.keys[slot] = null;
+                stripe.scores[slot] = 0;
+            }
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & stripeMask];
+    }
+
+    private static final class Stripe {
+
+        private final String[] keys;
+        private final double[] scores;
+        private final long[] stamps;
+
+        private Stripe(int size) {
+            keys = new String[size];
+            scores = new double[size];
+            stamps = new long[size];
+        }
+
+        private int find(String key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private double decayed(int slot, long now, double decayPerNano) {
+            return scores[slot] * Math.exp(-decayPerNano * (now - stamps[slot]));
+        }
+
+        private int coldestSlot(long now, double decayPerNano) {
+            int coldest = 0;
+            double coldestScore = Double.MAX_VALUE;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == null) {
+                    return i;
+                }
+                double score = decayed(i, now, decayPerNano);
+                if (score < FORGET_BELOW) {
+                    return i;
+                }
+                if (score < coldestScore) {
+                    coldestScore = score;
+                    coldest = i;
+                }
+            }
+            return coldest;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.TenantContext;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles authentication attempts per login and per client address.
+ */
+@Component
+public class LoginAttemptThrottle {
+
+    private final ApplicationProperties.LoginThrottle properties;
+
+    private final DecayingCounter loginFailures;
+
+    private final DecayingCounter ipFailures;
+
+    private final Counter throttled;
+
+    public LoginAttemptThrottle(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getSecurity().getLoginThrottle();
+        long halfLife = TimeUnit.SECONDS.toNanos(properties.getHalfLifeSeconds());
+        this.loginFailures = new DecayingCounter(properties.getStripes(), properties.getEntriesPerStripe(), halfLife);
+        this.ipFailures = new DecayingCounter(properties.getStripes(), properties.getEntriesPerStripe(), halfLife);
+        this.throttled = meterRegistry.counter("liber.login.throttled");
+    }
+
+    /**
+     * Gets how long a client has to wait before trying again. A login or address is blocked while its score is
+     * above one failure less than its limit, that is from the attempt after the failure reaching the limit, and
+     * released once the score decays back to it.
+     *
+     * @param login the login being authenticated.
+     * @param ip    the client address.
+     * @return the seconds to wait, {@code 0} if the attempt may go on.
+     */
+    public long getRetryAfterSeconds(String login, String ip) {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+        long retryAfter = Math.max(secondsUntilReleased(loginFailures.get(loginKey(login)), properties.getMaxFailuresPerLogin()),
+            secondsUntilReleased(ipFailures.get(ip), properties.getMaxFailuresPerIp()));
+        if (retryAfter > 0) {
+            throttled.increment();
+        }
+        return retryAfter;
+    }
+
+    public void recordFailure(String login, String ip) {
+        if (properties.isEnabled()) {
+            loginFailures.increment(loginKey(login));
+            ipFailures.increment(ip);
+        }
+    }
+
+    public void recordSuccess(String login) {
+        loginFailures.reset(loginKey(login));
+    }
+
+    private long secondsUntilReleased(double score, int maxFailures) {
+        // failures decay a little between attempts, so reaching the limit leaves the score just below it
+        double release = Math.max(maxFailures - 1, 0.5);
+        if (score <= release) {
+            return 0;
+        }
+        return (long) Math.ceil(properties.getHalfLifeSeconds() * Math.log(score / release) / Math.log(2));
+    }
+
+    private String loginKey(String login) {
+        // the same login may exist in several tenants
+        return TenantContext.getTenant() + ":" + (login == null ? "" : login.toLowerCase(Locale.ENGLISH));
+    }
+}
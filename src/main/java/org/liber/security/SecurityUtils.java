@@ -26,7 +26,10 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -79,8 +82,7 @@ public final class SecurityUtils {
      */
     public static boolean isAuthenticated() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return authentication != null &&
-            getAuthorities(authentication).noneMatch(AuthoritiesConstants.ANONYMOUS::equals);
+        return authentication != null && (getAuthorityMask(authentication) & AuthorityMask.ANONYMOUS) == 0;
     }
 
     /**
@@ -92,9 +94,54 @@ public final class SecurityUtils {
      * @return true if the current user has the authority, false otherwise.
      */
     public static boolean isCurrentUserInRole(String... authority) {
+        int authorities = 0;
+        for (String name : authority) {
+            int bit = AuthorityMask.of(name);
+            if (bit == 0) {
+                Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                return authentication != null &&
+                    getAuthorities(authentication).anyMatch(e -> Arrays.asList(authority).contains(e));
+            }
+            authorities |= bit;
+        }
+        return isCurrentUserInAnyRole(authorities);
+    }
+
+    /**
+     * If the current user has any of the authorities of a mask.
+     *
+     * @param authorities the {@link AuthorityMask} to check.
+     * @return true if the current user has any of the authorities, false otherwise.
+     */
+    public static boolean isCurrentUserInAnyRole(int authorities) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return authentication != null &&
-            getAuthorities(authentication).anyMatch(e -> Arrays.asList(authority).contains(e));
+        return authentication != null && (getAuthorityMask(authentication) & authorities) != 0;
+    }
+
+    /**
+     * Get the {@link AuthorityMask} of an authentication, precomputed when its principal is an
+     * {@link AuthenticatedUser}.
+     *
+     * @param authentication the authentication.
+     * @return the mask of its authorities.
+     */
+    public static int getAuthorityMask(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedUser)
+            return ((AuthenticatedUser) authentication.getPrincipal()).getAuthorityMask();
+        return AuthorityMask.of(authentication.getAuthorities());
+    }
+
+    /**
+     * Get the authorities of the current user.
+     *
+     * @return the authorities of the current user, empty if there is none.
+     */
+    public static Set<String> getCurrentUserAuthorities() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return Collections.emptySet();
+        }
+        return getAuthorities(authentication).collect(Collectors.toSet());
     }
 
     private static Stream<String> getAuthorities(Authentication authentication) {
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.security.jwt;
+
+import io.github.jhipster.config.JHipsterProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.ForEachTenant;
+import org.liber.config.tenancy.TenantContext;
+import org.liber.domain.entities.TokenRevocation;
+import org.liber.domain.repository.TokenRevocationRepository;
+import org.liber.utils.BloomFilter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The revoked JWTs, either every token of a user issued up to some instant or a single token by its id.
+ * <p>
+ * Revocations are stored in the {@code token_revocation} table and kept in memory per tenant, in a Bloom filter in
+ * front of an exact map, so checking a token costs a few bit tests and, for the few users with a revocation, a map
+ * lookup, without touching the database. Every instance reads the revocations made by the others every
+ * {@code application.security.token-revocation.refresh-millis}. A revocation is dropped once every token it revokes
+ * has expired.
+ */
+@Slf4j
+@Component
+public class RevokedTokens {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private static final String LOGIN_PREFIX = "login:";
+
+    private static final String TOKEN_PREFIX = "token:";
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+
+    private final ApplicationProperties.TokenRevocation properties;
+
+    private final Duration maxTokenValidity;
+
+    private final Map<String, Revocations> tenants = new ConcurrentHashMap<>();
+
+    public RevokedTokens(TokenRevocationRepository tokenRevocationRepository, ApplicationProperties applicationProperties,
+                         JHipsterProperties jHipsterProperties) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.properties = applicationProperties.getSecurity().getTokenRevocation();
+        JHipsterProperties.Security.Authentication.Jwt jwt = jHipsterProperties.getSecurity().getAuthentication().getJwt();
+        this.maxTokenValidity = Duration.ofSeconds(Math.max(jwt.getTokenValidityInSeconds(), jwt.getTokenValidityInSecondsForRememberMe()));
+    }
+
+    /**
+     * Checks a token against the revocations of its tenant.
+     *
+     * @param tenant   the tenant the token was issued for.
+     * @param login    the subject of the token.
+     * @param tokenId  the id of the token, {@code null} for tokens issued without one.
+     * @param issuedAt when the token was issued, {@code null} for tokens issued without it.
+     * @return whether the token was revoked.
+     */
+    public boolean isRevoked(String tenant, String login, String tokenId, Instant issuedAt) {
+        Revocations revocations = revocations(tenant);
+        if (tokenId != null && revocations.find(TOKEN_PREFIX + tokenId) != null)
+            return true;
+        if (login == null)
+            return false;
+        Revocation revocation = revocations.find(LOGIN_PREFIX + login.toLowerCase(Locale.ROOT));
+        return revocation != null && !(issuedAt == null ? Instant.EPOCH : issuedAt).isAfter(revocation.revokedBefore);
+    }
+
+    /**
+     * Revokes every token of a user of the current tenant issued until now, once the current transaction commits.
+     *
+     * @param login the login of the user.
+     */
+    @Transactional
+    public void revokeUser(String login) {
+        Instant now = Instant.now();
+        TokenRevocation revocation = new TokenRevocation();
+        revocation.setLogin(login.toLowerCase(Locale.ROOT));
+        revocation.setRevokedBefore(now);
+        revocation.setExpiresAt(now.plus(maxTokenValidity));
+        save(revocation);
+    }
+
+    /**
+     * Revokes a single token of the current tenant, once the current transaction commits.
+     *
+     * @param tokenId   the id of the token.
+     * @param expiresAt when the token expires.
+     */
+    @Transactional
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        TokenRevocation revocation = new TokenRevocation();
+        revocation.setTokenId(tokenId);
+        revocation.setRevokedBefore(revocation.getCreatedDate());
+        revocation.setExpiresAt(expiresAt);
+        save(revocation);
+    }
+
+    private void save(TokenRevocation revocation) {
+        tokenRevocationRepository.save(revocation);
+        String tenant = TenantContext.getTenant();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            revocations(tenant).add(revocation);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                revocations(tenant).add(revocation);
+            }
+        });
+    }
+
+    /**
+     * Reads the revocations made since the last refresh, by this or any other instance, and drops the expired ones.
+     * Rows are read from {@code overlap-seconds} before the last refresh, as a revocation becomes visible only when
+     * its transaction commits, some time after its creation date.
+     */
+    @Scheduled(fixedDelayString = "${application.security.token-revocation.refresh-millis:5000}")
+    @ForEachTenant
+    public void refresh() {
+        String tenant = TenantContext.getTenant();
+        Revocations revocations = tenants.get(tenant);
+        if (revocations == null) {
+            revocations(tenant);
+            return;
+        }
+        Instant now = Instant.now();
+        Instant since = revocations.refreshedAt.minusSeconds(properties.getOverlapSeconds());
+        revocations.addAll(tokenRevocationRepository.findAllInForceCreatedSince(since, now), now);
+        revocations.removeExpired(now);
+    }
+
+    /**
+     * Deletes the revocations whose tokens have all expired.
+     */
+    @Scheduled(cron = "${application.security.token-revocation.cleanup-cron:0 15 4 * * ?}")
+    @ForEachTenant
+    @Transactional
+    public void deleteExpired() {
+        int deleted = tokenRevocationRepository.deleteExpired(Instant.now());
+        if (deleted > 0)
+            log.debug("Deleted {} expired token revocations", deleted);
+    }
+
+    private Revocations revocations(String tenant) {
+        Revocations revocations = tenants.get(tenant);
+        if (revocations != null)
+            return revocations;
+        synchronized (tenants) {
+            revocations = tenants.get(tenant);
+            if (revocations == null) {
+                Revocations loaded = new Revocations();
+                Instant now = Instant.now();
+                TenantContext.runAs(tenant, () -> loaded.addAll(tokenRevocationRepository.findAllInForce(now), now));
+                tenants.put(tenant, loaded);
+                revocations = loaded;
+            }
+            return revocations;
+        }
+    }
+
+    private static String key(TokenRevocation revocation) {
+        return revocation.getTokenId() != null ? TOKEN_PREFIX + revocation.getTokenId() : LOGIN_PREFIX + revocation.getLogin();
+    }
+
+    /**
+     * The revocations of one tenant. Reads take no lock; writes are serialized, so the filter is never swapped
+     * for a rebuilt one missing a key just added.
+     */
+    private static final class Revocations {
+
+        private final Map<String, Revocation> exact = new ConcurrentHashMap<>();
+
+        private volatile BloomFilter filter = new BloomFilter(INITIAL_CAPACITY, FALSE_POSITIVE_RATE);
+
+        private volatile Instant refreshedAt = Instant.EPOCH;
+
+        private Revocation find(String key) {
+            return filter.mightContain(key) ? exact.get(key) : null;
+        }
+
+        private synchronized void add(TokenRevocation revocation) {
+            String key = key(revocation);
+            exact.merge(key, new Revocation(revocation.getRevokedBefore(), revocation.getExpiresAt()), Revocation::latest);
+            if (exact.size() > filter.getCapacity())
+                rebuild();
+            else
+                filter.add(key);
+        }
+
+        private synchronized void addAll(List<TokenRevocation> revocations, Instant readAt) {
+            revocations.forEach(this::add);
+            refreshedAt = readAt;
+        }
+
+        private synchronized void removeExpired(Instant now) {
+            if (exact.values().removeIf(revocation -> !revocation.expiresAt.isAfter(now)))
+                rebuild();
+        }
+
+        private void rebuild() {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < exact.size() * 2)
+                capacity *= 2;
+            BloomFilter rebuilt = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+            exact.keySet().forEach(rebuilt::add);
+            filter = rebuilt;
+        }
+    }
+
+    private static final class Revocation {
+
+        private final Instant revokedBefore;
+
+        private final Instant expiresAt;
+
+        private Revocation(Instant revokedBefore, Instant expiresAt) {
+            this.revokedBefore = revokedBefore;
+            this.expiresAt = expiresAt;
+        }
+
+        private Revocation latest(Revocation other) {
+            return new Revocation(revokedBefore.isAfter(other.revokedBefore) ? revokedBefore : other.revokedBefore,
+                expiresAt.isAfter(other.expiresAt) ? expiresAt : other.expiresAt);
+        }
+    }
+}
@@ -21,17 +21,19 @@ package org.liber.security.jwt;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 
+import org.liber.config.tenancy.TenantContext;
+import org.liber.security.AuthenticatedUser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -47,6 +49,10 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String TENANT_KEY = "tenant";
+
+    private static final String ISSUED_AT_MILLIS_KEY = "iat_ms";
+
     private Key key;
 
     private long tokenValidityInMilliseconds;
@@ -55,8 +61,11 @@ public class TokenProvider {
 
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final RevokedTokens revokedTokens;
+
+    public TokenProvider(JHipsterProperties jHipsterProperties, RevokedTokens revokedTokens) {
         this.jHipsterProperties = jHipsterProperties;
+        this.revokedTokens = revokedTokens;
     }
 
     @PostConstruct
@@ -84,7 +93,8 @@ public class TokenProvider {
             .map(GrantedAuthority::getAuthority)
             .collect(Collectors.joining(","));
 
-        long now = (new Date()).getTime();
+        Date issuedAt = new Date();
+        long now = issuedAt.getTime();
         Date validity;
         if (rememberMe) {
             validity = new Date(now + this.tokenValidityInMillisecondsForRememberMe);
@@ -93,13 +103,20 @@ public class TokenProvider {
         }
 
         return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
+            .setIssuedAt(issuedAt)
+            .claim(ISSUED_AT_MILLIS_KEY, now)
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
+            .claim(TENANT_KEY, TenantContext.getTenant())
             .signWith(key, SignatureAlgorithm.HS512)
             .setExpiration(validity)
             .compact();
     }
 
+    /**
+     * Gets the authentication of a token; its details are the tenant the token was issued for.
+     */
     public Authentication getAuthentication(String token) {
         Claims claims = Jwts.parserBuilder()
             .setSigningKey(key)
@@ -112,19 +129,55 @@ public class TokenProvider {
                 .map(SimpleGrantedAuthority::new)
                 .collect(Collectors.toList());
 
-        User principal = new User(claims.getSubject(), "", authorities);
+        AuthenticatedUser principal = new AuthenticatedUser(claims.getSubject(), "", authorities);
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        authentication.setDetails(tenant(claims));
+        return authentication;
     }
 
+    /**
+     * Checks the signature and expiration of a token, and that it was not revoked.
+     */
     public boolean validateToken(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken).getBody();
+            if (!revokedTokens.isRevoked(tenant(claims), claims.getSubject(), claims.getId(), issuedAt(claims)))
+                return true;
+            log.info("Revoked JWT token.");
         } catch (JwtException | IllegalArgumentException e) {
             log.info("Invalid JWT token.");
             log.trace("Invalid JWT token trace.", e);
         }
         return false;
     }
+
+    /**
+     * Revokes a valid token, so it is rejected from then on although it has not expired.
+     *
+     * @return whether the token could be revoked; tokens issued without an id can not.
+     */
+    public boolean revoke(String authToken) {
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken).getBody();
+        if (claims.getId() == null)
+            return false;
+        TenantContext.runAs(tenant(claims), () -> revokedTokens.revokeToken(claims.getId(), claims.getExpiration().toInstant()));
+        return true;
+    }
+
+    /**
+     * Gets when a token was issued, to the millisecond, so a user revocation spares the tokens issued later in the
+     * same second. Tokens issued before that claim only have {@code iat}, in whole seconds.
+     */
+    private static Instant issuedAt(Claims claims) {
+        Long millis = claims.get(ISSUED_AT_MILLIS_KEY, Long.class);
+        if (millis != null)
+            return Instant.ofEpochMilli(millis);
+        return claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant();
+    }
+
+    private static String tenant(Claims claims) {
+        String tenant = claims.get(TENANT_KEY, String.class);
+        return tenant == null ? TenantContext.DEFAULT_TENANT : tenant;
+    }
 }
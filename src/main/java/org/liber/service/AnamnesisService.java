@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import org.liber.domain.entities.*;
+import org.liber.domain.repository.*;
+import org.liber.service.dto.AnamnesisDTO;
+import org.liber.service.errors.BadRequestAlertException;
+import org.liber.service.errors.NotFoundAlertException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for managing anamneses.
+ * <p>
+ * The link collections are never replaced, only changed in place through their set difference, so Hibernate
+ * writes just the rows that changed, in JDBC batches, instead of rewriting whole join tables. Reads skip the
+ * entity graph and take two queries whatever the number of links: the scalar columns and one {@code UNION ALL}
+ * over the link tables.
+ */
+@Service
+@RequiredArgsConstructor
+public class AnamnesisService {
+
+    private final AnamnesisRepository anamnesisRepository;
+    private final PatientRepository patientRepository;
+    private final DrugRepository drugRepository;
+    private final HousingConditionRepository housingConditionRepository;
+    private final KinshipRepository kinshipRepository;
+    private final JusticeProblemRepository justiceProblemRepository;
+    private final ControlledMedicationRepository controlledMedicationRepository;
+    private final HealthProblemRepository healthProblemRepository;
+    private final OtherInstitutionRepository otherInstitutionRepository;
+    private final DrugUseAnalyticsService drugUseAnalyticsService;
+
+    @Transactional
+    public Anamnesis create(AnamnesisDTO dto) {
+        if (dto.getId() != null)
+            throw new BadRequestAlertException("A new anamnesis cannot already have an ID", "anamnesis", "idexists");
+        if (!patientRepository.existsById(dto.getPatientId()))
+            throw new BadRequestAlertException("Patient not found", "anamnesis", "patientNotFound");
+        Anamnesis entity = new Anamnesis();
+        entity.setPatient(patientRepository.getOne(dto.getPatientId()));
+        load(dto, entity);
+        entity = anamnesisRepository.save(entity);
+        applyOtherInstitutions(entity, dto.getOtherInstitutions());
+        drugUseAnalyticsService.refreshPatient(dto.getPatientId());
+        return entity;
+    }
+
+    @Transactional
+    public Anamnesis update(AnamnesisDTO dto) {
+        if (dto.getId() == null)
+            throw new BadRequestAlertException("A new anamnesis cannot have a null id", "anamnesis", "idnull");
+        Anamnesis entity = anamnesisRepository.findById(dto.getId())
+            .orElseThrow(() -> new NotFoundAlertException("No anamnesis found with provided ID", "anamnesis", "anamnesisNotFound"));
+        if (!entity.getPatient().getId().equals(dto.getPatientId()))
+            throw new BadRequestAlertException("The patient of an anamnesis cannot be changed", "anamnesis", "patientChanged");
+        load(dto, entity);
+        applyOtherInstitutions(entity, dto.getOtherInstitutions());
+        drugUseAnalyticsService.refreshPatient(dto.getPatientId());
+        return entity;
+    }
+
+    private void load(AnamnesisDTO dto, Anamnesis entity) {
+        Set<Long> drugIds = new HashSet<>(nullToEmpty(dto.getDrugUsedIds()));
+        drugIds.add(dto.getFavoriteDrugId());
+        Map<Long, Drug> drugs = findAll(drugRepository, drugIds, Drug::getId, "drugNotFound");
+
+        entity.setOverdose(dto.getOverdose());
+        entity.setPsychoticBreak(dto.getPsychoticBreak());
+        entity.setDrugAbuseSeizure(dto.getDrugAbuseSeizure());
+        entity.setFavoriteDrug(drugs.get(dto.getFavoriteDrugId()));
+        entity.setDrugUseFrequence(dto.getDrugUseFrequence());
+        entity.setHousingCondition(housingConditionRepository.findById(dto.getHousingConditionId())
+            .orElseThrow(() -> new BadRequestAlertException("Housing condition not found", "anamnesis", "housingConditionNotFound")));
+        entity.setQuantityPeopleInHouse(dto.getQuantityPeopleInHouse());
+        entity.setFamilyIncome(dto.getFamilyIncome());
+        entity.setInGovernmentProgram(dto.getInGovernmentProgram());
+        entity.setLivesWithKinship(kinshipRepository.findById(dto.getLivesWithKinshipId())
+            .orElseThrow(() -> new BadRequestAlertException("Kinship not found", "anamnesis", "kinshipNotFound")));
+
+        applyDifference(entity.getDrugsUsed(), nullToEmpty(dto.getDrugUsedIds()).stream().map(drugs::get).collect(Collectors.toSet()));
+        applyDifference(entity.getJusticeProblems(), findAll(justiceProblemRepository, nullToEmpty(dto.getJusticeProblemIds()), JusticeProblem::getId, "justiceProblemNotFound").values());
+        applyDifference(entity.getControlledMedications(), findAll(controlledMedicationRepository, nullToEmpty(dto.getControlledMedicationIds()), ControlledMedication::getId, "controlledMedicationNotFound").values());
+        applyDifference(entity.getHealthProblems(), findAll(healthProblemRepository, nullToEmpty(dto.getHealthProblemIds()), HealthProblem::getId, "healthProblemNotFound").values());
+    }
+
+    /**
+     * Validates all the ids of a type with a single {@code IN} query.
+     */
+    private <T> Map<Long, T> findAll(JpaRepository<T, Long> repository, Set<Long> ids, Function<T, Long> idGetter, String errorKey) {
+        if (ids.isEmpty())
+            return Collections.emptyMap();
+        Map<Long, T> found = repository.findAllById(ids).stream().collect(Collectors.toMap(idGetter, Function.identity()));
+        if (found.size() != ids.size())
+            throw new BadRequestAlertException("Referenced ids not found: " + ids.stream().filter(id -> !found.containsKey(id)).collect(Collectors.toList()), "anamnesis", errorKey);
+        return found;
+    }
+
+    private static <T> void applyDifference(Set<T> current, Collection<T> target) {
+        current.retainAll(target);
+        current.addAll(target);
+    }
+
+    private void applyOtherInstitutions(Anamnesis entity, Map<Long, Integer> periods) {
+        Map<Long, Integer> target = periods == null ? Collections.emptyMap() : periods;
+        Map<Long, OtherInstitution> institutions = findAll(otherInstitutionRepository, target.keySet(), OtherInstitution::getId, "otherInstitutionNotFound");
+        Set<AnamnesisOtherInstitution> current = entity.getAnamnesisOtherInstitutions();
+        current.removeIf(link -> !target.containsKey(link.getId().getOtherInstitutionId()));
+        Map<Long, AnamnesisOtherInstitution> kept = current.stream()
+            .collect(Collectors.toMap(link -> link.getId().getOtherInstitutionId(), Function.identity()));
+        for (Map.Entry<Long, Integer> entry : target.entrySet()) {
+            AnamnesisOtherInstitution link = kept.get(entry.getKey());
+            if (link == null) {
+                link = new AnamnesisOtherInstitution();
+                link.setId(new AnamnesisOtherInstitutionPK(entity.getId(), entry.getKey()));
+                link.setAnamnesis(entity);
+                link.setOtherInstitution(institutions.get(entry.getKey()));
+                current.add(link);
+            }
+            link.setPeriodInDays(entry.getValue());
+        }
+    }
+
+    private static Set<Long> nullToEmpty(Set<Long> ids) {
+        return ids == null ? Collections.emptySet() : ids;
+    }
+
+    @Transactional(readOnly = true)
+    public AnamnesisDTO getAnamnesisById(Long id) {
+        List<AnamnesisDTO> found = anamnesisRepository.findDTOById(id);
+        if (found.isEmpty())
+            throw new NotFoundAlertException("No anamnesis found with provided ID", "anamnesis", "anamnesisNotFound");
+        return fillLinks(found).get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<AnamnesisDTO> getAllByPatientId(Long patientId) {
+        return fillLinks(anamnesisRepository.findDTOsByPatientId(patientId));
+    }
+
+    private List<AnamnesisDTO> fillLinks(List<AnamnesisDTO> anamneses) {
+        if (anamneses.isEmpty())
+            return anamneses;
+        Map<Long, AnamnesisDTO> byId = anamneses.stream().collect(Collectors.toMap(AnamnesisDTO::getId, Function.identity()));
+        for (Object[] row : anamnesisRepository.findLinksByIds(byId.keySet())) {
+            AnamnesisDTO dto = byId.get(((Number) row[0]).longValue());
+            Long referenceId = ((Number) row[2]).longValue();
+            switch ((String) row[1]) {
+                case "JUSTICE_PROBLEM":
+                    dto.getJusticeProblemIds().add(referenceId);
+                    break;
+                case "DRUG_USED":
+                    dto.getDrugUsedIds().add(referenceId);
+                    break;
+                case "CONTROLLED_MEDICATION":
+                    dto.getControlledMedicationIds().add(referenceId);
+                    break;
+                case "HEALTH_PROBLEM":
+                    dto.getHealthProblemIds().add(referenceId);
+                    break;
+                default:
+                    dto.getOtherInstitutions().put(referenceId, ((Number) row[3]).intValue());
+            }
+        }
+        return anamneses;
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        Anamnesis entity = anamnesisRepository.findById(id)
+            .orElseThrow(() -> new NotFoundAlertException("No anamnesis found with provided ID", "anamnesis", "anamnesisNotFound"));
+        anamnesisRepository.delete(entity);
+        drugUseAnalyticsService.refreshPatient(entity.getPatient().getId());
+    }
+}
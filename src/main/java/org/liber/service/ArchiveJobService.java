@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.ForEachTenant;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Service class archiving old reports and hospitalizations on a schedule, a batch per transaction with a pause in
+ * between, so the main tables are never locked for long and the database keeps up with the other work.
+ */
+@Slf4j
+@Service
+public class ArchiveJobService {
+
+    private final ArchiveService archiveService;
+    private final ApplicationProperties.Archive properties;
+
+    public ArchiveJobService(ArchiveService archiveService, ApplicationProperties applicationProperties) {
+        this.archiveService = archiveService;
+        this.properties = applicationProperties.getArchive();
+    }
+
+    /**
+     * Archives the finished hospitalizations and the reports unchanged for the configured number of years, if any.
+     */
+    @Scheduled(cron = "${application.archive.cron:0 30 3 * * ?}")
+    @ForEachTenant
+    public void archiveOld() {
+        if (properties.getAgeYears() <= 0)
+            return;
+        long start = System.currentTimeMillis();
+        Instant before = LocalDate.now(ZoneOffset.UTC).minusYears(properties.getAgeYears()).atStartOfDay(ZoneOffset.UTC).toInstant();
+        int reports = archiveInBatches(size -> archiveService.archiveReports(before, size));
+        int hospitalizations = archiveInBatches(size -> archiveService.archiveHospitalizations(before, size));
+        log.info("Archived {} reports and {} hospitalizations older than {} in {} ms", reports, hospitalizations, before,
+            System.currentTimeMillis() - start);
+    }
+
+    private int archiveInBatches(IntUnaryOperator batch) {
+        int total = 0;
+        for (int archived = batch.applyAsInt(properties.getBatchSize()); archived > 0; archived = batch.applyAsInt(properties.getBatchSize())) {
+            total += archived;
+            try {
+                Thread.sleep(properties.getPauseMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return total;
+    }
+}
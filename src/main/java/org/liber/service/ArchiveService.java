@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import org.liber.domain.repository.ArchivedHospitalizationRepository;
+import org.liber.domain.repository.ArchivedReportRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service class moving old reports and hospitalizations between the main tables and the archive ones.
+ * <p>
+ * Archived rows are read where the main ones are missed; to be changed, they are moved back first, and are archived
+ * again once they are old enough.
+ */
+@Service
+@RequiredArgsConstructor
+public class ArchiveService {
+
+    private final ArchivedReportRepository archivedReportRepository;
+    private final ArchivedHospitalizationRepository archivedHospitalizationRepository;
+
+    /**
+     * Archives a batch of reports unchanged since a date, with their revisions.
+     *
+     * @param before the date.
+     * @param size   the maximum number of reports.
+     * @return the number of reports archived.
+     */
+    @Transactional
+    public int archiveReports(Instant before, int size) {
+        List<Long> ids = ids(archivedReportRepository.lockIdsToArchive(before, size));
+        if (ids.isEmpty())
+            return 0;
+        archivedReportRepository.copyToArchive(ids, Instant.now());
+        archivedReportRepository.moveRevisionsToArchive(ids);
+        return archivedReportRepository.deleteHot(ids);
+    }
+
+    /**
+     * Archives a batch of hospitalizations finished and unchanged since a date.
+     *
+     * @param before the date.
+     * @param size   the maximum number of hospitalizations.
+     * @return the number of hospitalizations archived.
+     */
+    @Transactional
+    public int archiveHospitalizations(Instant before, int size) {
+        return archivedHospitalizationRepository.moveToArchive(before, size, Instant.now());
+    }
+
+    /**
+     * Moves an archived report back to the main tables, with its revisions.
+     *
+     * @param id the id of the report.
+     * @return whether it was archived.
+     */
+    @Transactional
+    public boolean restoreReport(Long id) {
+        return restoreReports(Collections.singletonList(id)) > 0;
+    }
+
+    /**
+     * Moves an archived hospitalization back to the main table.
+     *
+     * @param patientId the id of the patient.
+     * @param startDate the start date of the hospitalization.
+     * @return whether it was archived.
+     */
+    @Transactional
+    public boolean restoreHospitalization(Long patientId, LocalDate startDate) {
+        return archivedHospitalizationRepository.moveBack(patientId, startDate) > 0;
+    }
+
+    /**
+     * Moves every archived report and hospitalization of some patients back to the main tables.
+     *
+     * @param patientIds the ids of the patients.
+     */
+    @Transactional
+    public void restorePatients(Collection<Long> patientIds) {
+        List<Long> reportIds = archivedReportRepository.findIdsByPatientIdIn(patientIds);
+        if (!reportIds.isEmpty())
+            restoreReports(reportIds);
+        archivedHospitalizationRepository.moveBackByPatientIdIn(patientIds);
+    }
+
+    private int restoreReports(Collection<Long> ids) {
+        List<Long> locked = ids(archivedReportRepository.lockArchived(ids));
+        if (locked.isEmpty())
+            return 0;
+        archivedReportRepository.copyBack(locked);
+        archivedReportRepository.moveRevisionsBack(locked);
+        return archivedReportRepository.deleteArchived(locked);
+    }
+
+    private static List<Long> ids(List<Number> ids) {
+        return ids.stream().map(Number::longValue).collect(Collectors.toList());
+    }
+}
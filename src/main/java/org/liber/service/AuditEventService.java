@@ -21,6 +21,7 @@ package org.liber.service;
 
 import io.github.jhipster.config.JHipsterProperties;
 import org.liber.config.audit.AuditEventConverter;
+import org.liber.config.tenancy.ForEachTenant;
 import org.liber.domain.repository.PersistenceAuditEventRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +68,7 @@ public class AuditEventService {
      * This is scheduled to get fired at 12:00 (am).
      */
     @Scheduled(cron = "0 0 12 * * ?")
+    @ForEachTenant
     public void removeOldAuditEvents() {
         persistenceAuditEventRepository
             .findByAuditEventDateBefore(Instant.now().minus(jHipsterProperties.getAuditEvents().getRetentionPeriod(), ChronoUnit.DAYS))
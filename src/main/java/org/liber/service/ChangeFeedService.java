@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.TenantContext;
+import org.liber.domain.entities.Hospitalization;
+import org.liber.domain.entities.Patient;
+import org.liber.domain.entities.Report;
+import org.liber.domain.enums.ChangeEntityType;
+import org.liber.domain.enums.ChangeKind;
+import org.liber.security.SecurityUtils;
+import org.liber.service.dto.ChangeEventDTO;
+import org.liber.service.errors.TooManyRequestsAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the changes of patients, hospitalizations and reports to the clients of the change feed, so they don't
+ * have to poll the lists.
+ * <p>
+ * Events are published once their transaction commits and numbered with a sequence that starts at the boot time,
+ * so an id from before a restart is never mistaken for a current one. The last events are kept for clients
+ * resuming with {@code Last-Event-ID}; a client that can't be resumed from them gets a {@code reset} event and
+ * reloads its lists. Each client has a bounded queue drained by a small pool of sender threads: a client that
+ * falls that far behind is disconnected and resumes from the buffer when it reconnects, instead of holding events
+ * for everyone else. Clients only get the events of their own tenant.
+ */
+@Service
+public class ChangeFeedService implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    private final ApplicationProperties.ChangeFeed properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final ThreadPoolExecutor sender;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Deque<ChangeEventDTO> replayBuffer = new ArrayDeque<>();
+
+    private final Counter disconnected;
+
+    private long sequence = System.currentTimeMillis();
+
+    public ChangeFeedService(ApplicationProperties applicationProperties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getChangeFeed();
+        this.objectMapper = objectMapper;
+        this.sender = new ThreadPoolExecutor(properties.getSenderThreads(), properties.getSenderThreads(), 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), new CustomizableThreadFactory("liber-change-feed-"));
+        this.disconnected = meterRegistry.counter("liber.change.feed.slow.disconnected");
+        meterRegistry.gauge("liber.change.feed.subscribers", subscribers, Set::size);
+    }
+
+    public void patientChanged(Patient patient, ChangeKind kind) {
+        publishAfterCommit(ChangeEntityType.PATIENT, String.valueOf(patient.getId()), patient.getId(), kind, patient::getVersion);
+    }
+
+    public void patientDeleted(Long patientId) {
+        publishAfterCommit(ChangeEntityType.PATIENT, String.valueOf(patientId), patientId, ChangeKind.DELETED, () -> null);
+    }
+
+    public void hospitalizationChanged(Hospitalization hospitalization, ChangeKind kind) {
+        Long patientId = hospitalization.getPatient().getId();
+        publishAfterCommit(ChangeEntityType.HOSPITALIZATION, patientId + ":" + hospitalization.getStartDate(), patientId, kind,
+            kind == ChangeKind.DELETED ? () -> null : hospitalization::getVersion);
+    }
+
+    public void reportChanged(Report report, ChangeKind kind) {
+        publishAfterCommit(ChangeEntityType.REPORT, String.valueOf(report.getId()), report.getPatient().getId(), kind,
+            kind == ChangeKind.DELETED ? () -> null : report::getVersion);
+    }
+
+    /**
+     * Publishes the change once the current transaction commits, or right away without one. The version is read at
+     * that point, after the flush that incremented it.
+     */
+    private void publishAfterCommit(ChangeEntityType entity, String id, Long patientId, ChangeKind kind, Supplier<Long> version) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(entity, id, patientId, kind, version.get());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(entity, id, patientId, kind, version.get());
+            }
+        });
+    }
+
+    private void publish(ChangeEntityType entity, String id, Long patientId, ChangeKind kind, Long version) {
+        String tenant = TenantContext.getTenant();
+        synchronized (replayBuffer) {
+            ChangeEventDTO event = new ChangeEventDTO(++sequence, entity, id, patientId, kind, version, tenant);
+            replayBuffer.addLast(event);
+            if (replayBuffer.size() > properties.getReplayBufferSize())
+                replayBuffer.removeFirst();
+            if (subscribers.isEmpty())
+                return;
+            Frame frame = frame(event);
+            for (Subscriber subscriber : subscribers)
+                if (subscriber.tenant.equals(tenant) && entity.isReadableBy(subscriber.authorities))
+                    subscriber.offer(frame);
+        }
+    }
+
+    /**
+     * Subscribes the current user to the changes of the entities it can read.
+     * <p>
+     * The first event is a {@code ready} carrying the current sequence as its id, so a client that reconnects before
+     * any change still resumes from the right point. A client resuming with {@code Last-Event-ID} gets the changes it
+     * missed instead, or a {@code reset} when they are no longer buffered.
+     *
+     * @param lastEventId the id of the last event the client received, {@code null} on a first connection.
+     * @return the emitter of the events.
+     */
+    public ResponseBodyEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= properties.getMaxSubscribers())
+            throw new TooManyRequestsAlertException("Too many change feed subscribers", "changeFeed", "tooManySubscribers", 30);
+        EventStreamEmitter emitter = new EventStreamEmitter(properties.getTimeoutMillis());
+        Subscriber subscriber = new Subscriber(emitter, TenantContext.getTenant(), SecurityUtils.getCurrentUserAuthorities());
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        synchronized (replayBuffer) {
+            for (Frame frame : resume(lastEventId, subscriber.tenant, subscriber.authorities))
+                subscriber.offer(frame);
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    private List<Frame> resume(String lastEventId, String tenant, Set<String> authorities) {
+        List<Frame> frames = new ArrayList<>();
+        if (lastEventId == null) {
+            frames.add(signal("ready"));
+            return frames;
+        }
+        long last = parseSequence(lastEventId);
+        if (last == sequence)
+            return frames;
+        ChangeEventDTO first = replayBuffer.peekFirst();
+        if (first != null && last >= first.getSequence() - 1 && last < sequence) {
+            for (ChangeEventDTO event : replayBuffer)
+                if (event.getSequence() > last && event.getTenant().equals(tenant) && event.getEntity().isReadableBy(authorities))
+                    frames.add(frame(event));
+            if (frames.size() < properties.getSubscriberQueueCapacity())
+                return frames;
+            frames.clear();
+        }
+        frames.add(signal("reset"));
+        return frames;
+    }
+
+    private static long parseSequence(String eventId) {
+        try {
+            return Long.parseLong(eventId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Sends a comment to every client, keeping idle connections open through proxies and finding the ones that are
+     * gone.
+     */
+    @Scheduled(fixedRateString = "${application.change-feed.heartbeat-millis:15000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty())
+            return;
+        Frame heartbeat = new Frame(SseEmitter.event().comment("heartbeat"));
+        for (Subscriber subscriber : subscribers)
+            subscriber.offer(heartbeat);
+    }
+
+    /**
+     * Builds the frame of an event once, so it is serialized a single time for every subscriber.
+     */
+    private Frame frame(ChangeEventDTO event) {
+        try {
+            return new Frame(SseEmitter.event()
+                .id(String.valueOf(event.getSequence()))
+                .name("change")
+                .data(objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Frame signal(String name) {
+        return new Frame(SseEmitter.event()
+            .id(String.valueOf(sequence))
+            .name(name)
+            .data(String.valueOf(sequence)));
+    }
+
+    @Override
+    public void destroy() {
+        sender.shutdownNow();
+        for (Subscriber subscriber : subscribers)
+            subscriber.emitter.complete();
+    }
+
+    private final class Subscriber {
+
+        private final EventStreamEmitter emitter;
+
+        private final String tenant;
+
+        private final Set<String> authorities;
+
+        private final Queue<Frame> pending = new ArrayDeque<>();
+
+        private boolean sending;
+
+        private boolean closed;
+
+        private Subscriber(EventStreamEmitter emitter, String tenant, Set<String> authorities) {
+            this.emitter = emitter;
+            this.tenant = tenant;
+            this.authorities = authorities;
+        }
+
+        private synchronized void offer(Frame frame) {
+            if (closed)
+                return;
+            if (pending.size() >= properties.getSubscriberQueueCapacity()) {
+                log.debug("Disconnecting a change feed client that is {} events behind", pending.size());
+                disconnected.increment();
+                close();
+                emitter.complete();
+                return;
+            }
+            pending.add(frame);
+            if (sending)
+                return;
+            try {
+                sender.execute(this::send);
+                sending = true;
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        private void send() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    frame = closed ? null : pending.poll();
+                    if (frame == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(frame);
+                } catch (IOException | IllegalStateException e) {
+                    // the container completes the emitter of a broken connection on its own
+                    close();
+                } catch (RuntimeException e) {
+                    log.warn("Disconnecting a change feed client that failed to send an event", e);
+                    close();
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            pending.clear();
+            subscribers.remove(this);
+        }
+    }
+
+    /**
+     * An event formatted once and sent as is to every subscriber.
+     */
+    private static final class Frame {
+
+        private final String text;
+
+        private Frame(SseEmitter.SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build())
+                text.append(part.getData());
+            this.text = text.toString();
+        }
+    }
+
+    /**
+     * An event stream sending frames already formatted. A {@link SseEmitter} formats every event it sends, so it can
+     * not send a frame shared between subscribers.
+     */
+    private static final class EventStreamEmitter extends ResponseBodyEmitter {
+
+        private static final MediaType TEXT_PLAIN = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+        private EventStreamEmitter(Long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        protected void extendResponse(ServerHttpResponse outputMessage) {
+            super.extendResponse(outputMessage);
+            if (outputMessage.getHeaders().getContentType() == null)
+                outputMessage.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        }
+
+        private void send(Frame frame) throws IOException {
+            send(frame.text, TEXT_PLAIN);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.liber.service;
 
 import lombok.RequiredArgsConstructor;
 import org.liber.domain.entities.DocumentType;
+import org.liber.domain.enums.SyncEntityType;
 import org.liber.domain.repository.DocumentTypeRepository;
 import org.liber.service.dto.CommonDTO;
 import org.liber.service.errors.BadRequestAlertException;
@@ -37,6 +38,7 @@ import java.util.Optional;
 public class DocumentTypeService {
 
     private final DocumentTypeRepository repository;
+    private final SyncService syncService;
 
     @Transactional
     public DocumentType create(CommonDTO dto) {
@@ -62,5 +64,6 @@ public class DocumentTypeService {
     @Transactional
     public void delete(Long id) {
         repository.deleteById(id);
+        syncService.recordDeletion(SyncEntityType.DOCUMENT_TYPE, id);
     }
 }
@@ -21,6 +21,7 @@ package org.liber.service;
 
 import lombok.RequiredArgsConstructor;
 import org.liber.domain.entities.Drug;
+import org.liber.domain.enums.SyncEntityType;
 import org.liber.domain.repository.DrugRepository;
 import org.liber.service.dto.CommonDTO;
 import org.liber.service.errors.BadRequestAlertException;
@@ -37,6 +38,7 @@ import java.util.Optional;
 public class DrugService {
 
     private final DrugRepository repository;
+    private final SyncService syncService;
 
     @Transactional
     public Drug create(CommonDTO dto) {
@@ -62,5 +64,6 @@ public class DrugService {
     @Transactional
     public void delete(Long id) {
         repository.deleteById(id);
+        syncService.recordDeletion(SyncEntityType.DRUG, id);
     }
 }
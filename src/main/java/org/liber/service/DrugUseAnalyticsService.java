@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.tenancy.ForEachTenant;
+import org.liber.domain.entities.Drug;
+import org.liber.domain.entities.DrugUseAggregate;
+import org.liber.domain.entities.DrugUseFact;
+import org.liber.domain.enums.AgeBand;
+import org.liber.domain.enums.DrugUseDimension;
+import org.liber.domain.enums.Sex;
+import org.liber.domain.repository.DrugRepository;
+import org.liber.domain.repository.DrugUseAggregateRepository;
+import org.liber.domain.repository.DrugUseFactRepository;
+import org.liber.service.dto.DrugUseStatisticDTO;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for the drug use analytics.
+ * <p>
+ * Each patient is represented by its latest anamnesis in {@code drug_use_fact}, and {@code drug_use_aggregate} keeps
+ * the counters of those facts. Saving an anamnesis removes the previous contribution of the patient and adds the new
+ * one, so the counters are read without scanning the anamneses. {@link #rebuild()} recomputes everything, for the
+ * backfill and to move patients to their current age band.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DrugUseAnalyticsService {
+
+    private static final String TOTAL_ITEM = "*";
+
+    private final DrugUseFactRepository drugUseFactRepository;
+    private final DrugUseAggregateRepository drugUseAggregateRepository;
+    private final DrugRepository drugRepository;
+
+    /**
+     * Brings the facts and counters of a patient in line with its anamneses. Must run after the change is applied,
+     * in the same transaction.
+     *
+     * @param patientId the id of the patient.
+     */
+    @Transactional
+    public void refreshPatient(Long patientId) {
+        drugUseFactRepository.lockPatient(patientId);
+        Optional<DrugUseFact> previous = drugUseFactRepository.findWithLockByPatientId(patientId);
+        DrugUseFact current = drugUseFactRepository.findInputsByPatientId(patientId).stream()
+            .map(row -> toFact(row, LocalDate.now()))
+            .findFirst()
+            .orElse(null);
+        if (previous.isPresent() && current != null && sameContribution(previous.get(), current)) {
+            previous.get().setAnamnesisId(current.getAnamnesisId());
+            return;
+        }
+        previous.ifPresent(fact -> addContribution(fact, -1));
+        if (current == null) {
+            previous.ifPresent(drugUseFactRepository::delete);
+        } else {
+            addContribution(current, 1);
+            if (previous.isPresent())
+                copy(current, previous.get());
+            else
+                drugUseFactRepository.save(current);
+        }
+        drugUseAggregateRepository.deleteEmpty();
+    }
+
+    /**
+     * Recomputes the facts and counters of every patient.
+     */
+    @Transactional
+    @Scheduled(cron = "${application.analytics.rebuild-cron:0 30 3 * * ?}")
+    @ForEachTenant
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        drugUseFactRepository.lockTables();
+        drugUseAggregateRepository.deleteAllAggregates();
+        drugUseFactRepository.deleteAllFacts();
+        LocalDate today = LocalDate.now();
+        List<DrugUseFact> facts = drugUseFactRepository.findAllInputs().stream()
+            .map(row -> toFact(row, today))
+            .collect(Collectors.toList());
+        drugUseFactRepository.saveAll(facts);
+        drugUseFactRepository.flush();
+        drugUseAggregateRepository.rebuildFromFacts();
+        log.info("Rebuilt drug use analytics of {} patients in {} ms", facts.size(), System.currentTimeMillis() - start);
+    }
+
+    @Transactional(readOnly = true)
+    public List<DrugUseStatisticDTO> getStatistics(DrugUseDimension dimension, AgeBand ageBand, Sex sex) {
+        List<DrugUseAggregate> aggregates = drugUseAggregateRepository.findAllByFilter(dimension, ageBand, sex);
+        Set<Long> drugIds = aggregates.stream()
+            .flatMap(aggregate -> drugIds(aggregate).stream())
+            .collect(Collectors.toSet());
+        Map<Long, String> drugNames = drugIds.isEmpty() ? Collections.emptyMap() :
+            drugRepository.findAllById(drugIds).stream().collect(Collectors.toMap(Drug::getId, Drug::getName));
+        return aggregates.stream()
+            .map(aggregate -> toStatistic(aggregate, drugNames))
+            .collect(Collectors.toList());
+    }
+
+    private static DrugUseStatisticDTO toStatistic(DrugUseAggregate aggregate, Map<Long, String> drugNames) {
+        List<Long> ids = drugIds(aggregate);
+        return DrugUseStatisticDTO.builder()
+            .dimension(aggregate.getDimension())
+            .ageBand(aggregate.getAgeBand())
+            .sex(aggregate.getSex())
+            .item(aggregate.getItem())
+            .itemName(ids.isEmpty() ? null : ids.stream().map(drugNames::get).collect(Collectors.joining(" + ")))
+            .patients(aggregate.getPatients())
+            .overdoses(aggregate.getOverdoses())
+            .overdoseShare((double) aggregate.getOverdoses() / aggregate.getPatients())
+            .averageDrugUseFrequence((double) aggregate.getDrugUseFrequenceSum() / aggregate.getPatients())
+            .build();
+    }
+
+    private static List<Long> drugIds(DrugUseAggregate aggregate) {
+        if (aggregate.getDimension() == DrugUseDimension.TOTAL)
+            return Collections.emptyList();
+        return parseIds(aggregate.getItem());
+    }
+
+    private static List<Long> parseIds(String ids) {
+        if (ids.isEmpty())
+            return Collections.emptyList();
+        return Arrays.stream(ids.split(",")).map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    private static DrugUseFact toFact(Object[] row, LocalDate today) {
+        DrugUseFact fact = new DrugUseFact();
+        fact.setPatientId(((Number) row[0]).longValue());
+        fact.setAnamnesisId(((Number) row[1]).longValue());
+        fact.setSex(Sex.valueOf((String) row[2]));
+        fact.setAgeBand(AgeBand.of(((Date) row[3]).toLocalDate(), today));
+        fact.setFavoriteDrugId(((Number) row[4]).longValue());
+        fact.setOverdose((Boolean) row[5]);
+        fact.setDrugUseFrequence(((Number) row[6]).intValue());
+        fact.setDrugIds((String) row[7]);
+        return fact;
+    }
+
+    private static void copy(DrugUseFact source, DrugUseFact target) {
+        target.setAnamnesisId(source.getAnamnesisId());
+        target.setSex(source.getSex());
+        target.setAgeBand(source.getAgeBand());
+        target.setFavoriteDrugId(source.getFavoriteDrugId());
+        target.setOverdose(source.getOverdose());
+        target.setDrugUseFrequence(source.getDrugUseFrequence());
+        target.setDrugIds(source.getDrugIds());
+    }
+
+    private static boolean sameContribution(DrugUseFact previous, DrugUseFact current) {
+        return previous.getSex() == current.getSex()
+            && previous.getAgeBand() == current.getAgeBand()
+            && previous.getFavoriteDrugId().equals(current.getFavoriteDrugId())
+            && previous.getOverdose().equals(current.getOverdose())
+            && previous.getDrugUseFrequence().equals(current.getDrugUseFrequence())
+            && previous.getDrugIds().equals(current.getDrugIds());
+    }
+
+    /**
+     * Adds, or removes with a negative sign, the counters of a fact in every dimension it belongs to.
+     */
+    private void addContribution(DrugUseFact fact, int sign) {
+        Map<DrugUseDimension, List<String>> items = new EnumMap<>(DrugUseDimension.class);
+        items.put(DrugUseDimension.TOTAL, Collections.singletonList(TOTAL_ITEM));
+        items.put(DrugUseDimension.FAVORITE_DRUG, Collections.singletonList(fact.getFavoriteDrugId().toString()));
+        List<Long> used = parseIds(fact.getDrugIds());
+        items.put(DrugUseDimension.DRUG_USED, used.stream().map(String::valueOf).collect(Collectors.toList()));
+        if (used.size() > 1)
+            items.put(DrugUseDimension.COMBINATION, Collections.singletonList(fact.getDrugIds()));
+        long overdoses = fact.getOverdose() ? sign : 0;
+        long frequence = (long) sign * fact.getDrugUseFrequence();
+        items.forEach((dimension, dimensionItems) -> dimensionItems.forEach(item ->
+            drugUseAggregateRepository.add(dimension.name(), fact.getAgeBand().name(), fact.getSex().name(), item, sign, overdoses, frequence)));
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.ForEachTenant;
+import org.liber.converters.PatientConverter;
+import org.liber.domain.entities.Patient;
+import org.liber.domain.entities.PatientDocument;
+import org.liber.domain.enums.ChangeKind;
+import org.liber.domain.enums.DuplicateStatus;
+import org.liber.domain.enums.Sex;
+import org.liber.domain.enums.SyncEntityType;
+import org.liber.domain.repository.*;
+import org.liber.service.dto.DuplicateCandidateDTO;
+import org.liber.service.dto.PatientDTO;
+import org.liber.service.errors.BadRequestAlertException;
+import org.liber.service.errors.NotFoundAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Finds patients registered twice and merges them.
+ * <p>
+ * Each patient has its {@link PatientMatcher#matchKeys blocking keys} in {@code patient_match_key}, kept up to date
+ * as it is saved. Candidates are the pairs sharing a key, found with a self join on the key index and
+ * {@link PatientMatcher#score scored} in memory; those reaching {@code minScore} wait in {@code duplicate_candidate}
+ * for an admin to merge or dismiss them. A merge moves everything of one patient to the other with one statement per
+ * table, in one transaction.
+ */
+@Service
+public class DuplicatePatientService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final Logger log = LoggerFactory.getLogger(DuplicatePatientService.class);
+
+    private final ApplicationProperties.Duplicates properties;
+    private final DuplicateCandidateRepository duplicateCandidateRepository;
+    private final PatientRepository patientRepository;
+    private final PatientDocumentRepository patientDocumentRepository;
+    private final HospitalizationRepository hospitalizationRepository;
+    private final ReportRepository reportRepository;
+    private final CompanionRepository companionRepository;
+    private final AnamnesisRepository anamnesisRepository;
+    private final SyncTombstoneRepository syncTombstoneRepository;
+    private final ArchiveService archiveService;
+    private final DrugUseAnalyticsService drugUseAnalyticsService;
+    private final ChangeFeedService changeFeedService;
+    private final SyncService syncService;
+
+    public DuplicatePatientService(ApplicationProperties applicationProperties, DuplicateCandidateRepository duplicateCandidateRepository,
+                                   PatientRepository patientRepository, PatientDocumentRepository patientDocumentRepository,
+                                   HospitalizationRepository hospitalizationRepository, ReportRepository reportRepository,
+                                   CompanionRepository companionRepository, AnamnesisRepository anamnesisRepository,
+                                   SyncTombstoneRepository syncTombstoneRepository, ArchiveService archiveService,
+                                   DrugUseAnalyticsService drugUseAnalyticsService, ChangeFeedService changeFeedService, SyncService syncService) {
+        this.properties = applicationProperties.getDuplicates();
+        this.duplicateCandidateRepository = duplicateCandidateRepository;
+        this.patientRepository = patientRepository;
+        this.patientDocumentRepository = patientDocumentRepository;
+        this.hospitalizationRepository = hospitalizationRepository;
+        this.reportRepository = reportRepository;
+        this.companionRepository = companionRepository;
+        this.anamnesisRepository = anamnesisRepository;
+        this.syncTombstoneRepository = syncTombstoneRepository;
+        this.archiveService = archiveService;
+        this.drugUseAnalyticsService = drugUseAnalyticsService;
+        this.changeFeedService = changeFeedService;
+        this.syncService = syncService;
+    }
+
+    /**
+     * Updates the blocking keys and candidates of a patient. Must run after the patient and its documents are saved,
+     * in the same transaction.
+     *
+     * @param patient the saved patient.
+     */
+    @Transactional
+    public void refresh(Patient patient) {
+        PatientMatcher.Record record = toRecord(patient);
+        duplicateCandidateRepository.deleteMatchKeysOf(patient.getId());
+        storeMatchKeys(Collections.singletonList(record));
+        duplicateCandidateRepository.deletePendingOf(patient.getId());
+        List<Long> matches = duplicateCandidateRepository.findMatchesOf(patient.getId(), properties.getMaxBlockSize()).stream()
+            .map(Number::longValue)
+            .collect(Collectors.toList());
+        Map<Long, PatientMatcher.Record> others = loadRecords(matches);
+        Instant now = Instant.now();
+        for (PatientMatcher.Record other : others.values())
+            addCandidate(record, other, now);
+    }
+
+    /**
+     * Rebuilds the blocking keys of every patient and checks every pair sharing one again. Dismissed pairs stay
+     * dismissed.
+     */
+    @Transactional
+    @Scheduled(cron = "${application.duplicates.detect-cron:0 0 2 * * ?}")
+    @ForEachTenant
+    public void detectAll() {
+        long start = System.currentTimeMillis();
+        duplicateCandidateRepository.deleteAllMatchKeys();
+        int patients = 0;
+        for (List<Long> ids = nextIds(0L); !ids.isEmpty(); ids = nextIds(ids.get(ids.size() - 1))) {
+            storeMatchKeys(loadRecords(ids).values());
+            patients += ids.size();
+        }
+        List<String> oversizedKeys = duplicateCandidateRepository.findOversizedKeys(properties.getMaxBlockSize());
+        if (!oversizedKeys.isEmpty())
+            log.info("Ignoring {} blocking keys shared by more than {} patients", oversizedKeys.size(), properties.getMaxBlockSize());
+        Collection<String> excludedKeys = oversizedKeys.isEmpty() ? Collections.singletonList("") : oversizedKeys;
+        duplicateCandidateRepository.deleteAllPending();
+        Instant now = Instant.now();
+        int pairs = 0;
+        int candidates = 0;
+        for (List<Long> ids = nextIds(0L); !ids.isEmpty(); ids = nextIds(ids.get(ids.size() - 1))) {
+            List<Object[]> batch = duplicateCandidateRepository.findPairs(ids, excludedKeys);
+            Set<Long> involved = new HashSet<>(ids);
+            batch.forEach(pair -> involved.add(((Number) pair[1]).longValue()));
+            Map<Long, PatientMatcher.Record> records = loadRecords(involved);
+            for (Object[] pair : batch) {
+                if (addCandidate(records.get(((Number) pair[0]).longValue()), records.get(((Number) pair[1]).longValue()), now))
+                    candidates++;
+            }
+            pairs += batch.size();
+        }
+        log.info("Compared {} pairs of {} patients and found {} duplicate candidates in {} ms", pairs, patients, candidates,
+            System.currentTimeMillis() - start);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<DuplicateCandidateDTO> getCandidates(Integer minScore, Pageable pageable) {
+        // candidates are listed by score, so the sort of the request is dropped
+        return duplicateCandidateRepository.findAllByStatus(DuplicateStatus.PENDING, minScore == null ? properties.getMinScore() : minScore,
+            PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+    }
+
+    /**
+     * Marks two patients as different people, so they are not suggested again.
+     *
+     * @param patientId   the id of a patient.
+     * @param duplicateId the id of the other patient.
+     */
+    @Transactional
+    public void dismiss(Long patientId, Long duplicateId) {
+        if (duplicateCandidateRepository.updateStatus(Math.min(patientId, duplicateId), Math.max(patientId, duplicateId), DuplicateStatus.DISMISSED) == 0)
+            throw new NotFoundAlertException("A duplicate candidate with these ids was not found", "duplicateManagement", "notfound");
+    }
+
+    /**
+     * Merges a patient into another and deletes it. Its hospitalizations, reports, documents, companions and
+     * anamneses move to the patient kept; a hospitalization starting on the same day as one of the patient kept, or
+     * a document of a type the patient kept already has, is dropped in favour of the one kept.
+     *
+     * @param patientId   the id of the patient to keep.
+     * @param duplicateId the id of the patient to merge into it.
+     * @return the patient kept.
+     */
+    @Transactional
+    public PatientDTO merge(Long patientId, Long duplicateId) {
+        if (patientId.equals(duplicateId))
+            throw new BadRequestAlertException("A patient cannot be merged into itself", "patientManagement", "mergeSelf");
+        if (patientRepository.lockPatients(Arrays.asList(patientId, duplicateId)).size() < 2)
+            throw new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound");
+        // archived rows are moved too, so the merge sees the whole history of both
+        archiveService.restorePatients(Arrays.asList(patientId, duplicateId));
+        Instant now = Instant.now();
+        syncTombstoneRepository.insertHospitalizationsOf(duplicateId, now);
+        syncTombstoneRepository.deleteHospitalizationsReassigned(duplicateId, patientId);
+        int hospitalizations = hospitalizationRepository.reassignPatient(duplicateId, patientId, now);
+        hospitalizationRepository.deleteAllByPatientId(duplicateId);
+        int reports = reportRepository.reassignPatient(duplicateId, patientId, now);
+        patientDocumentRepository.reassignPatient(duplicateId, patientId);
+        patientDocumentRepository.deleteAllByPatientId(duplicateId);
+        companionRepository.reassignPatient(duplicateId, patientId);
+        anamnesisRepository.reassignPatient(duplicateId, patientId);
+        drugUseAnalyticsService.refreshPatient(duplicateId);
+        drugUseAnalyticsService.refreshPatient(patientId);
+        patientRepository.deleteMerged(duplicateId);
+        Patient patient = patientRepository.findWithDocumentsById(patientId)
+            .orElseThrow(() -> new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound"));
+        // dirties the patient kept, so clients see its version and modification date move
+        patient.setLastModifiedDate(now);
+        patient = patientRepository.save(patient);
+        refresh(patient);
+        syncService.recordDeletion(SyncEntityType.PATIENT, duplicateId);
+        changeFeedService.patientDeleted(duplicateId);
+        changeFeedService.patientChanged(patient, ChangeKind.UPDATED);
+        log.info("Merged patient {} into {}, moving {} hospitalizations and {} reports", duplicateId, patientId, hospitalizations, reports);
+        return PatientConverter.convert(patient);
+    }
+
+    private boolean addCandidate(PatientMatcher.Record first, PatientMatcher.Record second, Instant now) {
+        if (first == null || second == null)
+            return false;
+        int score = PatientMatcher.score(first, second);
+        if (score < properties.getMinScore())
+            return false;
+        duplicateCandidateRepository.insertPending(Math.min(first.getId(), second.getId()), Math.max(first.getId(), second.getId()), score, now);
+        return true;
+    }
+
+    private void storeMatchKeys(Collection<PatientMatcher.Record> records) {
+        String entries = records.stream()
+            .flatMap(record -> PatientMatcher.matchKeys(record).stream().map(key -> record.getId() + "|" + key))
+            .collect(Collectors.joining(" "));
+        if (!entries.isEmpty())
+            duplicateCandidateRepository.insertMatchKeys(entries);
+    }
+
+    private List<Long> nextIds(Long afterId) {
+        return patientRepository.findIdsAfter(afterId, PageRequest.of(0, BATCH_SIZE));
+    }
+
+    private Map<Long, PatientMatcher.Record> loadRecords(Collection<Long> ids) {
+        Map<Long, PatientMatcher.Record> records = new HashMap<>();
+        List<Long> pending = new ArrayList<>(ids);
+        for (int from = 0; from < pending.size(); from += BATCH_SIZE) {
+            List<Long> batch = pending.subList(from, Math.min(pending.size(), from + BATCH_SIZE));
+            for (Object[] row : patientRepository.findMatchFieldsByIdIn(batch)) {
+                PatientMatcher.Record record = new PatientMatcher.Record((Long) row[0], (String) row[1], (String) row[2],
+                    (LocalDate) row[3], (Sex) row[4], new HashMap<>());
+                records.put(record.getId(), record);
+            }
+            for (Object[] row : patientDocumentRepository.findValuesByPatientIdIn(batch)) {
+                PatientMatcher.Record record = records.get((Long) row[0]);
+                if (record != null)
+                    record.getDocuments().put((Long) row[1], (String) row[2]);
+            }
+        }
+        return records;
+    }
+
+    private static PatientMatcher.Record toRecord(Patient patient) {
+        Map<Long, String> documents = new HashMap<>();
+        for (PatientDocument document : patient.getDocuments()) {
+            if (document.getDocument() != null)
+                documents.put(document.getDocument().getId(), PatientDocument.normalize(document.getValue()));
+        }
+        return new PatientMatcher.Record(patient.getId(), patient.getName(), patient.getMotherName(), patient.getBirthDate(),
+            patient.getSex(), documents);
+    }
+}
@@ -25,10 +25,12 @@ import org.liber.domain.entities.Hospitalization;
 import org.liber.domain.entities.HospitalizationPK;
 import org.liber.domain.entities.Patient;
 import org.liber.domain.entities.ReleaseReason;
+import org.liber.domain.enums.ChangeKind;
+import org.liber.domain.enums.SyncEntityType;
 import org.liber.domain.repository.HospitalizationRepository;
 import org.liber.domain.repository.PatientRepository;
 import org.liber.domain.repository.ReleaseReasonRepository;
-import org.liber.security.AuthoritiesConstants;
+import org.liber.security.AuthorityMask;
 import org.liber.security.SecurityUtils;
 import org.liber.service.dto.HospitalizationDTO;
 import org.liber.service.errors.BadRequestAlertException;
@@ -51,10 +53,13 @@ public class HospitalizationService {
     private final HospitalizationRepository hospitalizationRepository;
     private final PatientRepository patientRepository;
     private final ReleaseReasonRepository releaseReasonRepository;
+    private final ArchiveService archiveService;
+    private final ChangeFeedService changeFeedService;
+    private final SyncService syncService;
 
     @Transactional
     public Hospitalization create(HospitalizationDTO dto) {
-        if (!SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.SOCIAL_ASSISTANT))
+        if (!SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.SOCIAL_ASSISTANT))
             throw new UnauthorizedAlertException("Unauthorized", "hospitalization", "unauthorized");
         Patient patient = patientRepository.findById(dto.getPatientId())
             .orElseThrow(() -> new BadRequestAlertException("Patient not found", "hospitalization", "patientNotFound"));
@@ -63,12 +68,15 @@ public class HospitalizationService {
         Hospitalization hospitalization = new Hospitalization();
         hospitalization.setPatient(patient);
         hospitalization.setStartDate(dto.getStartDate());
-        return hospitalizationRepository.save(hospitalization);
+        hospitalization = hospitalizationRepository.save(hospitalization);
+        syncService.recordRecreation(SyncEntityType.HOSPITALIZATION, patient.getId() + ":" + hospitalization.getStartDate());
+        changeFeedService.hospitalizationChanged(hospitalization, ChangeKind.CREATED);
+        return hospitalization;
     }
 
     @Transactional
     public Hospitalization finish(HospitalizationDTO dto) {
-        if (!SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.SOCIAL_ASSISTANT))
+        if (!SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.SOCIAL_ASSISTANT))
             throw new UnauthorizedAlertException("Unauthorized", "hospitalization", "unauthorized");
         if (dto.getEndDate() == null)
             throw new BadRequestAlertException("You need a end date to finish an hospitalization", "hospitalization", "endDateRequired");
@@ -79,7 +87,9 @@ public class HospitalizationService {
         Hospitalization hospitalization = findHospitalization(dto);
         hospitalization.setEndDate(dto.getEndDate());
         hospitalization.setReleaseReason(releaseReason);
-        return hospitalizationRepository.save(hospitalization);
+        hospitalization = hospitalizationRepository.save(hospitalization);
+        changeFeedService.hospitalizationChanged(hospitalization, ChangeKind.UPDATED);
+        return hospitalization;
     }
 
     @Transactional(readOnly = true)
@@ -92,6 +102,8 @@ public class HospitalizationService {
     public void delete(Long patientId, LocalDate startDate) {
         Hospitalization entity = findHospitalization(patientId, startDate);
         hospitalizationRepository.delete(entity);
+        syncService.recordDeletion(SyncEntityType.HOSPITALIZATION, patientId + ":" + startDate);
+        changeFeedService.hospitalizationChanged(entity, ChangeKind.DELETED);
     }
 
     private Hospitalization findHospitalization(HospitalizationDTO dto) {
@@ -101,6 +113,8 @@ public class HospitalizationService {
     private Hospitalization findHospitalization(Long patientId, LocalDate startDate) {
         HospitalizationPK pk = new HospitalizationPK(patientId, startDate);
         Optional<Hospitalization> found = hospitalizationRepository.findById(pk);
+        if (!found.isPresent() && archiveService.restoreHospitalization(patientId, startDate))
+            found = hospitalizationRepository.findById(pk);
         if (!found.isPresent())
             throw new NotFoundAlertException("No hospitalization found with provided patient ID and start date", "hospitalization", "hospitalizationNotFound");
         return found.get();
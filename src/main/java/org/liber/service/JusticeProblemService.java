@@ -21,6 +21,7 @@ package org.liber.service;
 
 import lombok.RequiredArgsConstructor;
 import org.liber.domain.entities.JusticeProblem;
+import org.liber.domain.enums.SyncEntityType;
 import org.liber.domain.repository.JusticeProblemRepository;
 import org.liber.service.dto.CommonDTO;
 import org.liber.service.errors.BadRequestAlertException;
@@ -37,6 +38,7 @@ import java.util.Optional;
 public class JusticeProblemService {
 
     private final JusticeProblemRepository repository;
+    private final SyncService syncService;
 
     @Transactional
     public JusticeProblem create(CommonDTO dto) {
@@ -62,5 +64,6 @@ public class JusticeProblemService {
     @Transactional
     public void delete(Long id) {
         repository.deleteById(id);
+        syncService.recordDeletion(SyncEntityType.JUSTICE_PROBLEM, id);
     }
 }
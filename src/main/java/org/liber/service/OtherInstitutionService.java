@@ -21,6 +21,7 @@ package org.liber.service;
 
 import lombok.RequiredArgsConstructor;
 import org.liber.domain.entities.OtherInstitution;
+import org.liber.domain.enums.SyncEntityType;
 import org.liber.domain.repository.OtherInstitutionRepository;
 import org.liber.service.dto.CommonDTO;
 import org.liber.service.errors.BadRequestAlertException;
@@ -37,6 +38,7 @@ import java.util.Optional;
 public class OtherInstitutionService {
 
     private final OtherInstitutionRepository repository;
+    private final SyncService syncService;
 
     @Transactional
     public OtherInstitution create(CommonDTO dto) {
@@ -62,5 +64,6 @@ public class OtherInstitutionService {
     @Transactional
     public void delete(Long id) {
         repository.deleteById(id);
+        syncService.recordDeletion(SyncEntityType.OTHER_INSTITUTION, id);
     }
 }
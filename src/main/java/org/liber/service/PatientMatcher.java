@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.liber.domain.enums.Sex;
+import org.liber.utils.PhoneticUtils;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Blocking keys and scores of the duplicate patient detection.
+ * <p>
+ * Two patients are only compared when they share a blocking key: the same birth date and first name sound, the same
+ * birth date and mother name sound, the same name and mother name sound, or the same document number. Each patient
+ * has a handful of keys and most keys a handful of patients, so the detection grows about linearly with the number
+ * of patients instead of comparing all pairs. The score then weighs how alike the names, birth dates and documents
+ * of a pair are.
+ */
+public final class PatientMatcher {
+
+    private static final int MIN_DOCUMENT_LENGTH = 4;
+
+    private PatientMatcher() {
+    }
+
+    /**
+     * The blocking keys of a patient.
+     *
+     * @param record the patient.
+     * @return the keys, without spaces and at most 255 characters long.
+     */
+    public static Set<String> matchKeys(Record record) {
+        Set<String> keys = new LinkedHashSet<>();
+        String name = PhoneticUtils.encode(record.getName());
+        String firstName = PhoneticUtils.encodeFirst(record.getName());
+        String motherName = PhoneticUtils.encode(record.getMotherName());
+        if (record.getBirthDate() != null && !firstName.isEmpty())
+            keys.add(truncate("B:" + record.getBirthDate() + ":" + firstName));
+        if (record.getBirthDate() != null && !motherName.isEmpty())
+            keys.add(truncate("M:" + record.getBirthDate() + ":" + motherName));
+        if (!name.isEmpty() && !motherName.isEmpty())
+            keys.add(truncate("N:" + name + ":" + motherName));
+        record.getDocuments().forEach((type, value) -> {
+            if (value.length() >= MIN_DOCUMENT_LENGTH)
+                keys.add(truncate("D:" + type + ":" + value));
+        });
+        return keys;
+    }
+
+    private static String truncate(String key) {
+        return key.length() > 255 ? key.substring(0, 255) : key;
+    }
+
+    /**
+     * How likely two patients are the same person.
+     *
+     * @param first  a patient.
+     * @param second another patient.
+     * @return from {@code 0} to {@code 100}.
+     */
+    public static int score(Record first, Record second) {
+        double score = 45 * PhoneticUtils.similarity(first.getName(), second.getName())
+            + 25 * PhoneticUtils.similarity(first.getMotherName(), second.getMotherName())
+            + birthDateScore(first.getBirthDate(), second.getBirthDate());
+        boolean sameDocument = false;
+        boolean conflictingDocument = false;
+        for (Map.Entry<Long, String> document : first.getDocuments().entrySet()) {
+            String other = second.getDocuments().get(document.getKey());
+            if (other != null && other.equals(document.getValue()))
+                sameDocument = true;
+            else if (other != null)
+                conflictingDocument = true;
+        }
+        if (sameDocument)
+            score += 15;
+        if (conflictingDocument)
+            score -= 40;
+        if (first.getSex() != null && second.getSex() != null && first.getSex() != second.getSex())
+            score -= 15;
+        return (int) Math.round(Math.max(0, Math.min(100, score)));
+    }
+
+    /**
+     * Full points for the same date, half for the typical typos: day and month swapped, or one of day, month and
+     * year different.
+     */
+    private static int birthDateScore(LocalDate first, LocalDate second) {
+        if (first == null || second == null)
+            return 0;
+        if (first.equals(second))
+            return 20;
+        if (first.getYear() == second.getYear() && first.getDayOfMonth() == second.getMonthValue() && first.getMonthValue() == second.getDayOfMonth())
+            return 10;
+        int same = (first.getYear() == second.getYear() ? 1 : 0) + (first.getMonthValue() == second.getMonthValue() ? 1 : 0)
+            + (first.getDayOfMonth() == second.getDayOfMonth() ? 1 : 0);
+        return same == 2 ? 10 : 0;
+    }
+
+    /**
+     * What the detection knows of a patient.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Record {
+
+        private Long id;
+        private String name;
+        private String motherName;
+        private LocalDate birthDate;
+        private Sex sex;
+
+        /**
+         * Normalized document numbers by document type id.
+         */
+        private Map<Long, String> documents;
+    }
+}
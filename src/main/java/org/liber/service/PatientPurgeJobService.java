@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.ForEachTenant;
+import org.liber.config.tenancy.TenantContext;
+import org.liber.domain.enums.PurgeStatus;
+import org.liber.service.dto.PatientPurgeDTO;
+import org.liber.service.dto.PatientPurgeJobDTO;
+import org.liber.service.errors.BadRequestAlertException;
+import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.TooManyRequestsAlertException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Service class running patient purges in the background.
+ * <p>
+ * Purges run one at a time on a dedicated thread, in the tenant that started them. Each batch of patients is purged
+ * in a transaction of its own, so rows stay locked only while their batch is deleted and a failure keeps the batches
+ * already done. The progress of a job can be read until a day after it finished.
+ */
+@Slf4j
+@Service
+public class PatientPurgeJobService implements DisposableBean {
+
+    private static final Duration KEEP_FINISHED = Duration.ofDays(1);
+
+    private final PatientPurgeService patientPurgeService;
+    private final int batchSize;
+    private final int retentionYears;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public PatientPurgeJobService(PatientPurgeService patientPurgeService, ApplicationProperties applicationProperties) {
+        this.patientPurgeService = patientPurgeService;
+        ApplicationProperties.Purge properties = applicationProperties.getPurge();
+        this.batchSize = properties.getBatchSize();
+        this.retentionYears = properties.getRetentionYears();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.getQueueCapacity()), new CustomizableThreadFactory("liber-patient-purge-"),
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts a purge.
+     *
+     * @param purge the patients to purge, either listed or by inactivity.
+     * @return the job to poll.
+     */
+    public PatientPurgeJobDTO start(PatientPurgeDTO purge) {
+        boolean listed = purge.getPatientIds() != null && !purge.getPatientIds().isEmpty();
+        if (listed == (purge.getInactiveBefore() != null))
+            throw new BadRequestAlertException("Either the patient ids or the inactivity date must be given", "patientManagement", "purgeCriteria");
+        if (listed)
+            return submit(new Job(new ArrayList<>(new LinkedHashSet<>(purge.getPatientIds())), null));
+        return submit(new Job(null, startOfDay(purge.getInactiveBefore())));
+    }
+
+    public PatientPurgeJobDTO getJob(String jobId) {
+        Job job = jobs.get(jobKey(jobId));
+        if (job == null)
+            throw new NotFoundAlertException("Purge job not found", "patientManagement", "purgeJobNotFound");
+        return job.toDTO();
+    }
+
+    /**
+     * Purges the patients with nothing recorded for the configured number of years, if any.
+     */
+    @Scheduled(cron = "${application.purge.retention-cron:0 0 5 * * ?}")
+    @ForEachTenant
+    public void purgeExpired() {
+        if (retentionYears <= 0)
+            return;
+        Instant before = startOfDay(LocalDate.now(ZoneOffset.UTC).minusYears(retentionYears));
+        try {
+            PatientPurgeJobDTO job = submit(new Job(null, before));
+            log.info("Started purge {} of the patients inactive since {}", job.getJobId(), before);
+        } catch (TooManyRequestsAlertException e) {
+            log.warn("Could not start the purge of the patients inactive since {}: {}", before, e.getMessage());
+        }
+    }
+
+    private PatientPurgeJobDTO submit(Job job) {
+        Instant expired = Instant.now().minus(KEEP_FINISHED);
+        jobs.values().removeIf(j -> j.finishedDate != null && j.finishedDate.isBefore(expired));
+        String key = jobKey(job.id);
+        jobs.put(key, job);
+        try {
+            executor.execute(TenantContext.wrap(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(key);
+            throw new TooManyRequestsAlertException("Too many purges waiting", "patientManagement", "tooManyPurges", 60);
+        }
+        return job.toDTO();
+    }
+
+    private void run(Job job) {
+        job.startedDate = Instant.now();
+        job.status = PurgeStatus.RUNNING;
+        try {
+            if (job.patientIds != null)
+                purgeListed(job);
+            else
+                purgeInactive(job);
+            job.status = PurgeStatus.DONE;
+            log.info("Purge {} deleted {} of {} patients", job.id, job.purged, job.processed);
+        } catch (RuntimeException e) {
+            log.error("Purge {} failed after deleting {} patients", job.id, job.purged, e);
+            job.error = e.getMessage();
+            job.status = PurgeStatus.FAILED;
+        } finally {
+            job.finishedDate = Instant.now();
+        }
+    }
+
+    private void purgeListed(Job job) {
+        List<Long> ids = job.patientIds;
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            checkNotInterrupted();
+            List<Long> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            job.purged += patientPurgeService.purge(batch);
+            job.processed += batch.size();
+        }
+    }
+
+    /**
+     * Walks the inactive patients in id order, so each batch starts after the last one checked, purged or not.
+     */
+    private void purgeInactive(Job job) {
+        job.total = patientPurgeService.countInactiveSince(job.inactiveBefore);
+        Long afterId = 0L;
+        List<Long> batch;
+        while (!(batch = patientPurgeService.getIdsInactiveSince(job.inactiveBefore, afterId, batchSize)).isEmpty()) {
+            checkNotInterrupted();
+            job.purged += patientPurgeService.purgeInactiveSince(batch, job.inactiveBefore);
+            job.processed += batch.size();
+            afterId = batch.get(batch.size() - 1);
+        }
+    }
+
+    private static void checkNotInterrupted() {
+        if (Thread.currentThread().isInterrupted())
+            throw new IllegalStateException("Purge interrupted");
+    }
+
+    private static Instant startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    /**
+     * Keys the jobs by tenant too, so a job id never finds the purge of another tenant.
+     */
+    private static String jobKey(String jobId) {
+        return TenantContext.getTenant() + "/" + jobId;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A purge, written only by the thread running it.
+     */
+    private static class Job {
+
+        private final String id = UUID.randomUUID().toString();
+        private final Instant createdDate = Instant.now();
+        private final List<Long> patientIds;
+        private final Instant inactiveBefore;
+        private volatile PurgeStatus status = PurgeStatus.QUEUED;
+        private volatile long total;
+        private volatile long processed;
+        private volatile long purged;
+        private volatile Instant startedDate;
+        private volatile Instant finishedDate;
+        private volatile String error;
+
+        Job(List<Long> patientIds, Instant inactiveBefore) {
+            this.patientIds = patientIds;
+            this.inactiveBefore = inactiveBefore;
+            this.total = patientIds != null ? patientIds.size() : 0;
+        }
+
+        PatientPurgeJobDTO toDTO() {
+            return new PatientPurgeJobDTO(id, status, total, processed, purged, createdDate, startedDate, finishedDate, error);
+        }
+    }
+}
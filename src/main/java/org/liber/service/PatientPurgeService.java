@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.domain.repository.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service class removing patients with everything recorded about them.
+ * <p>
+ * A purge locks the patients and deletes their rows table by table, children first, with one {@code DELETE} per
+ * table for the whole set of patients, archive tables included, all in the caller's transaction.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientPurgeService {
+
+    private final PatientRepository patientRepository;
+    private final PatientDocumentRepository patientDocumentRepository;
+    private final CompanionRepository companionRepository;
+    private final AnamnesisRepository anamnesisRepository;
+    private final HospitalizationRepository hospitalizationRepository;
+    private final ReportRepository reportRepository;
+    private final ReportRevisionRepository reportRevisionRepository;
+    private final ArchivedReportRepository archivedReportRepository;
+    private final ArchivedHospitalizationRepository archivedHospitalizationRepository;
+    private final DrugUseFactRepository drugUseFactRepository;
+    private final DrugUseAggregateRepository drugUseAggregateRepository;
+    private final SyncTombstoneRepository syncTombstoneRepository;
+    private final ChangeFeedService changeFeedService;
+    private final ReportPdfCache reportPdfCache;
+
+    /**
+     * Purges some patients.
+     *
+     * @param patientIds the ids of the patients.
+     * @return the number of patients purged, leaving out the ids not found.
+     */
+    @Transactional
+    public int purge(Collection<Long> patientIds) {
+        return purgeLocked(ids(patientRepository.lockPatients(patientIds)));
+    }
+
+    /**
+     * Purges those of some patients still with nothing recorded since a date, checked again once they are locked.
+     *
+     * @param patientIds the ids of the patients.
+     * @param before     the date.
+     * @return the number of patients purged.
+     */
+    @Transactional
+    public int purgeInactiveSince(Collection<Long> patientIds, Instant before) {
+        List<Long> locked = ids(patientRepository.lockPatients(patientIds));
+        if (locked.isEmpty())
+            return 0;
+        return purgeLocked(ids(patientRepository.findIdsInactiveSinceByIdIn(before, locked)));
+    }
+
+    /**
+     * Gets, in id order, the next patients with nothing recorded since a date.
+     *
+     * @param before  the date.
+     * @param afterId the id to start after.
+     * @param size    the maximum number of ids.
+     * @return the ids.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> getIdsInactiveSince(Instant before, Long afterId, int size) {
+        return ids(patientRepository.findIdsInactiveSince(before, afterId, PageRequest.of(0, size)));
+    }
+
+    @Transactional(readOnly = true)
+    public long countInactiveSince(Instant before) {
+        return patientRepository.countInactiveSince(before);
+    }
+
+    private int purgeLocked(List<Long> ids) {
+        if (ids.isEmpty())
+            return 0;
+        List<Long> reportIds = new ArrayList<>(reportRepository.findIdsByPatientIdIn(ids));
+        reportIds.addAll(archivedReportRepository.findIdsByPatientIdIn(ids));
+        drugUseAggregateRepository.subtractFactsOf(ids);
+        drugUseFactRepository.deleteAllByPatientIdIn(ids);
+        drugUseAggregateRepository.deleteEmpty();
+        anamnesisRepository.deleteJusticeProblemsByPatientIdIn(ids);
+        anamnesisRepository.deleteDrugsUsedByPatientIdIn(ids);
+        anamnesisRepository.deleteControlledMedicationsByPatientIdIn(ids);
+        anamnesisRepository.deleteHealthProblemsByPatientIdIn(ids);
+        anamnesisRepository.deleteOtherInstitutionsByPatientIdIn(ids);
+        int anamneses = anamnesisRepository.deleteAllByPatientIdIn(ids);
+        companionRepository.deleteAllByPatientIdIn(ids);
+        int hospitalizations = hospitalizationRepository.deleteAllByPatientIdIn(ids);
+        reportRevisionRepository.deleteAllByPatientIdIn(ids);
+        int reports = reportRepository.deleteAllByPatientIdIn(ids);
+        archivedReportRepository.deleteRevisionsByPatientIdIn(ids);
+        reports += archivedReportRepository.deleteAllByPatientIdIn(ids);
+        hospitalizations += archivedHospitalizationRepository.deleteAllByPatientIdIn(ids);
+        patientDocumentRepository.deleteAllByPatientIdIn(ids);
+        syncTombstoneRepository.insertPatients(ids, Instant.now());
+        int patients = patientRepository.deleteAllByIdIn(ids);
+        ids.forEach(changeFeedService::patientDeleted);
+        reportPdfCache.evictAfterCommit(reportIds, ids);
+        log.debug("Purged {} patients with {} anamneses, {} hospitalizations and {} reports", patients, anamneses, hospitalizations, reports);
+        return patients;
+    }
+
+    private static List<Long> ids(List<Number> ids) {
+        return ids.stream().map(Number::longValue).collect(Collectors.toList());
+    }
+}
@@ -22,18 +22,21 @@ package org.liber.service;
 import lombok.RequiredArgsConstructor;
 import org.liber.converters.PatientConverter;
 import org.liber.domain.entities.*;
+import org.liber.domain.enums.ChangeKind;
 import org.liber.domain.repository.*;
 import org.liber.service.dto.PatientDTO;
+import org.liber.service.errors.BadRequestAlertException;
 import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.PreconditionFailedAlertException;
 import org.liber.utils.QueryUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -46,13 +49,18 @@ public class PatientService {
     private final ScholarityRepository scholarityRepository;
     private final PatientRepository patientRepository;
     private final CityRepository cityRepository;
-    private final ReportService reportService;
+    private final DrugUseAnalyticsService drugUseAnalyticsService;
+    private final ChangeFeedService changeFeedService;
+    private final DuplicatePatientService duplicatePatientService;
+    private final PatientPurgeService patientPurgeService;
 
     @Transactional
     public Patient create(PatientDTO dto) {
         Patient entity = load(dto);
         entity = patientRepository.save(entity);
         saveDocuments(dto.getDocuments(), entity);
+        duplicatePatientService.refresh(entity);
+        changeFeedService.patientChanged(entity, ChangeKind.CREATED);
         return entity;
     }
 
@@ -62,75 +70,143 @@ public class PatientService {
 
     @Transactional
     public Patient update(PatientDTO dto) {
-        Patient entity = load(dto, dto.getId());
-        entity = patientRepository.save(entity);
+        return update(dto, null);
+    }
+
+    /**
+     * Updates the patient if it is still in the expected version.
+     *
+     * @param dto             the patient to update.
+     * @param expectedVersion the version the client has, {@code null} to skip the check.
+     * @return the updated patient.
+     */
+    @Transactional
+    public Patient update(PatientDTO dto, Long expectedVersion) {
+        Patient entity = load(dto, dto.getId(), expectedVersion);
+        // always dirties the patient, so its version and modification date move even if only its documents change
+        entity.setLastModifiedDate(Instant.now());
+        // flushed so the version, returned as the ETag, is the one written
+        entity = patientRepository.saveAndFlush(entity);
         saveDocuments(dto.getDocuments(), entity);
+        duplicatePatientService.refresh(entity);
+        drugUseAnalyticsService.refreshPatient(entity.getId());
+        changeFeedService.patientChanged(entity, ChangeKind.UPDATED);
         return entity;
     }
 
-    private Patient load(PatientDTO dto, Long patientId) {
+    private Patient load(PatientDTO dto, Long patientId, Long expectedVersion) {
         Patient entity = patientRepository.findById(patientId).orElseThrow(() -> new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound"));
+        if (expectedVersion != null && !expectedVersion.equals(entity.getVersion()))
+            throw new PreconditionFailedAlertException("The patient was changed by someone else", "patientManagement", "versionMismatch");
         return load(dto, entity);
     }
 
     private Patient load(PatientDTO dto, Patient entity) {
-        entity.setAddressCity(findCity(dto.getAddressCityId()));
+        checkReferencesExist(dto);
+        entity.setAddressCity(cityReference(dto.getAddressCityId()));
         entity.setAddressComplement(dto.getAddressComplement());
         entity.setAddressNeighborhood(dto.getAddressNeighborhood());
         entity.setAddressNumber(dto.getAddressNumber());
         entity.setAddressStreet(dto.getAddressStreet());
         entity.setAddressZip(dto.getAddressZip());
         entity.setBirthDate(dto.getBirthDate());
-        entity.setBirthPlace(findCity(dto.getBirthPlaceId()));
+        entity.setBirthPlace(cityReference(dto.getBirthPlaceId()));
         entity.setFatherName(dto.getFatherName());
-        entity.setMaritalStatus(findMaritalStatus(dto.getMaritalStatusId()));
+        entity.setMaritalStatus(maritalStatusRepository.getOne(dto.getMaritalStatusId()));
         entity.setMotherName(dto.getMotherName());
         entity.setName(dto.getName());
-        entity.setProfession(findProfession(dto.getProfessionId()));
-        entity.setScholarity(findScholarity(dto.getScholarityId()));
+        entity.setProfession(professionRepository.getOne(dto.getProfessionId()));
+        entity.setScholarity(scholarityRepository.getOne(dto.getScholarityId()));
         entity.setSex(dto.getSex());
         entity.setWorking(dto.isWorking());
         return entity;
     }
 
+    /**
+     * Checks the cities, marital status, scholarity, profession and document types of a patient exist with a single
+     * query, so they can be set as references without loading each of them.
+     */
+    private void checkReferencesExist(PatientDTO dto) {
+        Set<Long> cityIds = new HashSet<>();
+        cityIds.add(dto.getBirthPlaceId());
+        if (dto.getAddressCityId() != null)
+            cityIds.add(dto.getAddressCityId());
+        Set<Long> documentIds = documentValues(dto.getDocuments()).keySet();
+        long existing = patientRepository.countExistingReferences(join(cityIds), dto.getMaritalStatusId(), dto.getScholarityId(),
+            dto.getProfessionId(), join(documentIds));
+        if (existing != cityIds.size() + 3 + documentIds.size())
+            throw new BadRequestAlertException("A city, marital status, scholarity, profession or document type of the patient was not found", "patientManagement", "referencenotfound");
+    }
+
+    /**
+     * Applies the documents of the patient as a diff by document type: new types are inserted, changed values updated
+     * and missing types deleted, each in a batch, while unchanged documents are left alone.
+     */
     private void saveDocuments(Map<Long, String> documents, Patient entity) {
-        List<PatientDocument> toRemove = new ArrayList<>();
-        for (PatientDocument patientDocument : entity.getDocuments()) {
-            if (documents.get(patientDocument.getDocument().getId()) == null) {
-                patientDocumentRepository.delete(patientDocument);
-                toRemove.add(patientDocument);
-            }
+        Map<Long, String> values = documentValues(documents);
+        Map<Long, PatientDocument> existing = new HashMap<>();
+        for (PatientDocument patientDocument : entity.getDocuments())
+            existing.put(patientDocument.getDocument().getId(), patientDocument);
+        checkDocumentsAreFree(values, existing, entity.getId());
+        List<PatientDocument> toRemove = existing.values().stream()
+            .filter(patientDocument -> !values.containsKey(patientDocument.getDocument().getId()))
+            .collect(Collectors.toList());
+        if (!toRemove.isEmpty()) {
+            entity.getDocuments().removeAll(toRemove);
+            patientDocumentRepository.deleteAll(toRemove);
         }
-        entity.getDocuments().removeAll(toRemove);
-        for (Map.Entry<Long, String> entry : documents.entrySet()) {
-            PatientDocument patientDocument = entity.getDocuments().stream().filter(d -> d.getDocument().getId().equals(entry.getKey()) && d.getValue().equalsIgnoreCase(entry.getValue())).findFirst().orElse(null);
+        for (Map.Entry<Long, String> entry : values.entrySet()) {
+            PatientDocument patientDocument = existing.get(entry.getKey());
             if (patientDocument == null) {
                 patientDocument = new PatientDocument();
                 patientDocument.setPatient(entity);
-                patientDocument.setDocument(documentTypeRepository.findById(entry.getKey()).orElse(null));
+                patientDocument.setDocument(documentTypeRepository.getOne(entry.getKey()));
                 entity.getDocuments().add(patientDocument);
             }
-            patientDocument.setValue(entry.getValue());
+            if (!entry.getValue().equals(patientDocument.getValue()))
+                patientDocument.setValue(entry.getValue());
         }
-        patientDocumentRepository.saveAll(entity.getDocuments());
     }
 
-    private City findCity(Long id) {
-        if (id == null)
-            return null;
-        return cityRepository.findById(id).orElse(null);
+    /**
+     * Checks no other patient has any of the new or changed documents, with a single indexed query.
+     */
+    private void checkDocumentsAreFree(Map<Long, String> values, Map<Long, PatientDocument> existing, Long patientId) {
+        List<Long> documentIds = new ArrayList<>();
+        List<String> normalizedValues = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : values.entrySet()) {
+            String normalizedValue = PatientDocument.normalize(entry.getValue());
+            PatientDocument patientDocument = existing.get(entry.getKey());
+            if (normalizedValue.isEmpty() || (patientDocument != null && normalizedValue.equals(patientDocument.getNormalizedValue())))
+                continue;
+            documentIds.add(entry.getKey());
+            normalizedValues.add(normalizedValue);
+        }
+        if (documentIds.isEmpty())
+            return;
+        List<Number> patientIds = patientDocumentRepository.findPatientIdsByDocuments(join(documentIds), String.join(",", normalizedValues));
+        if (patientIds.stream().anyMatch(id -> id.longValue() != patientId))
+            throw new BadRequestAlertException("A patient with this document already exists", "patientManagement", "documentexists");
     }
 
-    private MaritalStatus findMaritalStatus(Long id) {
-        return maritalStatusRepository.findById(id).orElse(null);
+    private static Map<Long, String> documentValues(Map<Long, String> documents) {
+        Map<Long, String> values = new HashMap<>();
+        if (documents != null)
+            documents.forEach((documentId, value) -> {
+                if (documentId != null && value != null && !value.trim().isEmpty())
+                    values.put(documentId, value);
+            });
+        return values;
     }
 
-    private Profession findProfession(Long id) {
-        return professionRepository.findById(id).orElse(null);
+    private static String join(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
     }
 
-    private Scholarity findScholarity(Long id) {
-        return scholarityRepository.findById(id).orElse(null);
+    private City cityReference(Long id) {
+        if (id == null)
+            return null;
+        return cityRepository.getOne(id);
     }
 
     @Transactional(readOnly = true)
@@ -144,8 +220,34 @@ public class PatientService {
         return patientRepository.findById(id).map(PatientConverter::convert).orElseThrow(() -> new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound"));
     }
 
+    /**
+     * Finds the patients having a document, whatever punctuation or case its number was typed with.
+     *
+     * @param documentId the type of the document.
+     * @param value      the number of the document.
+     * @return the patients having it, usually one.
+     */
+    @Transactional(readOnly = true)
+    public List<PatientDTO> getAllByDocument(Long documentId, String value) {
+        List<Long> patientIds = patientDocumentRepository.findPatientIdsByDocument(documentId, PatientDocument.normalize(value));
+        if (patientIds.isEmpty())
+            return Collections.emptyList();
+        return patientRepository.findAllWithDocumentsByIdIn(patientIds).stream().map(PatientConverter::convert).collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public Long getVersion(Long id) {
+        return patientRepository.findVersionById(id).orElseThrow(() -> new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound"));
+    }
+
+    /**
+     * Deletes a patient with everything recorded about it, in one transaction.
+     *
+     * @param id the id of the patient.
+     */
+    @Transactional
     public void delete(Long id) {
-        reportService.deleteAllByPatientId(id);
-        patientRepository.deleteById(id);
+        if (patientPurgeService.purge(Collections.singletonList(id)) == 0)
+            throw new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound");
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import org.liber.converters.HospitalizationConverter;
+import org.liber.converters.PatientConverter;
+import org.liber.domain.entities.Hospitalization;
+import org.liber.domain.entities.Patient;
+import org.liber.domain.repository.ArchivedHospitalizationRepository;
+import org.liber.domain.repository.ArchivedReportRepository;
+import org.liber.domain.repository.HospitalizationRepository;
+import org.liber.domain.repository.PatientRepository;
+import org.liber.domain.repository.ReportRepository;
+import org.liber.service.dto.HospitalizationDTO;
+import org.liber.service.dto.PatientTimelineDTO;
+import org.liber.service.dto.ReportSummaryDTO;
+import org.liber.service.dto.TimelineEntryDTO;
+import org.liber.service.errors.BadRequestAlertException;
+import org.liber.service.errors.NotFoundAlertException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds the patient timeline: the patient header, hospitalizations and report summaries merged newest first.
+ * <p>
+ * A page is always loaded with five queries, whatever its size: the patient with its documents and lookups, the
+ * hospitalizations with their release reasons and the report summaries, the last two from the main and from the
+ * archive tables and bounded by the cursor.
+ * Entries are ordered by date, then hospitalizations before reports, then by descending key, so the cursor is the
+ * position of the last entry sent.
+ */
+@Service
+@RequiredArgsConstructor
+public class PatientTimelineService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Position FIRST_PAGE = new Position(Instant.parse("9999-12-31T00:00:00Z"), -1, Long.MAX_VALUE);
+
+    private final PatientRepository patientRepository;
+    private final HospitalizationRepository hospitalizationRepository;
+    private final ReportRepository reportRepository;
+    private final ArchivedHospitalizationRepository archivedHospitalizationRepository;
+    private final ArchivedReportRepository archivedReportRepository;
+
+    @Transactional(readOnly = true)
+    public PatientTimelineDTO getTimeline(Long patientId, String cursor, int size) {
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Position from = cursor == null || cursor.isEmpty() ? FIRST_PAGE : Position.decode(cursor);
+        Patient patient = patientRepository.findWithDocumentsById(patientId)
+            .orElseThrow(() -> new NotFoundAlertException("A patient with this id was not found", "patientManagement", "notfound"));
+
+        LocalDate hospitalizationsBefore = from.hospitalizationsBefore();
+        List<Hospitalization> hospitalizations = hospitalizationRepository.findAllWithReleaseReasonByPatientId(patientId, hospitalizationsBefore, PageRequest.of(0, size + 1));
+        long beforeReportId = from.rank < TimelineEntryDTO.Type.REPORT.ordinal() ? Long.MAX_VALUE : from.key;
+        List<HospitalizationDTO> hospitalizationDTOs = new ArrayList<>();
+        hospitalizations.forEach(hospitalization -> hospitalizationDTOs.add(HospitalizationConverter.convert(hospitalization)));
+        archivedHospitalizationRepository.findAllWithReleaseReasonByPatientId(patientId, hospitalizationsBefore, PageRequest.of(0, size + 1))
+            .forEach(hospitalization -> hospitalizationDTOs.add(HospitalizationConverter.convert(hospitalization)));
+        List<ReportSummaryDTO> reports = new ArrayList<>(reportRepository.findSummariesByPatientId(patientId, from.date, beforeReportId, PageRequest.of(0, size + 1)));
+        reports.addAll(archivedReportRepository.findSummariesByPatientId(patientId, from.date, beforeReportId, PageRequest.of(0, size + 1)));
+
+        List<TimelineEntryDTO> entries = new ArrayList<>(hospitalizationDTOs.size() + reports.size());
+        for (HospitalizationDTO hospitalization : hospitalizationDTOs)
+            entries.add(TimelineEntryDTO.builder()
+                .type(TimelineEntryDTO.Type.HOSPITALIZATION)
+                .date(hospitalization.getStartDate().atStartOfDay(ZoneId.systemDefault()).toInstant())
+                .hospitalization(hospitalization)
+                .build());
+        for (ReportSummaryDTO report : reports)
+            entries.add(TimelineEntryDTO.builder().type(TimelineEntryDTO.Type.REPORT).date(report.getCreatedDate()).report(report).build());
+        entries.sort(Comparator.comparing(Position::of));
+
+        String nextCursor = null;
+        if (entries.size() > size) {
+            entries = new ArrayList<>(entries.subList(0, size));
+            nextCursor = Position.of(entries.get(size - 1)).encode();
+        }
+        return PatientTimelineDTO.builder()
+            .patient(PatientConverter.convert(patient))
+            .currentHospitalization(from == FIRST_PAGE ? findCurrent(hospitalizations) : null)
+            .entries(entries)
+            .nextCursor(nextCursor)
+            .build();
+    }
+
+    private HospitalizationDTO findCurrent(List<Hospitalization> newestFirst) {
+        if (newestFirst.isEmpty() || newestFirst.get(0).getEndDate() != null)
+            return null;
+        return HospitalizationConverter.convert(newestFirst.get(0));
+    }
+
+    private static final class Position implements Comparable<Position> {
+
+        private final Instant date;
+        private final int rank;
+        private final long key;
+
+        private Position(Instant date, int rank, long key) {
+            this.date = date;
+            this.rank = rank;
+            this.key = key;
+        }
+
+        private static Position of(TimelineEntryDTO entry) {
+            long key = entry.getType() == TimelineEntryDTO.Type.REPORT
+                ? entry.getReport().getId()
+                : entry.getHospitalization().getStartDate().toEpochDay();
+            return new Position(entry.getDate(), entry.getType().ordinal(), key);
+        }
+
+        private static Position decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                return new Position(Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])),
+                    Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+            } catch (RuntimeException e) {
+                throw new BadRequestAlertException("Invalid timeline cursor", "patientManagement", "invalidCursor");
+            }
+        }
+
+        /**
+         * The first day whose hospitalizations come after this position. A hospitalization is placed at the start of
+         * its day and before the reports of the same instant, so it comes after this position only if it starts
+         * strictly before the position's date.
+         */
+        private LocalDate hospitalizationsBefore() {
+            if (this == FIRST_PAGE)
+                return LocalDate.of(9999, 12, 31);
+            LocalDate day = date.atZone(ZoneId.systemDefault()).toLocalDate();
+            return day.atStartOfDay(ZoneId.systemDefault()).toInstant().isBefore(date) ? day.plusDays(1) : day;
+        }
+
+        private String encode() {
+            String raw = date.getEpochSecond() + ":" + date.getNano() + ":" + rank + ":" + key;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Timeline order: newest first, hospitalizations before reports on the same instant, then by descending key.
+         */
+        @Override
+        public int compareTo(Position other) {
+            int result = other.date.compareTo(date);
+            if (result == 0)
+                result = Integer.compare(rank, other.rank);
+            if (result == 0)
+                result = Long.compare(other.key, key);
+            return result;
+        }
+    }
+}
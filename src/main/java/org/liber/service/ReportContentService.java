@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.domain.entities.Report;
+import org.liber.domain.repository.ReportRepository;
+import org.liber.utils.CompressionUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Service class for the storage of the report content.
+ * <p>
+ * With {@code application.report-content.compression-enabled}, content above the threshold is written compressed
+ * to {@code compressed_content} instead of {@code content}. Reports are moved to the configured storage whenever
+ * they are saved, and {@link #migrateBatch()} moves the others without changing their version.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReportContentService {
+
+    private final ApplicationProperties applicationProperties;
+    private final ReportRepository reportRepository;
+
+    public void store(Report report, String content) {
+        ApplicationProperties.ReportContent properties = applicationProperties.getReportContent();
+        if (properties.isCompressionEnabled()) {
+            byte[] data = content.getBytes(StandardCharsets.UTF_8);
+            if (data.length >= properties.getThresholdBytes()) {
+                report.setCompressedContent(CompressionUtils.compress(data, properties.getCodec()), content);
+                return;
+            }
+        }
+        report.setContent(content);
+    }
+
+    /**
+     * The outcome of a batch of the migration.
+     */
+    public static class Batch {
+
+        private final int found;
+        private final int moved;
+
+        Batch(int found, int moved) {
+            this.found = found;
+            this.moved = moved;
+        }
+
+        /**
+         * @return the number of reports found in the other storage, {@code 0} once all of them are moved.
+         */
+        public int getFound() {
+            return found;
+        }
+
+        /**
+         * @return the number of reports moved, fewer than found when some changed meanwhile.
+         */
+        public int getMoved() {
+            return moved;
+        }
+    }
+
+    /**
+     * Moves a batch of reports to the configured storage. A report changed meanwhile is skipped; as saving moves
+     * it too, it is either moved already or found again by the next batch.
+     *
+     * @return the batch.
+     */
+    @Transactional
+    public Batch migrateBatch() {
+        ApplicationProperties.ReportContent properties = applicationProperties.getReportContent();
+        PageRequest batch = PageRequest.of(0, properties.getMigrationBatchSize());
+        List<Long> ids = properties.isCompressionEnabled()
+            ? reportRepository.findIdsToCompress(properties.getThresholdBytes(), batch)
+            : reportRepository.findIdsToDecompress(batch);
+        int migrated = 0;
+        for (Report report : reportRepository.findAllById(ids)) {
+            String content = report.getContent();
+            if (properties.isCompressionEnabled())
+                migrated += reportRepository.updateContentStorage(report.getId(), report.getVersion(), null, CompressionUtils.compress(content, properties.getCodec()));
+            else
+                migrated += reportRepository.updateContentStorage(report.getId(), report.getVersion(), content, null);
+        }
+        log.debug("Moved the content of {} of {} reports", migrated, ids.size());
+        return new Batch(ids.size(), migrated);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.ForEachTenant;
+import org.liber.domain.repository.ReportRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+/**
+ * Service class creating the partitions of the {@code report} table ahead of time, so new reports always have one to
+ * go to. The existing reports stay in the first partition, {@code report_legacy}, created by the migration.
+ */
+@Slf4j
+@Service
+public class ReportPartitionService {
+
+    private final ReportRepository reportRepository;
+    private final ApplicationProperties.ReportPartitions properties;
+
+    public ReportPartitionService(ReportRepository reportRepository, ApplicationProperties applicationProperties) {
+        this.reportRepository = reportRepository;
+        this.properties = applicationProperties.getReportPartitions();
+    }
+
+    /**
+     * Creates the missing partitions up to the end of the configured number of intervals after the current one.
+     */
+    @Scheduled(cron = "${application.report-partitions.cron:0 0 4 * * ?}")
+    @ForEachTenant
+    @Transactional
+    public void createPartitions() {
+        Instant until = coveredUntil(LocalDate.now(ZoneOffset.UTC));
+        int created = reportRepository.createPartitions(until, properties.getInterval().name().toLowerCase(Locale.ROOT));
+        if (created > 0)
+            log.info("Created {} report partitions up to {}", created, until);
+    }
+
+    Instant coveredUntil(LocalDate today) {
+        boolean yearly = properties.getInterval() == ApplicationProperties.ReportPartitions.Interval.YEAR;
+        LocalDate start = yearly ? today.withDayOfYear(1) : today.withDayOfMonth(1);
+        Period step = yearly ? Period.ofYears(1) : Period.ofMonths(1);
+        return start.plus(step.multipliedBy(properties.getAhead() + 1)).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
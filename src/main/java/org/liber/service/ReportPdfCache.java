@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.invalidation.InvalidationBus;
+import org.liber.config.invalidation.InvalidationListener;
+import org.liber.config.tenancy.TenantContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local disk cache of rendered report PDFs.
+ * <p>
+ * Keys carry the versions of the rendered reports, so a changed report is never served from an older file; evicting
+ * only frees the space early. Files are written aside and moved in place, so a partial file is never served. Tenants
+ * other than the default one have their files in a directory of their own, as ids repeat across tenants. Evictions
+ * reach the caches of the other instances through the {@link InvalidationBus}, so the prints of deleted reports do
+ * not stay on their disks either.
+ */
+@Slf4j
+@Component
+public class ReportPdfCache implements InvalidationListener {
+
+    private static final Pattern KEY = Pattern.compile("[a-z]+-\\d+-[0-9a-z]+");
+
+    private static final String CACHE = "report-pdf";
+
+    /**
+     * Names the layout of the rendered files; files of another one are cleared at startup.
+     */
+    private static final String FORMAT = "openhtmltopdf-1";
+
+    private static final String FORMAT_FILE = "format";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    private final InvalidationBus invalidationBus;
+
+    public ReportPdfCache(ApplicationProperties applicationProperties, InvalidationBus invalidationBus) throws IOException {
+        this.directory = Paths.get(applicationProperties.getReportPdf().getCacheDirectory());
+        this.maxBytes = applicationProperties.getReportPdf().getCacheMaxBytes();
+        this.invalidationBus = invalidationBus;
+        Files.createDirectories(directory);
+        clearOtherFormat();
+        invalidationBus.subscribe(CACHE, this);
+    }
+
+    public static String reportKey(Long reportId, Long version) {
+        return "report-" + reportId + "-" + version;
+    }
+
+    public static String patientKey(Long patientId, String versionsHash) {
+        return "patient-" + patientId + "-" + versionsHash;
+    }
+
+    public static boolean isValidKey(String key) {
+        return KEY.matcher(key).matches();
+    }
+
+    /**
+     * Opens a rendered file, marking it as recently used. The file stays readable through the channel even if it is
+     * evicted meanwhile.
+     *
+     * @param key the key of the file.
+     * @return the channel to read the file from, if it is cached.
+     */
+    public Optional<FileChannel> open(String key) {
+        Path file = file(key);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted since it was opened, the channel still reads it
+            log.debug("Could not mark {} as used: {}", key, e.getMessage());
+        }
+        return Optional.of(channel);
+    }
+
+    public Path store(String key, PdfContent content) throws IOException {
+        Path temporary = Files.createTempFile(Files.createDirectories(tenantDirectory()), key, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                content.writeTo(out);
+            }
+            Path file = Files.move(temporary, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trim();
+            return file;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Deletes the files of a report and of the patient prints including it, again after the transaction commits.
+     *
+     * @param reportId  the id of the report.
+     * @param patientId the id of its patient.
+     */
+    public void evictAfterCommit(Long reportId, Long patientId) {
+        evictAfterCommit(Collections.singletonList(reportId), Collections.singletonList(patientId));
+    }
+
+    /**
+     * Deletes the files of some reports and of the patient prints of some patients, again on every instance after
+     * the transaction commits.
+     *
+     * @param reportIds  the ids of the reports.
+     * @param patientIds the ids of the patients.
+     */
+    public void evictAfterCommit(Collection<Long> reportIds, Collection<Long> patientIds) {
+        Set<String> prefixes = new HashSet<>();
+        reportIds.forEach(reportId -> prefixes.add("report-" + reportId + "-"));
+        patientIds.forEach(patientId -> prefixes.add("patient-" + patientId + "-"));
+        evict(TenantContext.getTenant(), prefixes);
+        prefixes.forEach(prefix -> invalidationBus.publishAfterCommit(CACHE, prefix));
+    }
+
+    /**
+     * Deletes the files of a tenant starting with a prefix.
+     *
+     * @param tenant the tenant.
+     * @param prefix the prefix, {@code report-<id>-} or {@code patient-<id>-}, {@code null} for every file.
+     */
+    @Override
+    public void evict(String tenant, String prefix) {
+        evict(tenant, prefix == null ? null : Collections.singleton(prefix));
+    }
+
+    @Override
+    public void evictAll() {
+        try (Stream<Path> listed = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) listed.filter(f -> f.toString().endsWith(".pdf"))::iterator)
+                Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not clear the PDF cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Clears the files rendered in another format, as the keys only carry the versions of the reports.
+     */
+    private void clearOtherFormat() throws IOException {
+        Path marker = directory.resolve(FORMAT_FILE);
+        if (Files.exists(marker) && FORMAT.equals(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8)))
+            return;
+        evictAll();
+        Files.write(marker, FORMAT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void evict(String tenant, Set<String> prefixes) {
+        Path tenantDirectory = tenantDirectory(tenant);
+        if (!Files.isDirectory(tenantDirectory))
+            return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tenantDirectory, "*.pdf")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (prefixes == null || prefixes.contains(name.substring(0, name.lastIndexOf('-') + 1)))
+                    Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not evict {} from the PDF cache: {}", prefixes, e.getMessage());
+        }
+    }
+
+    private synchronized void trim() throws IOException {
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> listed = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) listed.filter(f -> f.toString().endsWith(".pdf"))::iterator) {
+                files.add(file);
+                total += size(file);
+            }
+        }
+        if (total <= maxBytes)
+            return;
+        files.sort(Comparator.comparing(ReportPdfCache::lastModified));
+        for (Path file : files) {
+            if (total <= maxBytes)
+                break;
+            total -= size(file);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime();
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private Path file(String key) {
+        if (!isValidKey(key))
+            throw new IllegalArgumentException("Invalid PDF cache key " + key);
+        return tenantDirectory().resolve(key + ".pdf");
+    }
+
+    private Path tenantDirectory() {
+        return tenantDirectory(TenantContext.getTenant());
+    }
+
+    private Path tenantDirectory(String tenant) {
+        return TenantContext.DEFAULT_TENANT.equals(tenant) ? directory : directory.resolve(tenant);
+    }
+
+    @FunctionalInterface
+    public interface PdfContent {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
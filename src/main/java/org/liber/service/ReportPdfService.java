@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.TenantContext;
+import org.liber.service.dto.ReportDTO;
+import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.TooManyRequestsAlertException;
+import org.liber.utils.HtmlPdfWriter;
+import org.liber.utils.SanitizeUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Service class rendering reports to PDF.
+ * <p>
+ * Renders run on a dedicated bounded executor and the rendered files are kept in the {@link ReportPdfCache}. A
+ * request waits for its render up to the latency budget; past it, it gets the cache key as a job id to poll, while
+ * the render goes on. Concurrent requests for the same key share a single render.
+ */
+@Slf4j
+@Service
+public class ReportPdfService implements DisposableBean {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final ReportService reportService;
+    private final PatientService patientService;
+    private final ReportPdfCache reportPdfCache;
+    private final ThreadPoolExecutor executor;
+    private final long latencyBudgetMillis;
+    private final Map<String, CompletableFuture<Path>> renders = new ConcurrentHashMap<>();
+
+    public ReportPdfService(ReportService reportService, PatientService patientService, ReportPdfCache reportPdfCache,
+                            ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.reportService = reportService;
+        this.patientService = patientService;
+        this.reportPdfCache = reportPdfCache;
+        ApplicationProperties.ReportPdf properties = applicationProperties.getReportPdf();
+        this.latencyBudgetMillis = properties.getLatencyBudgetMillis();
+        this.executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.getQueueCapacity()), new CustomizableThreadFactory("liber-report-pdf-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        meterRegistry.gauge("liber.report.pdf.queue.size", executor, e -> e.getQueue().size());
+    }
+
+    /**
+     * The result of a render request: the open file when it is ready, which the caller closes, otherwise the job to
+     * poll.
+     */
+    public static class Rendering {
+
+        private final String jobId;
+        private final FileChannel file;
+
+        Rendering(String jobId, FileChannel file) {
+            this.jobId = jobId;
+            this.file = file;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public Optional<FileChannel> getFile() {
+            return Optional.ofNullable(file);
+        }
+    }
+
+    public Rendering renderReport(Long reportId) {
+        String key = ReportPdfCache.reportKey(reportId, reportService.getVersion(reportId));
+        return render(key, () -> {
+            ReportDTO report = reportService.getReportById(reportId);
+            return Collections.singletonList(report);
+        });
+    }
+
+    public Rendering renderPublishedReports(Long patientId) {
+        Map<Long, Long> versions = reportService.getPublishedVersions(patientId);
+        String key = ReportPdfCache.patientKey(patientId, hash(versions));
+        return render(key, () -> reportService.getAllPublished(patientId));
+    }
+
+    /**
+     * Polls a render started by a request that ran out of its latency budget.
+     *
+     * @param jobId the job id returned with the pending rendering.
+     * @return the rendering, with its file once it is done.
+     * @throws NotFoundAlertException if the job is unknown, or its file was evicted since, so the PDF has to be
+     *                                requested again.
+     */
+    public Rendering getRendering(String jobId) {
+        if (!ReportPdfCache.isValidKey(jobId))
+            throw new NotFoundAlertException("PDF job not found", "report", "pdfJobNotFound");
+        Optional<FileChannel> cached = reportPdfCache.open(jobId);
+        if (cached.isPresent())
+            return new Rendering(jobId, cached.get());
+        CompletableFuture<Path> render = renders.get(renderKey(jobId));
+        Optional<Rendering> rendering = render == null ? Optional.empty() : await(jobId, render, 0);
+        return rendering.orElseThrow(() -> new NotFoundAlertException("PDF job not found", "report", "pdfJobNotFound"));
+    }
+
+    private Rendering render(String key, Supplier<List<ReportDTO>> reports) {
+        Optional<FileChannel> cached = reportPdfCache.open(key);
+        if (cached.isPresent())
+            return new Rendering(key, cached.get());
+        // loaded on the request thread, which carries the security context and may open a transaction
+        List<ReportDTO> loaded = reports.get();
+        String patientName = loaded.isEmpty() ? "" : patientService.getPatientById(loaded.get(0).getPatientId()).getName();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            CompletableFuture<Path> render = renders.computeIfAbsent(renderKey(key), k -> submit(key, patientName, loaded));
+            Optional<Rendering> rendering = await(key, render, latencyBudgetMillis);
+            if (rendering.isPresent())
+                return rendering.get();
+            // evicted as soon as it was rendered, render it again, even if the done render is still registered
+            renders.remove(renderKey(key), render);
+        }
+        throw new IllegalStateException("The PDF " + key + " was evicted as soon as it was rendered, twice");
+    }
+
+    private CompletableFuture<Path> submit(String key, String patientName, List<ReportDTO> reports) {
+        CompletableFuture<Path> render = new CompletableFuture<>();
+        try {
+            String renderKey = renderKey(key);
+            executor.execute(TenantContext.wrap(() -> {
+                try {
+                    render.complete(reportPdfCache.store(key, out -> write(patientName, reports).writeTo(out)));
+                } catch (Throwable e) {
+                    log.warn("Could not render {}: {}", key, e.getMessage());
+                    render.completeExceptionally(e);
+                } finally {
+                    renders.remove(renderKey, render);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsAlertException("Too many PDF renders waiting", "report", "tooManyRenders", 5);
+        }
+        return render;
+    }
+
+    /**
+     * Keys the running renders by tenant too, so a job id never finds the render of another tenant.
+     */
+    private static String renderKey(String key) {
+        return TenantContext.getTenant() + "/" + key;
+    }
+
+    /**
+     * Waits for a render, then opens its file.
+     *
+     * @return the rendering, without file if it is still running, empty if its file was evicted since.
+     */
+    private Optional<Rendering> await(String key, CompletableFuture<Path> render, long timeoutMillis) {
+        try {
+            render.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return reportPdfCache.open(key).map(file -> new Rendering(key, file));
+        } catch (TimeoutException e) {
+            return Optional.of(new Rendering(key, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a PDF render", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("PDF render failed", e.getCause());
+        }
+    }
+
+    private static HtmlPdfWriter write(String patientName, List<ReportDTO> reports) {
+        HtmlPdfWriter pdf = new HtmlPdfWriter(patientName);
+        for (ReportDTO report : reports) {
+            pdf.newPage();
+            pdf.paragraph(report.getTitle(), HtmlPdfWriter.Style.TITLE);
+            pdf.paragraph(patientName, HtmlPdfWriter.Style.HEADING);
+            pdf.paragraph(report.getType() + " - " + report.getAuthorFirstName() + " " + report.getAuthorLastName() + " - "
+                + report.getCreatedDate().format(DATE_FORMAT), HtmlPdfWriter.Style.SMALL);
+            pdf.html(report.getContent(), SanitizeUtils.CONTENT);
+        }
+        return pdf;
+    }
+
+    private static String hash(Map<Long, Long> versions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            versions.forEach((id, version) -> digest.update((id + ":" + version + ";").getBytes(StandardCharsets.US_ASCII)));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : Arrays.copyOf(digest.digest(), 10))
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
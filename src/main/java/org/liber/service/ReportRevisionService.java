@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import lombok.RequiredArgsConstructor;
+import org.liber.domain.entities.Report;
+import org.liber.domain.entities.ReportRevision;
+import org.liber.domain.entities.User;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.domain.repository.ReportRepository;
+import org.liber.domain.repository.ReportRevisionRepository;
+import org.liber.security.AuthorityMask;
+import org.liber.security.SecurityUtils;
+import org.liber.service.dto.ReportRevisionDTO;
+import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.UnauthorizedAlertException;
+import org.liber.utils.DeltaUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Service class for the revision history of reports.
+ * <p>
+ * Each revision stores its content as a deflated delta against the previous revision, so a small edit of a large
+ * report costs a few dozen bytes. A full deflated snapshot is stored every {@link #SNAPSHOT_INTERVAL} revisions, or
+ * when the delta would not be much smaller than the content, so rebuilding a revision never applies more than
+ * {@code SNAPSHOT_INTERVAL - 1} deltas.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportRevisionService {
+
+    static final int SNAPSHOT_INTERVAL = 16;
+
+    private final ReportRevisionRepository reportRevisionRepository;
+    private final ReportRepository reportRepository;
+    private final ArchiveService archiveService;
+
+    /**
+     * Records the first revision of a new report.
+     *
+     * @param report the saved report.
+     */
+    @Transactional
+    public void recordCreation(Report report) {
+        byte[] content = toBytes(report.getContent());
+        save(report, 1, true, DeltaUtils.deflate(content), content.length, report.getTitle(), report.getStatus(), report.getAuthor(), Instant.now());
+    }
+
+    /**
+     * Records a new revision of a changed report. Reports saved before the history existed get their previous state
+     * recorded first, as a snapshot.
+     *
+     * @param report          the saved report.
+     * @param previousContent the content before the change.
+     * @param previousTitle   the title before the change.
+     * @param previousStatus  the status before the change.
+     */
+    @Transactional
+    public void recordUpdate(Report report, String previousContent, String previousTitle, ReportStatus previousStatus) {
+        if (report.getContent().equals(previousContent) && report.getTitle().equals(previousTitle) && report.getStatus() == previousStatus)
+            return;
+        byte[] previous = toBytes(previousContent);
+        Object[] latest = reportRevisionRepository.findLatestRevisionsByReportId(report.getId()).get(0);
+        int revision;
+        int lastSnapshot;
+        if (latest[0] == null) {
+            save(report, 1, true, DeltaUtils.deflate(previous), previous.length, previousTitle, previousStatus, report.getAuthor(), report.getLastModifiedDate());
+            revision = 2;
+            lastSnapshot = 1;
+        } else {
+            revision = ((Number) latest[0]).intValue() + 1;
+            lastSnapshot = ((Number) latest[1]).intValue();
+        }
+        byte[] content = toBytes(report.getContent());
+        byte[] stored = null;
+        boolean snapshot = revision - lastSnapshot >= SNAPSHOT_INTERVAL;
+        if (!snapshot) {
+            stored = DeltaUtils.diff(previous, content);
+            snapshot = stored.length > content.length / 8;
+        }
+        if (snapshot)
+            stored = DeltaUtils.deflate(content);
+        save(report, revision, snapshot, stored, content.length, report.getTitle(), report.getStatus(), report.getAuthor(), Instant.now());
+    }
+
+    private void save(Report report, int revision, boolean snapshot, byte[] content, int contentLength, String title, ReportStatus status, User author, Instant createdDate) {
+        ReportRevision entity = new ReportRevision();
+        entity.setReport(report);
+        entity.setRevision(revision);
+        entity.setSnapshot(snapshot);
+        entity.setContent(content);
+        entity.setContentLength(contentLength);
+        entity.setTitle(title);
+        entity.setStatus(status);
+        entity.setAuthor(author);
+        entity.setCreatedDate(createdDate);
+        reportRevisionRepository.save(entity);
+    }
+
+    /**
+     * Deletes the revisions of a report about to be deleted.
+     *
+     * @param reportId the report id.
+     */
+    @Transactional
+    public void deleteAllByReportId(Long reportId) {
+        reportRevisionRepository.deleteAllByReportId(reportId);
+    }
+
+    /**
+     * Lists the revisions of a report, newest first. The revisions of an archived report are moved back with it.
+     */
+    @Transactional
+    public List<ReportRevisionDTO> getAllByReportId(Long reportId) {
+        checkAccess(reportId);
+        return reportRevisionRepository.findDTOsByReportId(reportId);
+    }
+
+    /**
+     * Rebuilds a revision from the closest snapshot, applying the deltas between two reused buffers.
+     */
+    @Transactional
+    public ReportRevisionDTO getRevision(Long reportId, Integer revision) {
+        checkAccess(reportId);
+        List<ReportRevision> chain = reportRevisionRepository.findChainByReportIdAndRevision(reportId, revision);
+        if (chain.isEmpty() || !Objects.equals(chain.get(chain.size() - 1).getRevision(), revision))
+            throw new NotFoundAlertException("Report revision not found", "report", "revisionNotFound");
+        int capacity = chain.stream().mapToInt(ReportRevision::getContentLength).max().getAsInt();
+        byte[] content = new byte[capacity];
+        byte[] spare = chain.size() > 1 ? new byte[capacity] : null;
+        int length = DeltaUtils.inflate(chain.get(0).getContent(), content);
+        for (ReportRevision delta : chain.subList(1, chain.size())) {
+            length = DeltaUtils.patch(content, length, delta.getContent(), spare);
+            byte[] swap = content;
+            content = spare;
+            spare = swap;
+        }
+        ReportRevision target = chain.get(chain.size() - 1);
+        return ReportRevisionDTO.builder()
+            .revision(target.getRevision())
+            .snapshot(target.getSnapshot())
+            .status(target.getStatus())
+            .title(target.getTitle())
+            .authorId(target.getAuthor().getId())
+            .authorFirstName(target.getAuthor().getFirstName())
+            .authorLastName(target.getAuthor().getLastName())
+            .createdDate(target.getCreatedDate())
+            .contentLength(target.getContentLength())
+            .storedBytes(target.getContent().length)
+            .content(new String(content, 0, length, StandardCharsets.UTF_8))
+            .build();
+    }
+
+    private void checkAccess(Long reportId) {
+        if (!SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.CLINICAL_STAFF))
+            throw new UnauthorizedAlertException("Unauthorized", "report", "unauthorized");
+        if (!reportRepository.existsById(reportId) && !archiveService.restoreReport(reportId))
+            throw new NotFoundAlertException("Report not found", "report", "reportNotFound");
+    }
+
+    private static byte[] toBytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
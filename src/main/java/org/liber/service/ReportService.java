@@ -21,17 +21,23 @@ package org.liber.service;
 
 import lombok.RequiredArgsConstructor;
 import org.liber.converters.ReportConverter;
+import org.liber.domain.entities.ArchivedReport;
 import org.liber.domain.entities.Patient;
 import org.liber.domain.entities.Report;
 import org.liber.domain.entities.User;
+import org.liber.domain.enums.ChangeKind;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.domain.enums.SyncEntityType;
+import org.liber.domain.repository.ArchivedReportRepository;
 import org.liber.domain.repository.PatientRepository;
 import org.liber.domain.repository.ReportRepository;
 import org.liber.domain.repository.UserRepository;
-import org.liber.security.AuthoritiesConstants;
+import org.liber.security.AuthorityMask;
 import org.liber.security.SecurityUtils;
 import org.liber.service.dto.ReportDTO;
 import org.liber.service.errors.BadRequestAlertException;
 import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.PreconditionFailedAlertException;
 import org.liber.service.errors.UnauthorizedAlertException;
 import org.liber.utils.SanitizeUtils;
 import org.springframework.data.domain.Page;
@@ -39,7 +45,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -47,24 +54,66 @@ public class ReportService {
 
     private final PatientRepository patientRepository;
     private final ReportRepository reportRepository;
+    private final ArchivedReportRepository archivedReportRepository;
+    private final ArchiveService archiveService;
     private final UserRepository userRepository;
+    private final ReportRevisionService reportRevisionService;
+    private final ReportContentService reportContentService;
+    private final ReportPdfCache reportPdfCache;
+    private final ChangeFeedService changeFeedService;
+    private final SyncService syncService;
 
     @Transactional
     public Report create(ReportDTO dto) {
         if (dto.getId() != null)
             throw new BadRequestAlertException("It can't create a report that already has an id", "report", "hasId");
-        return loadAndSave(new Report(), dto);
+        Report report = loadAndSave(new Report(), dto);
+        reportRevisionService.recordCreation(report);
+        reportPdfCache.evictAfterCommit(report.getId(), report.getPatient().getId());
+        changeFeedService.reportChanged(report, ChangeKind.CREATED);
+        return report;
     }
 
     @Transactional
     public Report update(ReportDTO dto) {
-        Optional<Report> found = reportRepository.findById(dto.getId());
+        return update(dto, null);
+    }
+
+    /**
+     * Updates the report if it is still in the expected version.
+     *
+     * @param dto             the report to update.
+     * @param expectedVersion the version the client has, {@code null} to skip the check.
+     * @return the updated report.
+     */
+    @Transactional
+    public Report update(ReportDTO dto, Long expectedVersion) {
+        Optional<Report> found = findForChange(dto.getId());
         if (!found.isPresent())
             throw new NotFoundAlertException("No report found with provided ID", "report", "reportNotFound");
         Report report = found.get();
         if (!isOwner(report))
             throw new UnauthorizedAlertException("Unauthorized", "report", "unauthorized");
-        return loadAndSave(report, dto);
+        if (expectedVersion != null && !expectedVersion.equals(report.getVersion()))
+            throw new PreconditionFailedAlertException("The report was changed by someone else", "report", "versionMismatch");
+        String previousContent = report.getContent();
+        String previousTitle = report.getTitle();
+        ReportStatus previousStatus = report.getStatus();
+        report = loadAndSave(report, dto);
+        reportRevisionService.recordUpdate(report, previousContent, previousTitle, previousStatus);
+        reportPdfCache.evictAfterCommit(report.getId(), report.getPatient().getId());
+        changeFeedService.reportChanged(report, ChangeKind.UPDATED);
+        return report;
+    }
+
+    /**
+     * Finds a report to change, moving it back from the archive if it was archived.
+     */
+    private Optional<Report> findForChange(Long id) {
+        Optional<Report> found = reportRepository.findById(id);
+        if (!found.isPresent() && archiveService.restoreReport(id))
+            found = reportRepository.findById(id);
+        return found;
     }
 
     private boolean isOwner(Report report) {
@@ -74,12 +123,13 @@ public class ReportService {
 
     private Report loadAndSave(Report entity, ReportDTO dto) {
         entity.setAuthor(findCurrentUser());
-        entity.setContent(SanitizeUtils.sanitizeContent(dto.getContent()));
+        reportContentService.store(entity, SanitizeUtils.sanitizeContent(dto.getContent()));
         entity.setPatient(findPatient(dto.getPatientId()));
         entity.setTitle(dto.getTitle());
         entity.setType(dto.getType());
         entity.setStatus(dto.getStatus());
-        return reportRepository.save(entity);
+        // flushed so the version, returned as the ETag, is the one written
+        return reportRepository.saveAndFlush(entity);
     }
 
     private User findCurrentUser() {
@@ -94,32 +144,85 @@ public class ReportService {
 
     @Transactional(readOnly = true)
     public Page<ReportDTO> getAll(Long patientId, Pageable pageable) {
-        if (!SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.DENTIST, AuthoritiesConstants.PSYCHIATRIST, AuthoritiesConstants.PSYCHOLOGIST, AuthoritiesConstants.SOCIAL_ASSISTANT))
+        if (!SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.CLINICAL_STAFF))
             throw new UnauthorizedAlertException("Unauthorized", "report", "unauthorized");
         return reportRepository.findAllByPatientId(patientId, pageable).map(ReportConverter::convert);
     }
 
     @Transactional(readOnly = true)
     public ReportDTO getReportById(Long id) {
-        if (!SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.DENTIST, AuthoritiesConstants.PSYCHIATRIST, AuthoritiesConstants.PSYCHOLOGIST, AuthoritiesConstants.SOCIAL_ASSISTANT))
+        if (!SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.CLINICAL_STAFF))
             throw new UnauthorizedAlertException("Unauthorized", "report", "unauthorized");
-        return reportRepository.findById(id).map(ReportConverter::convert).orElseThrow(() -> new NotFoundAlertException("Report not found", "report", "reportNotFound"));
+        Optional<ReportDTO> found = reportRepository.findById(id).map(ReportConverter::convert);
+        if (!found.isPresent())
+            found = archivedReportRepository.findById(id).map(ReportConverter::convert);
+        return found.orElseThrow(() -> new NotFoundAlertException("Report not found", "report", "reportNotFound"));
+    }
+
+    /**
+     * Lists the published reports of a patient, archived ones included, oldest first.
+     *
+     * @param patientId the id of the patient.
+     * @return the reports.
+     */
+    @Transactional(readOnly = true)
+    public List<ReportDTO> getAllPublished(Long patientId) {
+        checkReadAccess();
+        List<ReportDTO> reports = reportRepository.findAllByPatientIdAndStatusOrderByCreatedDateAscIdAsc(patientId, ReportStatus.PUBLISHED).stream()
+            .map(ReportConverter::convert)
+            .collect(Collectors.toList());
+        List<ArchivedReport> archived = archivedReportRepository.findAllByPatientIdAndStatusOrderByCreatedDateAscIdAsc(patientId, ReportStatus.PUBLISHED);
+        if (archived.isEmpty())
+            return reports;
+        archived.forEach(report -> reports.add(ReportConverter.convert(report)));
+        // ids grow with the creation time, so they order the reports created on the same day
+        reports.sort(Comparator.comparing(ReportDTO::getCreatedDate).thenComparing(ReportDTO::getId));
+        return reports;
+    }
+
+    /**
+     * Reads the id and version of the published reports of a patient, archived ones last.
+     *
+     * @param patientId the id of the patient.
+     * @return the versions by report id.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getPublishedVersions(Long patientId) {
+        checkReadAccess();
+        Map<Long, Long> versions = new LinkedHashMap<>();
+        for (Object[] row : reportRepository.findIdsAndVersionsByPatientIdAndStatus(patientId, ReportStatus.PUBLISHED))
+            versions.put((Long) row[0], (Long) row[1]);
+        for (Object[] row : archivedReportRepository.findIdsAndVersionsByPatientIdAndStatus(patientId, ReportStatus.PUBLISHED))
+            versions.put((Long) row[0], (Long) row[1]);
+        return versions;
+    }
+
+    private void checkReadAccess() {
+        if (!SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.CLINICAL_STAFF))
+            throw new UnauthorizedAlertException("Unauthorized", "report", "unauthorized");
+    }
+
+    @Transactional(readOnly = true)
+    public Long getVersion(Long id) {
+        Optional<Long> version = reportRepository.findVersionById(id);
+        if (!version.isPresent())
+            version = archivedReportRepository.findVersionById(id);
+        return version.orElseThrow(() -> new NotFoundAlertException("Report not found", "report", "reportNotFound"));
     }
 
     @Transactional
     public void delete(Long id) {
-        Optional<Report> found = reportRepository.findById(id);
+        Optional<Report> found = findForChange(id);
         if (!found.isPresent())
             throw new NotFoundAlertException("No report found with provided ID", "report", "reportNotFound");
         Report entity = found.get();
         User user = findCurrentUser();
         if (user == null || !user.equals(entity))
             throw new UnauthorizedAlertException("Unauthorized", "report", "unauthorized");
+        reportRevisionService.deleteAllByReportId(entity.getId());
         reportRepository.delete(entity);
-    }
-
-    @Transactional
-    public void deleteAllByPatientId(Long patientId) {
-        reportRepository.deleteByPatientId(patientId);
+        reportPdfCache.evictAfterCommit(entity.getId(), entity.getPatient().getId());
+        syncService.recordDeletion(SyncEntityType.REPORT, entity.getId());
+        changeFeedService.reportChanged(entity, ChangeKind.DELETED);
     }
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.ForEachTenant;
+import org.liber.converters.HospitalizationConverter;
+import org.liber.converters.PatientConverter;
+import org.liber.domain.entities.Hospitalization;
+import org.liber.domain.entities.Patient;
+import org.liber.domain.entities.SyncTombstone;
+import org.liber.domain.enums.SyncEntityType;
+import org.liber.domain.repository.HospitalizationRepository;
+import org.liber.domain.repository.PatientRepository;
+import org.liber.domain.repository.ReportRepository;
+import org.liber.domain.repository.SyncTombstoneRepository;
+import org.liber.service.dto.CommonDTO;
+import org.liber.service.dto.ReportSummaryDTO;
+import org.liber.service.dto.SyncDTO;
+import org.liber.service.dto.SyncTombstoneDTO;
+import org.liber.service.errors.BadRequestAlertException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sends clients the records created, updated and deleted since their last sync.
+ * <p>
+ * A sync reads the window between the start of its token and the moment its first page is read, so records changed
+ * while it pages are left for the next one. Lookup rows come in full on the first page; patients, hospitalizations,
+ * reports and tombstones follow in that order, each paged by modification date and key. The token of the last page
+ * starts {@code overlapSeconds} before the end of the window: a transaction still open when the window was read
+ * stamped its rows before that end but commits after it, and the overlap sends them on the next sync. Clients
+ * apply records by key, so receiving one twice is harmless.
+ */
+@Service
+public class SyncService {
+
+    private static final int LOOKUPS = 0;
+    private static final int PATIENTS = 1;
+    private static final int HOSPITALIZATIONS = 2;
+    private static final int REPORTS = 3;
+    private static final int DELETIONS = 4;
+
+    private final Logger log = LoggerFactory.getLogger(SyncService.class);
+
+    private final ApplicationProperties.Sync properties;
+    private final PatientRepository patientRepository;
+    private final HospitalizationRepository hospitalizationRepository;
+    private final ReportRepository reportRepository;
+    private final SyncTombstoneRepository syncTombstoneRepository;
+
+    public SyncService(ApplicationProperties applicationProperties, PatientRepository patientRepository, HospitalizationRepository hospitalizationRepository,
+                       ReportRepository reportRepository, SyncTombstoneRepository syncTombstoneRepository) {
+        this.properties = applicationProperties.getSync();
+        this.patientRepository = patientRepository;
+        this.hospitalizationRepository = hospitalizationRepository;
+        this.reportRepository = reportRepository;
+        this.syncTombstoneRepository = syncTombstoneRepository;
+    }
+
+    /**
+     * Reads a page of the changes since a token.
+     *
+     * @param token the token of the previous page or sync, {@code null} to get everything.
+     * @param size  the maximum number of patients, hospitalizations, reports and tombstones in the page.
+     * @return the page.
+     */
+    @Transactional(readOnly = true)
+    public SyncDTO getChanges(String token, Integer size) {
+        int remaining = size == null ? properties.getPageSize() : Math.max(1, Math.min(size, properties.getPageSize()));
+        Token from = token == null || token.isEmpty() ? new Token(null) : Token.decode(token);
+        SyncDTO sync = SyncDTO.builder()
+            .lookups(new EnumMap<>(SyncEntityType.class))
+            .patients(new ArrayList<>())
+            .hospitalizations(new ArrayList<>())
+            .reports(new ArrayList<>())
+            .deleted(new ArrayList<>())
+            .build();
+        if (from.until == null) {
+            Instant now = Instant.now();
+            if (from.since != null && from.since.isBefore(now.minus(Duration.ofDays(properties.getTombstoneRetentionDays())))) {
+                log.debug("Sync token from {} is older than the tombstones, sending everything", from.since);
+                from = new Token(null);
+            }
+            from.until = now;
+            sync.setReset(from.since == null);
+        }
+        Token next = from;
+        while (remaining > 0 && next.stage <= DELETIONS) {
+            int read = readStage(next, remaining, sync);
+            if (next.stage == LOOKUPS || read < remaining)
+                next = next.nextStage();
+            remaining -= read;
+        }
+        sync.setHasMore(next.stage <= DELETIONS);
+        sync.setNextToken(sync.isHasMore() ? next.encode() : new Token(next.until.minusSeconds(properties.getOverlapSeconds())).encode());
+        return sync;
+    }
+
+    private int readStage(Token token, int size, SyncDTO sync) {
+        PageRequest page = PageRequest.of(0, size);
+        switch (token.stage) {
+            case LOOKUPS:
+                for (Object[] row : syncTombstoneRepository.findLookupsModifiedBetween(token.sinceOrEpoch(), token.until))
+                    sync.getLookups().computeIfAbsent(SyncEntityType.valueOf((String) row[0]), t -> new ArrayList<>())
+                        .add(new CommonDTO(((Number) row[1]).longValue(), (String) row[2]));
+                return 0;
+            case PATIENTS:
+                List<Object[]> keys = patientRepository.findIdsModifiedAfter(token.afterDate, token.afterId, token.until, page);
+                if (keys.isEmpty())
+                    return 0;
+                Map<Long, Patient> patients = patientRepository.findAllWithDocumentsByIdIn(keys.stream().map(k -> (Long) k[1]).collect(Collectors.toList()))
+                    .stream().collect(Collectors.toMap(Patient::getId, Function.identity()));
+                for (Object[] key : keys)
+                    if (patients.containsKey((Long) key[1]))
+                        sync.getPatients().add(PatientConverter.convert(patients.get((Long) key[1])));
+                Object[] lastPatient = keys.get(keys.size() - 1);
+                token.after((Instant) lastPatient[0], (Long) lastPatient[1], 0);
+                return keys.size();
+            case HOSPITALIZATIONS:
+                List<Hospitalization> hospitalizations = hospitalizationRepository.findModifiedAfter(token.afterDate, token.afterId,
+                    LocalDate.ofEpochDay(token.afterDay), token.until, page);
+                for (Hospitalization hospitalization : hospitalizations)
+                    sync.getHospitalizations().add(HospitalizationConverter.convert(hospitalization));
+                if (!hospitalizations.isEmpty()) {
+                    Hospitalization last = hospitalizations.get(hospitalizations.size() - 1);
+                    token.after(last.getLastModifiedDate(), last.getPatient().getId(), last.getStartDate().toEpochDay());
+                }
+                return hospitalizations.size();
+            case REPORTS:
+                List<ReportSummaryDTO> reports = reportRepository.findSummariesModifiedAfter(token.afterDate, token.afterId, token.until, page);
+                sync.getReports().addAll(reports);
+                if (!reports.isEmpty()) {
+                    ReportSummaryDTO last = reports.get(reports.size() - 1);
+                    token.after(last.getLastModifiedDate(), last.getId(), 0);
+                }
+                return reports.size();
+            default:
+                if (token.since == null)
+                    return 0;
+                List<SyncTombstone> tombstones = syncTombstoneRepository.findDeletedAfter(token.afterDate, token.afterId, token.until, page);
+                for (SyncTombstone tombstone : tombstones)
+                    sync.getDeleted().add(new SyncTombstoneDTO(tombstone.getEntity(), tombstone.getEntityId(), tombstone.getDeletedDate()));
+                if (!tombstones.isEmpty()) {
+                    SyncTombstone last = tombstones.get(tombstones.size() - 1);
+                    token.after(last.getDeletedDate(), last.getId(), 0);
+                }
+                return tombstones.size();
+        }
+    }
+
+    /**
+     * Records the deletion of an entity for the clients to drop it on their next sync.
+     *
+     * @param entity the type of the entity.
+     * @param id     the id of the entity, {@code <patientId>:<startDate>} for hospitalizations.
+     */
+    @Transactional
+    public void recordDeletion(SyncEntityType entity, Object id) {
+        SyncTombstone tombstone = new SyncTombstone();
+        tombstone.setEntity(entity);
+        tombstone.setEntityId(String.valueOf(id));
+        syncTombstoneRepository.save(tombstone);
+    }
+
+    /**
+     * Forgets the deletion of an entity created again with the same key, so a client doesn't drop the new one.
+     *
+     * @param entity the type of the entity.
+     * @param id     the id of the entity, {@code <patientId>:<startDate>} for hospitalizations.
+     */
+    @Transactional
+    public void recordRecreation(SyncEntityType entity, Object id) {
+        syncTombstoneRepository.deleteByEntity(entity, String.valueOf(id));
+    }
+
+    /**
+     * Removes the tombstones past their retention; clients syncing from before that get everything again.
+     */
+    @Scheduled(cron = "${application.sync.tombstone-cleanup-cron:0 15 4 * * ?}")
+    @ForEachTenant
+    @Transactional
+    public void removeExpiredTombstones() {
+        int removed = syncTombstoneRepository.deleteDeletedBefore(Instant.now().minus(Duration.ofDays(properties.getTombstoneRetentionDays())));
+        log.debug("Removed {} expired sync tombstones", removed);
+    }
+
+    /**
+     * Position of a sync: the window it reads, the stage it is in and the key of the last record sent in that stage.
+     */
+    private static final class Token {
+
+        private final Instant since;
+        private Instant until;
+        private int stage;
+        private Instant afterDate;
+        private long afterId;
+        private long afterDay;
+
+        private Token(Instant since) {
+            this.since = since;
+            startStage(LOOKUPS);
+        }
+
+        private Instant sinceOrEpoch() {
+            return since == null ? Instant.EPOCH : since;
+        }
+
+        private void startStage(int stage) {
+            this.stage = stage;
+            this.afterDate = sinceOrEpoch();
+            this.afterId = Long.MAX_VALUE;
+            this.afterDay = 0;
+        }
+
+        private Token nextStage() {
+            startStage(stage + 1);
+            return this;
+        }
+
+        private void after(Instant date, long id, long day) {
+            this.afterDate = date;
+            this.afterId = id;
+            this.afterDay = day;
+        }
+
+        private String encode() {
+            String value = (since == null ? "" : since.getEpochSecond() + "." + since.getNano()) + ":" +
+                (until == null ? "" : until.getEpochSecond() + "." + until.getNano()) + ":" +
+                stage + ":" + afterDate.getEpochSecond() + "." + afterDate.getNano() + ":" + afterId + ":" + afterDay;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Token decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", -1);
+                Token decoded = new Token(parseInstant(parts[0]));
+                decoded.until = parseInstant(parts[1]);
+                decoded.stage = Integer.parseInt(parts[2]);
+                decoded.after(parseInstant(parts[3]), Long.parseLong(parts[4]), Long.parseLong(parts[5]));
+                if (decoded.stage < LOOKUPS || decoded.stage > DELETIONS || decoded.afterDate == null)
+                    throw new IllegalArgumentException(token);
+                return decoded;
+            } catch (RuntimeException e) {
+                throw new BadRequestAlertException("Invalid sync token", "sync", "invalidToken");
+            }
+        }
+
+        private static Instant parseInstant(String value) {
+            if (value.isEmpty())
+                return null;
+            int dot = value.indexOf('.');
+            return Instant.ofEpochSecond(Long.parseLong(value.substring(0, dot)), Long.parseLong(value.substring(dot + 1)));
+        }
+    }
+}
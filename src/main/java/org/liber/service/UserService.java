@@ -25,7 +25,9 @@ import org.liber.domain.entities.Authority;
 import org.liber.domain.entities.User;
 import org.liber.domain.repository.AuthorityRepository;
 import org.liber.domain.repository.UserRepository;
+import org.liber.security.BasicAuthenticationCache;
 import org.liber.security.SecurityUtils;
+import org.liber.security.jwt.RevokedTokens;
 import org.liber.service.dto.UserDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -58,10 +61,17 @@ public class UserService {
 
     private final AuthorityRepository authorityRepository;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository) {
+    private final BasicAuthenticationCache basicAuthenticationCache;
+
+    private final RevokedTokens revokedTokens;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository,
+                       BasicAuthenticationCache basicAuthenticationCache, RevokedTokens revokedTokens) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
+        this.basicAuthenticationCache = basicAuthenticationCache;
+        this.revokedTokens = revokedTokens;
     }
 
     public User createUser(UserDTO userDTO) {
@@ -97,7 +107,8 @@ public class UserService {
     }
 
     /**
-     * Update all information for a specific user, and return the modified user.
+     * Update all information for a specific user, and return the modified user. Deactivating the user or changing
+     * its authorities revokes the tokens issued to it, as they carry the old authorities.
      *
      * @param userDTO user to update.
      * @return updated user.
@@ -114,15 +125,20 @@ public class UserService {
                     user.setEmail(userDTO.getEmail().toLowerCase());
                 }
                 user.setImageUrl(userDTO.getImageUrl());
+                boolean deactivated = user.getActivated() && !userDTO.isActivated();
                 user.setActivated(userDTO.isActivated());
                 user.setLangKey(userDTO.getLangKey());
                 Set<Authority> managedAuthorities = user.getAuthorities();
+                Set<Authority> previousAuthorities = new HashSet<>(managedAuthorities);
                 managedAuthorities.clear();
                 userDTO.getAuthorities().stream()
                     .map(authorityRepository::findById)
                     .filter(Optional::isPresent)
                     .map(Optional::get)
                     .forEach(managedAuthorities::add);
+                basicAuthenticationCache.evictAfterCommit(user.getLogin());
+                if (deactivated || !previousAuthorities.equals(managedAuthorities))
+                    revokedTokens.revokeUser(user.getLogin());
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -132,6 +148,8 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
+            basicAuthenticationCache.evictAfterCommit(user.getLogin());
+            revokedTokens.revokeUser(user.getLogin());
             log.debug("Deleted User: {}", user);
         });
     }
@@ -172,6 +190,7 @@ public class UserService {
                 }
                 String encryptedPassword = passwordEncoder.encode(newPassword);
                 user.setPassword(encryptedPassword);
+                basicAuthenticationCache.evictAfterCommit(user.getLogin());
                 log.debug("Changed password for User: {}", user);
             });
     }
@@ -213,6 +232,8 @@ public class UserService {
     public void deactivate(Long id) {
         userRepository.findById(id).map(u -> {
             u.setActivated(false);
+            basicAuthenticationCache.evictAfterCommit(u.getLogin());
+            revokedTokens.revokeUser(u.getLogin());
             return userRepository.save(u);
         });
     }
@@ -223,6 +244,8 @@ public class UserService {
             .map(user -> {
                 String encryptedPassword = passwordEncoder.encode(DEFAULT_PASSWORD);
                 user.setPassword(encryptedPassword);
+                basicAuthenticationCache.evictAfterCommit(user.getLogin());
+                revokedTokens.revokeUser(user.getLogin());
                 return userRepository.save(user);
             });
     }
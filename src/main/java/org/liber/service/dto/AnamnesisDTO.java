@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnamnesisDTO {
+
+    private Long id;
+    @NotNull
+    private Long patientId;
+    @NotNull
+    private Boolean overdose;
+    @NotNull
+    private Boolean psychoticBreak;
+    @NotNull
+    private Boolean drugAbuseSeizure;
+    @NotNull
+    private Long favoriteDrugId;
+    @NotNull
+    @PositiveOrZero
+    private Integer drugUseFrequence;
+    @NotNull
+    private Long housingConditionId;
+    @NotNull
+    @PositiveOrZero
+    private Integer quantityPeopleInHouse;
+    @NotNull
+    @PositiveOrZero
+    private BigInteger familyIncome;
+    @NotNull
+    private Boolean inGovernmentProgram;
+    @NotNull
+    private Long livesWithKinshipId;
+    @Builder.Default
+    private Set<Long> justiceProblemIds = new HashSet<>();
+    @Builder.Default
+    private Set<Long> drugUsedIds = new HashSet<>();
+    @Builder.Default
+    private Set<Long> controlledMedicationIds = new HashSet<>();
+    @Builder.Default
+    private Set<Long> healthProblemIds = new HashSet<>();
+    /**
+     * Period in days spent in each other institution, by institution id.
+     */
+    @Builder.Default
+    private Map<Long, Integer> otherInstitutions = new HashMap<>();
+
+    /**
+     * Used by the repository to read the scalar part of an anamnesis, the collections are filled afterwards.
+     */
+    public AnamnesisDTO(Long id, Long patientId, Boolean overdose, Boolean psychoticBreak, Boolean drugAbuseSeizure, Long favoriteDrugId,
+                        Integer drugUseFrequence, Long housingConditionId, Integer quantityPeopleInHouse, BigInteger familyIncome,
+                        Boolean inGovernmentProgram, Long livesWithKinshipId) {
+        this(id, patientId, overdose, psychoticBreak, drugAbuseSeizure, favoriteDrugId, drugUseFrequence, housingConditionId,
+            quantityPeopleInHouse, familyIncome, inGovernmentProgram, livesWithKinshipId, new HashSet<>(), new HashSet<>(),
+            new HashSet<>(), new HashSet<>(), new HashMap<>());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.ChangeEntityType;
+import org.liber.domain.enums.ChangeKind;
+
+/**
+ * A change of an entity, published on the change feed once its transaction commits. Hospitalizations have no single
+ * id, so theirs is {@code <patientId>:<startDate>}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeEventDTO {
+
+    private Long sequence;
+    private ChangeEntityType entity;
+    private String id;
+    private Long patientId;
+    private ChangeKind kind;
+    private Long version;
+
+    /**
+     * Tenant of the change, only delivered to subscribers of the same tenant.
+     */
+    @JsonIgnore
+    private String tenant;
+}
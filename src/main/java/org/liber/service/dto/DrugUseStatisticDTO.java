@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.AgeBand;
+import org.liber.domain.enums.DrugUseDimension;
+import org.liber.domain.enums.Sex;
+
+/**
+ * A drug use counter of an age band and sex, from the latest anamnesis of each patient.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DrugUseStatisticDTO {
+
+    private DrugUseDimension dimension;
+    private AgeBand ageBand;
+    private Sex sex;
+    private String item;
+    private String itemName;
+    private Long patients;
+    private Long overdoses;
+    private Double overdoseShare;
+    private Double averageDrugUseFrequence;
+}
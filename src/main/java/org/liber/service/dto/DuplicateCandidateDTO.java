@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.DuplicateStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Two patients that may be the same person, with what an admin needs to tell them apart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DuplicateCandidateDTO {
+
+    private Long patientId;
+    private String patientName;
+    private LocalDate patientBirthDate;
+    private String patientMotherName;
+    private Long duplicateId;
+    private String duplicateName;
+    private LocalDate duplicateBirthDate;
+    private String duplicateMotherName;
+    private Integer score;
+    private DuplicateStatus status;
+    private Instant detectedDate;
+}
@@ -41,6 +41,8 @@ public class PatientDTO {
 
     private Long id;
 
+    private Long version;
+
     @Size(max = 100)
     private String name;
 
@@ -36,6 +36,7 @@ import java.time.LocalDate;
 public class ReportDTO {
 
     private Long id;
+    private Long version;
     @NotNull
     private ReportType type;
     @NotNull
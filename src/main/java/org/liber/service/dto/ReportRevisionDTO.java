@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.ReportStatus;
+
+import java.time.Instant;
+
+/**
+ * A revision of a report. The content is only filled when a single revision is fetched.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportRevisionDTO {
+
+    private Integer revision;
+    private Boolean snapshot;
+    private ReportStatus status;
+    private String title;
+    private Long authorId;
+    private String authorFirstName;
+    private String authorLastName;
+    private Instant createdDate;
+    private Integer contentLength;
+    private Integer storedBytes;
+    private String content;
+
+    public ReportRevisionDTO(Integer revision, Boolean snapshot, ReportStatus status, String title, Long authorId, String authorFirstName,
+                             String authorLastName, Instant createdDate, Integer contentLength, Integer storedBytes) {
+        this(revision, snapshot, status, title, authorId, authorFirstName, authorLastName, createdDate, contentLength, storedBytes, null);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.liber.domain.enums.SyncEntityType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of the changes since a sync token.
+ * <p>
+ * When {@code reset} is set the client must drop what it has and rebuild from this sync, which then has every
+ * record. A deleted patient takes its hospitalizations and reports with it. While {@code hasMore} is set, the next
+ * page is read with {@code nextToken}; the last page's token is kept for the next sync.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncDTO {
+
+    private boolean reset;
+    private Map<SyncEntityType, List<CommonDTO>> lookups;
+    private List<PatientDTO> patients;
+    private List<HospitalizationDTO> hospitalizations;
+    private List<ReportSummaryDTO> reports;
+    private List<SyncTombstoneDTO> deleted;
+    private boolean hasMore;
+    /**
+     * Token of the next page, or of the next sync on the last page.
+     */
+    private String nextToken;
+}
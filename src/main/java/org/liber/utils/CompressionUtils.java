@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import com.github.luben.zstd.Zstd;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compression of large texts stored in {@code bytea} columns.
+ * <p>
+ * The stored bytes start with the codec id and the length of the UTF-8 text, so they can be read back whatever
+ * codec is configured when reading, and decompressed into an array of the right size at once.
+ */
+public class CompressionUtils {
+
+    private static final int HEADER_LENGTH = 5;
+
+    public enum Codec {
+        ZSTD(1),
+        DEFLATE(2);
+
+        private final byte id;
+
+        Codec(int id) {
+            this.id = (byte) id;
+        }
+
+        static Codec of(byte id) {
+            for (Codec codec : values()) {
+                if (codec.id == id)
+                    return codec;
+            }
+            throw new IllegalArgumentException("Unknown compression codec " + id);
+        }
+    }
+
+    public static byte[] compress(String text, Codec codec) {
+        return compress(text.getBytes(StandardCharsets.UTF_8), codec);
+    }
+
+    public static byte[] compress(byte[] data, Codec codec) {
+        byte[] compressed = codec == Codec.ZSTD ? Zstd.compress(data, 3) : DeltaUtils.deflate(data);
+        return ByteBuffer.allocate(HEADER_LENGTH + compressed.length)
+            .put(codec.id)
+            .putInt(data.length)
+            .put(compressed)
+            .array();
+    }
+
+    public static String decompress(byte[] stored) {
+        ByteBuffer buffer = ByteBuffer.wrap(stored);
+        Codec codec = Codec.of(buffer.get());
+        byte[] data = new byte[buffer.getInt()];
+        byte[] compressed = new byte[stored.length - HEADER_LENGTH];
+        buffer.get(compressed);
+        int length;
+        if (codec == Codec.ZSTD)
+            length = (int) Zstd.decompress(data, compressed);
+        else
+            length = DeltaUtils.inflate(compressed, data);
+        if (length != data.length)
+            throw new IllegalArgumentException("Corrupted compressed text");
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
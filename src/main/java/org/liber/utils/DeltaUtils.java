@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed binary deltas, used to store the revisions of large texts.
+ * <p>
+ * A delta is a sequence of operations, each either copying a range of the base or inserting literal bytes,
+ * deflated as a whole. Copies are found by indexing the base in fixed blocks and looking every target position
+ * up with a rolling hash, so both encoding and decoding take linear time and small edits give deltas of a few
+ * dozen bytes whatever the size of the text.
+ */
+public class DeltaUtils {
+
+    private static final int BLOCK = 16;
+    private static final int BASE = 257;
+    private static final int COPY = 0;
+    private static final int INSERT = 1;
+
+    /**
+     * Encodes the delta turning {@code base} into {@code target}.
+     *
+     * @param base   the previous bytes.
+     * @param target the new bytes.
+     * @return the deflated delta.
+     */
+    public static byte[] diff(byte[] base, byte[] target) {
+        Map<Integer, Integer> index = indexBlocks(base);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeVarint(out, target.length);
+        int literalStart = 0;
+        int position = 0;
+        int hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        int highPower = power();
+        while (position + BLOCK <= target.length) {
+            Integer candidate = index.get(hash);
+            if (candidate != null && equalBlock(base, candidate, target, position)) {
+                int from = candidate;
+                int start = position;
+                while (start > literalStart && from > 0 && base[from - 1] == target[start - 1]) {
+                    from--;
+                    start--;
+                }
+                int end = position + BLOCK;
+                int baseEnd = candidate + BLOCK;
+                while (end < target.length && baseEnd < base.length && base[baseEnd] == target[end]) {
+                    end++;
+                    baseEnd++;
+                }
+                writeInsert(out, target, literalStart, start);
+                writeVarint(out, ((long) (end - start) << 1) | COPY);
+                writeVarint(out, from);
+                position = end;
+                literalStart = end;
+                if (position + BLOCK <= target.length)
+                    hash = hash(target, position);
+                continue;
+            }
+            if (position + BLOCK < target.length)
+                hash = (hash - (target[position] & 0xff) * highPower) * BASE + (target[position + BLOCK] & 0xff);
+            position++;
+        }
+        writeInsert(out, target, literalStart, target.length);
+        return deflate(out.toByteArray());
+    }
+
+    /**
+     * Applies a delta made by {@link #diff(byte[], byte[])}.
+     *
+     * @param base  the bytes the delta was computed against.
+     * @param delta the deflated delta.
+     * @return the target bytes.
+     */
+    public static byte[] patch(byte[] base, byte[] delta) {
+        byte[] operations = inflate(delta);
+        byte[] target = new byte[(int) readVarint(operations, new int[]{0})];
+        apply(base, base.length, operations, target);
+        return target;
+    }
+
+    /**
+     * Applies a delta into a buffer, so a chain of deltas can be applied without allocating for each step.
+     *
+     * @param base       the buffer holding the bytes the delta was computed against.
+     * @param baseLength the number of bytes of {@code base} in use.
+     * @param delta      the deflated delta.
+     * @param target     the buffer to write into, large enough for the result.
+     * @return the number of bytes written to {@code target}.
+     */
+    public static int patch(byte[] base, int baseLength, byte[] delta, byte[] target) {
+        return apply(base, baseLength, inflate(delta), target);
+    }
+
+    private static int apply(byte[] base, int baseLength, byte[] operations, byte[] target) {
+        int[] cursor = {0};
+        int length = (int) readVarint(operations, cursor);
+        if (length > target.length)
+            throw new IllegalArgumentException("Target buffer too small");
+        int written = 0;
+        while (cursor[0] < operations.length) {
+            long operation = readVarint(operations, cursor);
+            int size = (int) (operation >>> 1);
+            if ((operation & 1) == COPY) {
+                int from = (int) readVarint(operations, cursor);
+                if (from + size > baseLength)
+                    throw new IllegalArgumentException("Corrupted delta");
+                System.arraycopy(base, from, target, written, size);
+            } else {
+                System.arraycopy(operations, cursor[0], target, written, size);
+                cursor[0] += size;
+            }
+            written += size;
+        }
+        if (written != length)
+            throw new IllegalArgumentException("Corrupted delta");
+        return written;
+    }
+
+    public static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length * 4));
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalArgumentException("Truncated deflate stream");
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid deflate stream", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Inflates into a buffer of known size.
+     *
+     * @param data   the deflated bytes.
+     * @param target the buffer to write into, large enough for the result.
+     * @return the number of bytes written to {@code target}.
+     */
+    public static int inflate(byte[] data, byte[] target) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int written = 0;
+            while (!inflater.finished()) {
+                int read = written < target.length ? inflater.inflate(target, written, target.length - written) : inflater.inflate(new byte[1]);
+                if (read > 0 && written == target.length)
+                    throw new IllegalArgumentException("Target buffer too small");
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalArgumentException("Truncated deflate stream");
+                written += read;
+            }
+            return written;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid deflate stream", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Map<Integer, Integer> indexBlocks(byte[] base) {
+        Map<Integer, Integer> index = new HashMap<>(Math.max(16, base.length / BLOCK * 4 / 3 + 1));
+        for (int offset = 0; offset + BLOCK <= base.length; offset += BLOCK)
+            index.putIfAbsent(hash(base, offset), offset);
+        return index;
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK; i++)
+            hash = hash * BASE + (data[i] & 0xff);
+        return hash;
+    }
+
+    private static int power() {
+        int power = 1;
+        for (int i = 1; i < BLOCK; i++)
+            power *= BASE;
+        return power;
+    }
+
+    private static boolean equalBlock(byte[] base, int baseOffset, byte[] target, int targetOffset) {
+        for (int i = 0; i < BLOCK; i++) {
+            if (base[baseOffset + i] != target[targetOffset + i])
+                return false;
+        }
+        return true;
+    }
+
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target, int from, int to) {
+        if (to <= from)
+            return;
+        writeVarint(out, ((long) (to - from) << 1) | INSERT);
+        out.write(target, from, to - from);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] cursor) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (cursor[0] >= data.length)
+                throw new IllegalArgumentException("Corrupted delta");
+            current = data[cursor[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import org.liber.service.errors.PreconditionFailedAlertException;
+
+public class ETagUtils {
+
+    private static final String WEAK_PREFIX = "W/";
+
+    public static String toETag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Checks an {@code If-None-Match} header against the current entity tag, using the weak comparison.
+     *
+     * @param ifNoneMatch the header value, may be {@code null}.
+     * @param eTag        the current entity tag.
+     * @return {@code true} if the client already has the current representation.
+     */
+    public static boolean matchesAny(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty())
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*"))
+                return true;
+            if (candidate.startsWith(WEAK_PREFIX))
+                candidate = candidate.substring(WEAK_PREFIX.length());
+            if (candidate.equals(eTag))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the version expected by an {@code If-Match} header.
+     *
+     * @param ifMatch    the header value, may be {@code null}.
+     * @param entityName the entity name for the error.
+     * @return the expected version, or {@code null} if the header is absent or {@code *}.
+     * @throws PreconditionFailedAlertException if the header does not hold a strong version tag.
+     */
+    public static Long parseVersion(String ifMatch, String entityName) {
+        if (ifMatch == null || ifMatch.trim().isEmpty() || ifMatch.trim().equals("*"))
+            return null;
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // not one of our tags, handled below
+            }
+        }
+        throw new PreconditionFailedAlertException("The If-Match header does not match the current version", entityName, "versionMismatch");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class FileTransferUtils {
+
+    private static final Map<Class<?>, Optional<Method>> TRANSFER_METHODS = new ConcurrentHashMap<>();
+
+    /**
+     * Sends a file to a response stream. Undertow's servlet stream takes the file channel directly and sends it with
+     * {@code sendfile}, without copying it through the heap; other streams get a plain channel copy.
+     *
+     * @param file the file to send, from its start; it is left open.
+     * @param out  the response stream.
+     * @throws IOException if the file cannot be read or the stream written.
+     */
+    public static void transfer(FileChannel file, OutputStream out) throws IOException {
+        Optional<Method> transferFrom = TRANSFER_METHODS.computeIfAbsent(out.getClass(), FileTransferUtils::findTransferFrom);
+        if (transferFrom.isPresent()) {
+            invoke(transferFrom.get(), out, file);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long size = file.size();
+        for (long position = 0; position < size; )
+            position += file.transferTo(position, size - position, target);
+    }
+
+    private static Optional<Method> findTransferFrom(Class<?> type) {
+        try {
+            return Optional.of(type.getMethod("transferFrom", FileChannel.class));
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static void invoke(Method transferFrom, OutputStream out, FileChannel channel) throws IOException {
+        try {
+            transferFrom.invoke(out, channel);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
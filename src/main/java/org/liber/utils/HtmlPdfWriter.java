@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import org.owasp.html.HtmlSanitizer;
+import org.owasp.html.HtmlStreamEventReceiver;
+import org.owasp.html.PolicyFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lays out text and sanitized HTML on A4 pages, rendered to PDF by openhtmltopdf.
+ * <p>
+ * The DejaVu Sans fonts are embedded, so any character they cover is printed. Images are only printed from
+ * {@code data:} URIs; nothing is fetched while rendering, other images are replaced by their alternative text.
+ */
+public class HtmlPdfWriter {
+
+    private static final String XHTML = "http://www.w3.org/1999/xhtml";
+
+    private static final String FONT = "DejaVu Sans";
+
+    private static final String STYLE = "@page { size: A4; margin: 20mm 20mm 22mm; "
+        + "@bottom-center { content: element(footer); } }"
+        + "body { font-family: '" + FONT + "'; font-size: 10.5pt; line-height: 1.35; }"
+        + "section + section { page-break-before: always; }"
+        + "h1.title { font-size: 16pt; margin: 0 0 6pt; }"
+        + "h2.heading { font-size: 12pt; margin: 0 0 4pt; }"
+        + "p.small { font-size: 8.5pt; color: #555; margin: 0 0 10pt; }"
+        + "table { border-collapse: collapse; margin: 4pt 0; -fs-table-paginate: paginate; }"
+        + "th, td { border: 0.5pt solid #888; padding: 2pt 4pt; vertical-align: top; }"
+        + "img { max-width: 100%; }"
+        + "p, li, td, th { word-wrap: break-word; }"
+        + ".footer { position: running(footer); font-size: 8pt; color: #555; text-align: center; }"
+        + ".page:before { content: counter(page); } .pages:before { content: counter(pages); }";
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList("br", "hr", "img", "col", "wbr"));
+
+    public enum Style {
+        TITLE("h1", "title"),
+        HEADING("h2", "heading"),
+        SMALL("p", "small"),
+        BODY("p", null);
+
+        private final String element;
+        private final String className;
+
+        Style(String element, String className) {
+            this.element = element;
+            this.className = className;
+        }
+    }
+
+    private final Document document;
+    private final Element body;
+    private Element section;
+
+    /**
+     * @param footer the text printed at the bottom of every page, before the page number.
+     */
+    public HtmlPdfWriter(String footer) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        Element html = append(document, "html");
+        Element head = append(html, "head");
+        append(head, "title").setTextContent(footer);
+        append(head, "style").setTextContent(STYLE);
+        body = append(html, "body");
+        Element running = append(body, "div");
+        running.setAttribute("class", "footer");
+        running.appendChild(document.createTextNode(footer == null ? "" : footer + "    "));
+        append(running, "span").setAttribute("class", "page");
+        running.appendChild(document.createTextNode("/"));
+        append(running, "span").setAttribute("class", "pages");
+    }
+
+    /**
+     * Starts a new page.
+     */
+    public void newPage() {
+        section = append(body, "section");
+    }
+
+    public void paragraph(String text, Style style) {
+        Element paragraph = append(section(), style.element);
+        if (style.className != null)
+            paragraph.setAttribute("class", style.className);
+        paragraph.setTextContent(text);
+    }
+
+    /**
+     * Appends HTML as the policy sanitizes it.
+     *
+     * @param html   the HTML.
+     * @param policy the policy sanitizing it.
+     */
+    public void html(String html, PolicyFactory policy) {
+        if (html == null)
+            return;
+        Element container = append(section(), "div");
+        HtmlSanitizer.sanitize(html, policy.apply(new DomBuilder(container)));
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.useFastMode();
+        builder.useFont(() -> HtmlPdfWriter.class.getResourceAsStream("/fonts/DejaVuSans.ttf"), FONT, 400,
+            BaseRendererBuilder.FontStyle.NORMAL, true);
+        builder.useFont(() -> HtmlPdfWriter.class.getResourceAsStream("/fonts/DejaVuSans-Bold.ttf"), FONT, 700,
+            BaseRendererBuilder.FontStyle.NORMAL, true);
+        // resolving only data: URIs, which are decoded in place, so nothing is fetched
+        builder.useUriResolver((baseUri, uri) -> uri.regionMatches(true, 0, "data:", 0, 5) ? uri : null);
+        builder.withW3cDocument(document, null);
+        builder.toStream(out);
+        builder.run();
+    }
+
+    private Element section() {
+        if (section == null)
+            newPage();
+        return section;
+    }
+
+    private Element append(Node parent, String name) {
+        Element element = document.createElementNS(XHTML, name);
+        parent.appendChild(element);
+        return element;
+    }
+
+    /**
+     * Builds the sanitized HTML into the document.
+     */
+    private class DomBuilder implements HtmlStreamEventReceiver {
+
+        private final Deque<Element> open = new ArrayDeque<>();
+
+        DomBuilder(Element container) {
+            open.push(container);
+        }
+
+        @Override
+        public void openDocument() {
+        }
+
+        @Override
+        public void closeDocument() {
+        }
+
+        @Override
+        public void openTag(String elementName, List<String> attributes) {
+            if (elementName.equals("img") && !isDataImage(attributes)) {
+                String alt = attribute(attributes, "alt");
+                if (alt != null)
+                    open.peek().appendChild(document.createTextNode(alt));
+                return;
+            }
+            Element element = append(open.peek(), elementName);
+            for (int i = 0; i + 1 < attributes.size(); i += 2)
+                element.setAttribute(attributes.get(i), attributes.get(i + 1));
+            if (!VOID_ELEMENTS.contains(elementName))
+                open.push(element);
+        }
+
+        @Override
+        public void closeTag(String elementName) {
+            if (VOID_ELEMENTS.contains(elementName) || open.size() == 1)
+                return;
+            open.pop();
+        }
+
+        @Override
+        public void text(String text) {
+            open.peek().appendChild(document.createTextNode(text));
+        }
+
+        private boolean isDataImage(List<String> attributes) {
+            String src = attribute(attributes, "src");
+            return src != null && src.regionMatches(true, 0, "data:image/", 0, "data:image/".length());
+        }
+
+        private String attribute(List<String> attributes, String name) {
+            for (int i = 0; i + 1 < attributes.size(); i += 2)
+                if (attributes.get(i).equals(name))
+                    return attributes.get(i + 1);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Spelling-tolerant comparison of Brazilian names.
+ * <p>
+ * {@link #encode(String)} gives each word a phonetic code, so spellings that sound alike, like Luiz and Luís, Thiago
+ * and Tiago or Souza and Sousa, get the same code. Letters that sound alike are merged, silent letters dropped and
+ * vowels after the first letter ignored, the way they are most often misspelled. Connectives like "da" and "dos"
+ * are left out.
+ */
+public class PhoneticUtils {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NOT_LETTERS = Pattern.compile("[^a-z]+");
+    private static final Set<String> CONNECTIVES = new HashSet<>(Arrays.asList("da", "das", "de", "do", "dos", "e"));
+
+    private static final String[][] RULES = {
+        {"ph", "f"}, {"th", "t"}, {"chr", "kr"}, {"ch", "x"}, {"sh", "x"}, {"lh", "li"}, {"nh", "ni"},
+        {"sc(?=[ei])", "s"}, {"xc(?=[ei])", "s"}, {"qu(?=[ei])", "k"}, {"g(?=[ei])", "j"}, {"gu(?=[ei])", "g"},
+        {"c(?=[ei])", "s"}, {"[cqk]", "k"}, {"[xz]", "s"}, {"w", "v"}, {"y", "i"}, {"h", ""}, {"m$", "n"}
+    };
+
+    private static final Pattern[] PATTERNS = Arrays.stream(RULES).map(rule -> Pattern.compile(rule[0])).toArray(Pattern[]::new);
+
+    /**
+     * Lowercases a name and strips its accents and anything but letters, keeping single spaces between words.
+     *
+     * @param name the name, may be {@code null}.
+     * @return the normalized name, empty for {@code null}.
+     */
+    public static String normalize(String name) {
+        if (name == null)
+            return "";
+        String lower = name.toLowerCase(Locale.ROOT).replace('ç', 's');
+        String stripped = MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+        return NOT_LETTERS.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    /**
+     * The words of a normalized name, without the connectives.
+     *
+     * @param name the name, may be {@code null}.
+     * @return the words, in order.
+     */
+    public static List<String> words(String name) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty())
+            return Collections.emptyList();
+        return Arrays.stream(normalized.split(" "))
+            .filter(word -> !CONNECTIVES.contains(word))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The phonetic codes of the words of a name, joined by {@code _}.
+     *
+     * @param name the name, may be {@code null}.
+     * @return the code, empty when the name has no letters.
+     */
+    public static String encode(String name) {
+        return words(name).stream().map(PhoneticUtils::encodeWord).collect(Collectors.joining("_"));
+    }
+
+    /**
+     * The phonetic code of the first word of a name.
+     *
+     * @param name the name, may be {@code null}.
+     * @return the code, empty when the name has no letters.
+     */
+    public static String encodeFirst(String name) {
+        List<String> words = words(name);
+        return words.isEmpty() ? "" : encodeWord(words.get(0));
+    }
+
+    private static String encodeWord(String word) {
+        String sound = word;
+        for (int i = 0; i < PATTERNS.length; i++)
+            sound = PATTERNS[i].matcher(sound).replaceAll(RULES[i][1]);
+        StringBuilder code = new StringBuilder(sound.length());
+        for (int i = 0; i < sound.length(); i++) {
+            char letter = sound.charAt(i);
+            if (code.length() > 0 && (isVowel(letter) || code.charAt(code.length() - 1) == letter))
+                continue;
+            code.append(letter);
+        }
+        return code.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isVowel(char letter) {
+        return letter == 'a' || letter == 'e' || letter == 'i' || letter == 'o' || letter == 'u';
+    }
+
+    /**
+     * Jaro-Winkler similarity of two names, after {@link #normalize(String) normalizing} them and dropping the
+     * connectives.
+     *
+     * @param first  a name, may be {@code null}.
+     * @param second another name, may be {@code null}.
+     * @return from {@code 0}, nothing in common, to {@code 1}, same name.
+     */
+    public static double similarity(String first, String second) {
+        String a = String.join(" ", words(first));
+        String b = String.join(" ", words(second));
+        if (a.isEmpty() || b.isEmpty())
+            return 0;
+        if (a.equals(b))
+            return 1;
+        int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+        boolean[] matchedA = new boolean[a.length()];
+        boolean[] matchedB = new boolean[b.length()];
+        int matches = 0;
+        for (int i = 0; i < a.length(); i++) {
+            for (int j = Math.max(0, i - window); j < Math.min(b.length(), i + window + 1); j++) {
+                if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+                    matchedA[i] = true;
+                    matchedB[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0)
+            return 0;
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < a.length(); i++) {
+            if (!matchedA[i])
+                continue;
+            while (!matchedB[j])
+                j++;
+            if (a.charAt(i) != b.charAt(j))
+                transpositions++;
+            j++;
+        }
+        double jaro = ((double) matches / a.length() + (double) matches / b.length() + (matches - transpositions / 2.0) / matches) / 3;
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(a.length(), b.length())) && a.charAt(prefix) == b.charAt(prefix))
+            prefix++;
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+}
@@ -56,13 +56,14 @@ public class SanitizeUtils {
         .onElements("img")
         .toFactory();
 
+    public static final PolicyFactory CONTENT = Sanitizers.FORMATTING
+        .and(Sanitizers.LINKS)
+        .and(Sanitizers.BLOCKS)
+        .and(IMAGES)
+        .and(Sanitizers.STYLES)
+        .and(Sanitizers.TABLES);
+
     public static final String sanitizeContent(String original) {
-        PolicyFactory policy = Sanitizers.FORMATTING
-            .and(Sanitizers.LINKS)
-            .and(Sanitizers.BLOCKS)
-            .and(IMAGES)
-            .and(Sanitizers.STYLES)
-            .and(Sanitizers.TABLES);
-        return policy.sanitize(original);
+        return CONTENT.sanitize(original);
     }
 }
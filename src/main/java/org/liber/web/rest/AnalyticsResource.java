@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.domain.enums.AgeBand;
+import org.liber.domain.enums.DrugUseDimension;
+import org.liber.domain.enums.Sex;
+import org.liber.security.AuthoritiesConstants;
+import org.liber.service.DrugUseAnalyticsService;
+import org.liber.service.dto.DrugUseStatisticDTO;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for the precomputed analytics.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class AnalyticsResource {
+
+    private final DrugUseAnalyticsService drugUseAnalyticsService;
+
+    /**
+     * {@code GET /analytics/drug-use} : get the drug use counters of a dimension, by age band and sex.
+     *
+     * @param dimension the dimension of the counters.
+     * @param ageBand   the age band to filter by, all when absent.
+     * @param sex       the sex to filter by, all when absent.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the counters, most common first.
+     */
+    @GetMapping("/analytics/drug-use")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.ADMIN + "\",\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\")")
+    public ResponseEntity<List<DrugUseStatisticDTO>> getDrugUseStatistics(@RequestParam DrugUseDimension dimension,
+                                                                          @RequestParam(required = false) AgeBand ageBand,
+                                                                          @RequestParam(required = false) Sex sex) {
+        log.debug("REST request to get drug use statistics : {} {} {}", dimension, ageBand, sex);
+        return ResponseEntity.ok(drugUseAnalyticsService.getStatistics(dimension, ageBand, sex));
+    }
+
+    /**
+     * {@code POST /analytics/drug-use/rebuild} : recompute the drug use counters from the anamneses.
+     *
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @PostMapping("/analytics/drug-use/rebuild")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> rebuildDrugUseStatistics() {
+        log.debug("REST request to rebuild drug use statistics");
+        drugUseAnalyticsService.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+}
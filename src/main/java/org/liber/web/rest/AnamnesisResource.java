@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.domain.entities.Anamnesis;
+import org.liber.security.AuthoritiesConstants;
+import org.liber.service.AnamnesisService;
+import org.liber.service.dto.AnamnesisDTO;
+import org.liber.service.errors.BadRequestAlertException;
+import org.liber.service.errors.NotFoundAlertException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+
+/**
+ * REST controller for managing anamneses.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class AnamnesisResource {
+
+    private final AnamnesisService anamnesisService;
+
+    /**
+     * {@code POST  /anamneses}  : Creates a new anamnesis.
+     *
+     * @param dto the anamnesis to create.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new anamnesis, or with status {@code 400 (Bad Request)} if a referenced id does not exist.
+     * @throws URISyntaxException       if the Location URI syntax is incorrect.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if it already has an id or a referenced id does not exist.
+     */
+    @PostMapping("/anamneses")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\")")
+    public ResponseEntity<AnamnesisDTO> createAnamnesis(@Valid @RequestBody AnamnesisDTO dto) throws URISyntaxException {
+        log.debug("REST request to create anamnesis : {}", dto);
+        Anamnesis created = anamnesisService.create(dto);
+        dto.setId(created.getId());
+        return ResponseEntity.created(new URI("/api/anamneses/" + created.getId()))
+            .body(dto);
+    }
+
+    /**
+     * {@code PUT  /anamneses}  : Updates an existing anamnesis.
+     *
+     * @param dto the anamnesis to update.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated anamnesis, with status {@code 400 (Bad Request)} if it has no id, or with status {@code 404 (Not Found)} if did not found anamnesis by id.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if it has no id.
+     * @throws NotFoundAlertException {@code 404 (Not Found)} if did not found an anamnesis with dto's id.
+     */
+    @PutMapping("/anamneses")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\")")
+    public ResponseEntity<AnamnesisDTO> updateAnamnesis(@Valid @RequestBody AnamnesisDTO dto) {
+        log.debug("REST request to update anamnesis : {}", dto);
+        anamnesisService.update(dto);
+        return ResponseEntity.ok(dto);
+    }
+
+    /**
+     * {@code GET /anamneses} : get all anamneses of a patient.
+     *
+     * @param patientId the id of the patient.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the anamneses of the patient.
+     */
+    @GetMapping("/anamneses")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<List<AnamnesisDTO>> getAllAnamneses(@RequestParam Long patientId) {
+        return ResponseEntity.ok(anamnesisService.getAllByPatientId(patientId));
+    }
+
+    /**
+     * {@code GET /anamneses/:id} : get the "id" anamnesis.
+     *
+     * @param id the id of the anamnesis to find.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the "id" anamnesis, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/anamneses/{id}")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<AnamnesisDTO> getAnamnesis(@PathVariable Long id) {
+        log.debug("REST request to get anamnesis: {}", id);
+        return ResponseEntity.ok(anamnesisService.getAnamnesisById(id));
+    }
+
+    /**
+     * {@code DELETE /anamneses/:id} : delete the "id" anamnesis.
+     *
+     * @param id the id of the anamnesis to delete.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @DeleteMapping("/anamneses/{id}")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\")")
+    public ResponseEntity<Void> deleteAnamnesis(@PathVariable Long id) {
+        log.debug("REST request to delete anamnesis: {}", id);
+        anamnesisService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.security.AuthoritiesConstants;
+import org.liber.service.ChangeFeedService;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * REST controller for the change feed.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class ChangeFeedResource {
+
+    private final ChangeFeedService changeFeedService;
+
+    /**
+     * {@code GET /changes} : subscribe to the changes of patients, hospitalizations and reports as server-sent events.
+     * <p>
+     * Events named {@code change} carry a {@link org.liber.service.dto.ChangeEventDTO}. A {@code ready} event opens a
+     * new subscription and a {@code reset} event tells the client that changes were missed and its lists must be
+     * reloaded.
+     *
+     * @param lastEventId the id of the last event received, sent by the browser when it reconnects.
+     * @return the event stream.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseBodyEmitter subscribe(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.debug("REST request to subscribe to changes from event : {}", lastEventId);
+        return changeFeedService.subscribe(lastEventId);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import io.github.jhipster.web.util.PaginationUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.security.AuthoritiesConstants;
+import org.liber.service.DuplicatePatientService;
+import org.liber.service.dto.DuplicateCandidateDTO;
+import org.liber.service.dto.PatientDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+
+/**
+ * REST controller for reviewing and merging duplicate patients.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class DuplicatePatientResource {
+
+    private final DuplicatePatientService duplicatePatientService;
+
+    /**
+     * {@code GET /patient-duplicates} : get the pending duplicate candidates, most likely first.
+     *
+     * @param minScore the minimum score, the configured one when absent.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the candidates.
+     */
+    @GetMapping("/patient-duplicates")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<DuplicateCandidateDTO>> getDuplicateCandidates(@RequestParam(required = false) Integer minScore, Pageable pageable) {
+        final Page<DuplicateCandidateDTO> page = duplicatePatientService.getCandidates(minScore, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * {@code POST /patient-duplicates/detect} : check every patient for duplicates again.
+     *
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @PostMapping("/patient-duplicates/detect")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> detectDuplicates() {
+        log.debug("REST request to detect duplicate patients");
+        duplicatePatientService.detectAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * {@code POST /patient-duplicates/:patientId/:duplicateId/dismiss} : mark two patients as different people.
+     *
+     * @param patientId   the id of a patient.
+     * @param duplicateId the id of the other patient.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 404 (Not Found)} if they are not candidates.
+     */
+    @PostMapping("/patient-duplicates/{patientId}/{duplicateId}/dismiss")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> dismissDuplicate(@PathVariable Long patientId, @PathVariable Long duplicateId) {
+        log.debug("REST request to dismiss duplicate candidate : {} {}", patientId, duplicateId);
+        duplicatePatientService.dismiss(patientId, duplicateId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * {@code POST /patients/:id/merge/:duplicateId} : merge the "duplicateId" patient into the "id" patient.
+     *
+     * @param id          the id of the patient to keep.
+     * @param duplicateId the id of the patient to merge and delete.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the patient kept, or with status {@code 404 (Not Found)}.
+     */
+    @PostMapping("/patients/{id}/merge/{duplicateId}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<PatientDTO> mergePatient(@PathVariable Long id, @PathVariable Long duplicateId) {
+        log.debug("REST request to merge patient {} into {}", duplicateId, id);
+        return ResponseEntity.ok(duplicatePatientService.merge(id, duplicateId));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.web.rest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.security.AuthoritiesConstants;
+import org.liber.service.PatientPurgeJobService;
+import org.liber.service.dto.PatientPurgeDTO;
+import org.liber.service.dto.PatientPurgeJobDTO;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+/**
+ * REST controller for purging patients with everything recorded about them.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class PatientPurgeResource {
+
+    private final PatientPurgeJobService patientPurgeJobService;
+
+    /**
+     * {@code POST /patient-purges} : start purging the listed patients, or the ones with nothing recorded since a date.
+     *
+     * @param purge the patients to purge.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)} and with body the job to poll, with status
+     * {@code 400 (Bad Request)} if neither or both criteria are given, or with status {@code 429 (Too Many Requests)}
+     * if too many purges are waiting.
+     */
+    @PostMapping("/patient-purges")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<PatientPurgeJobDTO> startPurge(@RequestBody PatientPurgeDTO purge) {
+        log.debug("REST request to purge patients : {}", purge);
+        PatientPurgeJobDTO job = patientPurgeJobService.start(purge);
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/patient-purges/" + job.getJobId()))
+            .body(job);
+    }
+
+    /**
+     * {@code GET /patient-purges/:jobId} : get the progress of a purge.
+     *
+     * @param jobId the id of the job.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the job, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/patient-purges/{jobId}")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<PatientPurgeJobDTO> getPurge(@PathVariable String jobId) {
+        return ResponseEntity.ok(patientPurgeJobService.getJob(jobId));
+    }
+}
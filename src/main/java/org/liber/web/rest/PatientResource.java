@@ -25,9 +25,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.liber.domain.entities.Patient;
 import org.liber.security.AuthoritiesConstants;
 import org.liber.service.PatientService;
+import org.liber.service.PatientTimelineService;
 import org.liber.service.dto.PatientDTO;
+import org.liber.service.dto.PatientTimelineDTO;
 import org.liber.service.errors.BadRequestAlertException;
 import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.PreconditionFailedAlertException;
+import org.liber.utils.ETagUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
@@ -52,6 +56,7 @@ import java.util.List;
 public class PatientResource {
 
     private final PatientService patientService;
+    private final PatientTimelineService patientTimelineService;
 
     /**
      * {@code POST  /patients}  : Creates a new patient.
@@ -61,7 +66,7 @@ public class PatientResource {
      * @param dto the patient to create.
      * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new patient, or with status {@code 400 (Bad Request)} if already exists.
      * @throws URISyntaxException       if the Location URI syntax is incorrect.
-     * @throws BadRequestAlertException {@code 400 (Bad Request)} if already exists.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if already exists or another patient has one of its documents.
      */
     @PostMapping("/patients")
     @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\")")
@@ -79,17 +84,21 @@ public class PatientResource {
      * <p>
      * Updates an existing patient.
      *
-     * @param dto the patient to update.
+     * @param dto     the patient to update.
+     * @param ifMatch the version the client expects to update, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated patient, or with status {@code 404 (Not Found)} if did not found patient by id.
      * @throws URISyntaxException     if the Location URI syntax is incorrect.
      * @throws NotFoundAlertException {@code 404 (Not Found)} if did not found a patient with dto's id.
+     * @throws PreconditionFailedAlertException {@code 412 (Precondition Failed)} if {@code If-Match} is not the current version.
      */
     @PutMapping("/patients")
     @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\")")
-    public ResponseEntity<PatientDTO> updatePatient(@Valid @RequestBody PatientDTO dto) throws URISyntaxException {
+    public ResponseEntity<PatientDTO> updatePatient(@Valid @RequestBody PatientDTO dto,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update patient : {}", dto);
-        patientService.update(dto);
-        return ResponseEntity.ok(dto);
+        Patient updated = patientService.update(dto, ETagUtils.parseVersion(ifMatch, "patientManagement"));
+        dto.setVersion(updated.getVersion());
+        return ResponseEntity.ok().eTag(ETagUtils.toETag(updated.getVersion())).body(dto);
     }
 
     /**
@@ -106,17 +115,62 @@ public class PatientResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * {@code GET /patients/by-document} : get the patients having a document.
+     * <p>
+     * The number matches whatever punctuation or case it was registered with, so {@code 123.456.789-00} finds
+     * {@code 12345678900}.
+     *
+     * @param documentId the type of the document.
+     * @param value      the number of the document.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the patients having the document.
+     */
+    @GetMapping("/patients/by-document")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<List<PatientDTO>> getPatientsByDocument(@RequestParam Long documentId, @RequestParam String value) {
+        log.debug("REST request to get patients by document: {} {}", documentId, value);
+        return ResponseEntity.ok(patientService.getAllByDocument(documentId, value));
+    }
+
     /**
      * {@code GET /patients/:id} : get the "id" patient.
      *
-     * @param id the id of the patient to find.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the "id" patient, or with status {@code 404 (Not Found)}.
+     * @param id          the id of the patient to find.
+     * @param ifNoneMatch the entity tag the client already has, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the "id" patient, with status {@code 304 (Not Modified)} if the client has the current version, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/patients/{id}")
     @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
-    public ResponseEntity<PatientDTO> getPatient(@PathVariable Long id) {
+    public ResponseEntity<PatientDTO> getPatient(@PathVariable Long id,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("REST request to get patient: {}", id);
-        return ResponseEntity.ok(patientService.getPatientById(id));
+        if (ifNoneMatch != null) {
+            String eTag = ETagUtils.toETag(patientService.getVersion(id));
+            if (ETagUtils.matchesAny(ifNoneMatch, eTag))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        PatientDTO dto = patientService.getPatientById(id);
+        return ResponseEntity.ok().eTag(ETagUtils.toETag(dto.getVersion())).body(dto);
+    }
+
+    /**
+     * {@code GET /patients/:id/timeline} : get the timeline of the "id" patient.
+     * <p>
+     * Returns the patient, its hospitalizations and its report summaries merged newest first, so a chart can be
+     * opened with a single request.
+     *
+     * @param id     the id of the patient.
+     * @param cursor the {@code nextCursor} of the previous page, absent for the first page.
+     * @param size   the maximum number of entries, up to {@value PatientTimelineService#MAX_PAGE_SIZE}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the timeline page, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/patients/{id}/timeline")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<PatientTimelineDTO> getPatientTimeline(@PathVariable Long id,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get timeline of patient: {}", id);
+        return ResponseEntity.ok(patientTimelineService.getTimeline(id, cursor, size));
     }
 
     /**
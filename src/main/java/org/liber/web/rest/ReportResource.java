@@ -24,10 +24,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.liber.domain.entities.Report;
 import org.liber.security.AuthoritiesConstants;
+import org.liber.service.ReportContentService;
+import org.liber.service.ReportPdfService;
+import org.liber.service.ReportRevisionService;
 import org.liber.service.ReportService;
 import org.liber.service.dto.ReportDTO;
+import org.liber.service.dto.ReportPdfJobDTO;
+import org.liber.service.dto.ReportRevisionDTO;
 import org.liber.service.errors.BadRequestAlertException;
 import org.liber.service.errors.NotFoundAlertException;
+import org.liber.service.errors.PreconditionFailedAlertException;
+import org.liber.utils.ETagUtils;
+import org.liber.utils.FileTransferUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
@@ -37,9 +45,12 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 
 /**
@@ -52,6 +63,9 @@ import java.util.List;
 public class ReportResource {
 
     private final ReportService reportService;
+    private final ReportRevisionService reportRevisionService;
+    private final ReportContentService reportContentService;
+    private final ReportPdfService reportPdfService;
 
     /**
      * {@code POST  /reports}  : Creates a new report.
@@ -79,17 +93,21 @@ public class ReportResource {
      * <p>
      * Updates an existing report.
      *
-     * @param dto the report to update.
+     * @param dto     the report to update.
+     * @param ifMatch the version the client expects to update, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated report, or with status {@code 404 (Not Found)} if did not found report by id.
      * @throws URISyntaxException     if the Location URI syntax is incorrect.
      * @throws NotFoundAlertException {@code 404 (Not Found)} if did not found a report with dto's id.
+     * @throws PreconditionFailedAlertException {@code 412 (Precondition Failed)} if {@code If-Match} is not the current version.
      */
     @PutMapping("/reports")
     @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.DENTIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\")")
-    public ResponseEntity<ReportDTO> updateReport(@Valid @RequestBody ReportDTO dto) throws URISyntaxException {
+    public ResponseEntity<ReportDTO> updateReport(@Valid @RequestBody ReportDTO dto,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update report : {}", dto);
-        reportService.update(dto);
-        return ResponseEntity.ok(dto);
+        Report updated = reportService.update(dto, ETagUtils.parseVersion(ifMatch, "report"));
+        dto.setVersion(updated.getVersion());
+        return ResponseEntity.ok().eTag(ETagUtils.toETag(updated.getVersion())).body(dto);
     }
 
     /**
@@ -109,14 +127,131 @@ public class ReportResource {
     /**
      * {@code GET /reports/:id} : get the "id" report.
      *
-     * @param id the id of the report to find.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the "id" report, or with status {@code 404 (Not Found)}.
+     * @param id          the id of the report to find.
+     * @param ifNoneMatch the entity tag the client already has, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the "id" report, with status {@code 304 (Not Modified)} if the client has the current version, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/reports/{id}")
     @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
-    public ResponseEntity<ReportDTO> getReport(@PathVariable Long id) {
+    public ResponseEntity<ReportDTO> getReport(@PathVariable Long id,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("REST request to get report: {}", id);
-        return ResponseEntity.ok(reportService.getReportById(id));
+        if (ifNoneMatch != null) {
+            String eTag = ETagUtils.toETag(reportService.getVersion(id));
+            if (ETagUtils.matchesAny(ifNoneMatch, eTag))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        ReportDTO dto = reportService.getReportById(id);
+        return ResponseEntity.ok().eTag(ETagUtils.toETag(dto.getVersion())).body(dto);
+    }
+
+    /**
+     * {@code GET /reports/:id/revisions} : get the revisions of the "id" report, without their content.
+     *
+     * @param id the id of the report.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the revisions, newest first, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/reports/{id}/revisions")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<List<ReportRevisionDTO>> getReportRevisions(@PathVariable Long id) {
+        log.debug("REST request to get revisions of report: {}", id);
+        return ResponseEntity.ok(reportRevisionService.getAllByReportId(id));
+    }
+
+    /**
+     * {@code GET /reports/:id/revisions/:revision} : get a revision of the "id" report, with its content.
+     *
+     * @param id       the id of the report.
+     * @param revision the revision number.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the revision, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/reports/{id}/revisions/{revision}")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<ReportRevisionDTO> getReportRevision(@PathVariable Long id, @PathVariable Integer revision) {
+        log.debug("REST request to get revision {} of report: {}", revision, id);
+        return ResponseEntity.ok(reportRevisionService.getRevision(id, revision));
+    }
+
+    /**
+     * {@code GET /reports/:id/pdf} : get the "id" report as PDF.
+     * <p>
+     * The report HTML is printed with its formatting, lists and tables; images are printed when embedded as
+     * {@code data:} URIs, otherwise their alternative text is.
+     *
+     * @param id       the id of the report.
+     * @param response the response the PDF is written to.
+     * @return {@code null} with status {@code 200 (OK)} once the PDF is written, or the {@link ResponseEntity} with status {@code 202 (Accepted)} and with body the job to poll if the render takes longer than the latency budget.
+     * @throws IOException if the PDF cannot be sent.
+     */
+    @GetMapping("/reports/{id}/pdf")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<ReportPdfJobDTO> getReportPdf(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        log.debug("REST request to get report as PDF: {}", id);
+        return send(reportPdfService.renderReport(id), response);
+    }
+
+    /**
+     * {@code GET /reports/pdf} : get all published reports of a patient as a single PDF.
+     * <p>
+     * The report HTML is printed with its formatting, lists and tables; images are printed when embedded as
+     * {@code data:} URIs, otherwise their alternative text is.
+     *
+     * @param patientId the id of the patient.
+     * @param response  the response the PDF is written to.
+     * @return {@code null} with status {@code 200 (OK)} once the PDF is written, or the {@link ResponseEntity} with status {@code 202 (Accepted)} and with body the job to poll if the render takes longer than the latency budget.
+     * @throws IOException if the PDF cannot be sent.
+     */
+    @GetMapping("/reports/pdf")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<ReportPdfJobDTO> getPublishedReportsPdf(@RequestParam Long patientId, HttpServletResponse response) throws IOException {
+        log.debug("REST request to get published reports of patient as PDF: {}", patientId);
+        return send(reportPdfService.renderPublishedReports(patientId), response);
+    }
+
+    /**
+     * {@code GET /reports/pdf-jobs/:jobId} : poll a PDF render.
+     *
+     * @param jobId    the id of the job.
+     * @param response the response the PDF is written to.
+     * @return {@code null} with status {@code 200 (OK)} once the PDF is written, the {@link ResponseEntity} with status {@code 202 (Accepted)} while it renders, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the PDF cannot be sent.
+     */
+    @GetMapping("/reports/pdf-jobs/{jobId}")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<ReportPdfJobDTO> getReportPdfJob(@PathVariable String jobId, HttpServletResponse response) throws IOException {
+        return send(reportPdfService.getRendering(jobId), response);
+    }
+
+    private ResponseEntity<ReportPdfJobDTO> send(ReportPdfService.Rendering rendering, HttpServletResponse response) throws IOException {
+        if (!rendering.getFile().isPresent())
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/reports/pdf-jobs/" + rendering.getJobId()))
+                .body(new ReportPdfJobDTO(rendering.getJobId()));
+        try (FileChannel file = rendering.getFile().get()) {
+            response.setContentType("application/pdf");
+            response.setContentLengthLong(file.size());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + rendering.getJobId() + ".pdf\"");
+            FileTransferUtils.transfer(file, response.getOutputStream());
+        }
+        return null;
+    }
+
+    /**
+     * {@code POST /reports/content-storage} : move the content of every report to the configured storage, in batches.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the number of reports moved.
+     */
+    @PostMapping("/reports/content-storage")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Integer> migrateReportContentStorage() {
+        log.debug("REST request to move report content to the configured storage");
+        int total = 0;
+        ReportContentService.Batch batch;
+        do {
+            batch = reportContentService.migrateBatch();
+            total += batch.getMoved();
+        } while (batch.getFound() > 0);
+        return ResponseEntity.ok(total);
     }
 
     /**
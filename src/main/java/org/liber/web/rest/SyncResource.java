@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.liber.security.AuthoritiesConstants;
+import org.liber.service.SyncService;
+import org.liber.service.dto.SyncDTO;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for the delta sync of offline-capable clients.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class SyncResource {
+
+    private final SyncService syncService;
+
+    /**
+     * {@code GET /sync} : get the records created, updated and deleted since a token.
+     *
+     * @param since the {@code nextToken} of the previous page or sync, absent to get everything.
+     * @param size  the maximum number of records in the page.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the page of changes, or with status {@code 400 (Bad Request)} if the token is invalid.
+     */
+    @GetMapping("/sync")
+    @PreAuthorize("hasAnyAuthority(\"" + AuthoritiesConstants.SOCIAL_ASSISTANT + "\",\"" + AuthoritiesConstants.PSYCHOLOGIST + "\",\"" + AuthoritiesConstants.PSYCHIATRIST + "\",\"" + AuthoritiesConstants.DENTIST + "\")")
+    public ResponseEntity<SyncDTO> getChanges(@RequestParam(required = false) String since, @RequestParam(required = false) Integer size) {
+        log.debug("REST request to sync since : {}", since);
+        return ResponseEntity.ok(syncService.getChanges(since, size));
+    }
+}
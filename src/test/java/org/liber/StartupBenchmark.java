@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link LiberApp} takes from launch to serving requests, and how long its first request takes.
+ * <p>
+ * Each run starts the jar in {@code benchmark.jar} in a new JVM, on a free port, and polls
+ * {@code /management/health} until the server answers with any status. The first request is then a login on
+ * {@code /api/authenticate}, which goes through security, the database and password hashing. The application is
+ * stopped with SIGTERM, so a JVM started with {@code -XX:ArchiveClassesAtExit} writes its class data archive.
+ * <p>
+ * Settings are system properties: {@code benchmark.jar}, {@code benchmark.jvm-args}, {@code benchmark.app-args},
+ * {@code benchmark.runs} (5), {@code benchmark.username} and {@code benchmark.password} (admin/admin), and
+ * {@code benchmark.report}, a CSV file each run is appended to. The {@code fast-start} Maven profile runs it with
+ * {@code exec:java@startup-benchmark}.
+ */
+public class StartupBenchmark {
+
+    private static final long POLL_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        File jar = new File(required("benchmark.jar"));
+        List<String> jvmArgs = split(System.getProperty("benchmark.jvm-args", ""));
+        List<String> appArgs = split(System.getProperty("benchmark.app-args", ""));
+        int runs = Integer.getInteger("benchmark.runs", 5);
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong("benchmark.timeout-seconds", 300));
+        String report = System.getProperty("benchmark.report");
+
+        List<Long> ready = new ArrayList<>();
+        List<Long> firstRequest = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            int port = freePort();
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(jvmArgs);
+            command.add("-jar");
+            command.add(jar.getAbsolutePath());
+            command.add("--server.port=" + port);
+            command.addAll(appArgs);
+            File log = new File(jar.getParentFile(), "startup-benchmark.log");
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+            long start = System.nanoTime();
+            try {
+                waitUntilServing(process, port, start, timeoutMillis, log);
+                long readyMillis = elapsedMillis(start);
+                long requestStart = System.nanoTime();
+                int status = authenticate(port);
+                long firstRequestMillis = elapsedMillis(requestStart);
+                ready.add(readyMillis);
+                firstRequest.add(firstRequestMillis);
+                System.out.printf("run %d: ready after %d ms, first request %d ms (HTTP %d)%n", run, readyMillis, firstRequestMillis, status);
+                if (report != null)
+                    append(report, jar, jvmArgs, run, readyMillis, firstRequestMillis, status);
+            } finally {
+                stop(process);
+            }
+        }
+        System.out.printf("median of %d runs: ready after %d ms, first request %d ms%n", runs, median(ready), median(firstRequest));
+    }
+
+    private static void waitUntilServing(Process process, int port, long start, long timeoutMillis, File log) throws Exception {
+        URL health = new URL("http://localhost:" + port + "/management/health");
+        while (true) {
+            if (!process.isAlive())
+                throw new IllegalStateException("The application exited with " + process.exitValue() + ", see " + log);
+            if (elapsedMillis(start) > timeoutMillis)
+                throw new IllegalStateException("The application was not ready after " + timeoutMillis + " ms, see " + log);
+            try {
+                HttpURLConnection connection = (HttpURLConnection) health.openConnection();
+                connection.getResponseCode();
+                connection.disconnect();
+                return;
+            } catch (ConnectException e) {
+                Thread.sleep(POLL_MILLIS);
+            }
+        }
+    }
+
+    private static int authenticate(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/authenticate").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        String body = "{\"username\":\"" + System.getProperty("benchmark.username", "admin")
+            + "\",\"password\":\"" + System.getProperty("benchmark.password", "admin") + "\"}";
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(2, TimeUnit.MINUTES))
+            process.destroyForcibly().waitFor();
+    }
+
+    private static void append(String report, File jar, List<String> jvmArgs, int run, long readyMillis, long firstRequestMillis,
+                               int status) throws IOException {
+        File file = new File(report);
+        boolean header = !file.exists();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (header)
+                out.println("timestamp,jar,java,jvm_args,run,ready_ms,first_request_ms,first_request_status");
+            out.printf("%s,%s,%s,\"%s\",%d,%d,%d,%d%n", Instant.now(), jar.getName(), System.getProperty("java.version"),
+                String.join(" ", jvmArgs), run, readyMillis, firstRequestMillis, status);
+        }
+    }
+
+    private static String required(String property) {
+        String value = System.getProperty(property);
+        if (value == null || value.isEmpty())
+            throw new IllegalArgumentException("Missing system property " + property);
+        return value;
+    }
+
+    private static List<String> split(String value) {
+        return value.trim().isEmpty() ? Collections.emptyList() : Arrays.asList(value.trim().split("\\s+"));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
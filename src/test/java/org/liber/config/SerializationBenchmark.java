@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.domain.enums.ReportType;
+import org.liber.domain.enums.Sex;
+import org.liber.service.dto.HospitalizationDTO;
+import org.liber.service.dto.PatientDTO;
+import org.liber.service.dto.ReportDTO;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures what serving Smile or CBOR instead of JSON saves: the bytes of a page, before and after the gzip of the
+ * prod profile, and the time to serialize and parse it.
+ * <p>
+ * The mappers are built as {@link JacksonConfiguration} builds them, from a builder with its modules and the defaults
+ * of Spring Boot. Pages of patients, hospitalizations and reports are built from a fixed seed and each is written and
+ * read back as many times after as many warm-up runs.
+ * <p>
+ * Settings are system properties: {@code benchmark.runs} (3000) and {@code benchmark.report}, a CSV file each result
+ * is appended to. Run it with {@code exec:java@serialization-benchmark}.
+ */
+public class SerializationBenchmark {
+
+    private static final String[] WORDS = {"paciente", "relata", "melhora", "do", "sono", "e", "apetite", "nega",
+        "uso", "de", "substâncias", "desde", "a", "última", "consulta", "família", "presente", "na", "visita",
+        "orientado", "quanto", "ao", "tratamento", "mantém", "acompanhamento", "psicológico", "semanal", "com"};
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("benchmark.runs", 3000);
+        String report = System.getProperty("benchmark.report");
+        Map<String, ObjectMapper> formats = new LinkedHashMap<>();
+        formats.put("JSON", builder().build());
+        formats.put("Smile", builder().createXmlMapper(false).factory(new SmileFactory()).build());
+        formats.put("CBOR", builder().createXmlMapper(false).factory(new CBORFactory()).build());
+        Random random = new Random(37);
+        Map<String, Page> pages = new LinkedHashMap<>();
+        pages.put("patients x100", new Page(patients(random, 100), PatientDTO.class));
+        pages.put("hospitalizations x100", new Page(hospitalizations(random, 100), HospitalizationDTO.class));
+        pages.put("reports x50", new Page(reports(random, 50), ReportDTO.class));
+
+        System.out.printf("%-22s %-6s %8s %8s %10s %10s%n", "page", "format", "bytes", "gzip", "ser (us)", "deser (us)");
+        for (Map.Entry<String, Page> page : pages.entrySet()) {
+            for (Map.Entry<String, ObjectMapper> format : formats.entrySet()) {
+                ObjectMapper mapper = format.getValue();
+                JavaType type = mapper.getTypeFactory().constructCollectionType(List.class, page.getValue().type);
+                byte[] bytes = mapper.writeValueAsBytes(page.getValue().items);
+                if (!mapper.readValue(bytes, type).equals(page.getValue().items))
+                    throw new IllegalStateException(page.getKey() + " read back in " + format.getKey() + " is not the page written");
+                serialize(mapper, page.getValue().items, runs);
+                double serializeMicros = serialize(mapper, page.getValue().items, runs);
+                deserialize(mapper, bytes, type, runs);
+                double deserializeMicros = deserialize(mapper, bytes, type, runs);
+                int gzipped = gzip(bytes);
+                System.out.printf("%-22s %-6s %,8d %,8d %10.0f %10.0f%n", page.getKey(), format.getKey(), bytes.length,
+                    gzipped, serializeMicros, deserializeMicros);
+                if (report != null)
+                    append(report, page.getKey(), format.getKey(), bytes.length, gzipped, serializeMicros, deserializeMicros);
+            }
+        }
+    }
+
+    /**
+     * A builder like the one Spring Boot gives {@link JacksonConfiguration}, with its modules and dates as text.
+     */
+    private static Jackson2ObjectMapperBuilder builder() {
+        JacksonConfiguration configuration = new JacksonConfiguration();
+        return Jackson2ObjectMapperBuilder.json()
+            .modules(configuration.javaTimeModule(), configuration.jdk8TimeModule(), configuration.hibernate5Module(),
+                configuration.problemModule(), configuration.constraintViolationProblemModule())
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Serializes the page as many times, returning the mean time of one in microseconds.
+     */
+    private static double serialize(ObjectMapper mapper, List<?> items, int runs) throws IOException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < runs; i++)
+            bytes += mapper.writeValueAsBytes(items).length;
+        if (bytes == 0)
+            throw new IllegalStateException("Nothing serialized");
+        return (System.nanoTime() - start) / (double) TimeUnit.MICROSECONDS.toNanos(1) / runs;
+    }
+
+    /**
+     * Parses the page as many times, returning the mean time of one in microseconds.
+     */
+    private static double deserialize(ObjectMapper mapper, byte[] bytes, JavaType type, int runs) throws IOException {
+        long start = System.nanoTime();
+        long items = 0;
+        for (int i = 0; i < runs; i++)
+            items += mapper.<List<?>>readValue(bytes, type).size();
+        if (items == 0)
+            throw new IllegalStateException("Nothing parsed");
+        return (System.nanoTime() - start) / (double) TimeUnit.MICROSECONDS.toNanos(1) / runs;
+    }
+
+    private static int gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+
+    private static List<PatientDTO> patients(Random random, int count) {
+        List<PatientDTO> patients = new ArrayList<>();
+        for (long id = 1; id <= count; id++)
+            patients.add(PatientDTO.builder()
+                .id(id)
+                .version((long) random.nextInt(10))
+                .name(name(random))
+                .receptionDate(Instant.ofEpochSecond(1_500_000_000L + random.nextInt(150_000_000)))
+                .documents(Collections.singletonMap(1L, String.valueOf(10_000_000_000L + random.nextInt(1_000_000_000))))
+                .birthDate(LocalDate.of(1940 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .sex(random.nextBoolean() ? Sex.MALE : Sex.FEMALE)
+                .birthPlaceId((long) random.nextInt(5000))
+                .motherName(name(random))
+                .fatherName(name(random))
+                .maritalStatusId((long) random.nextInt(5))
+                .scholarityId((long) random.nextInt(10))
+                .professionId((long) random.nextInt(200))
+                .working(random.nextBoolean())
+                .addressStreet("Rua " + WORDS[random.nextInt(WORDS.length)])
+                .addressNeighborhood("Bairro " + WORDS[random.nextInt(WORDS.length)])
+                .addressNumber(String.valueOf(random.nextInt(2000)))
+                .addressZip(String.format("%08d", random.nextInt(100_000_000)))
+                .addressCityId((long) random.nextInt(5000))
+                .build());
+        return patients;
+    }
+
+    private static List<HospitalizationDTO> hospitalizations(Random random, int count) {
+        List<HospitalizationDTO> hospitalizations = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            LocalDate start = LocalDate.of(2015 + random.nextInt(5), 1 + random.nextInt(12), 1 + random.nextInt(28));
+            hospitalizations.add(HospitalizationDTO.builder()
+                .patientId(id)
+                .startDate(start)
+                .endDate(start.plusDays(30 + random.nextInt(150)))
+                .name(name(random))
+                .releaseReasonId((long) random.nextInt(6))
+                .releaseReasonName("Alta " + WORDS[random.nextInt(WORDS.length)])
+                .build());
+        }
+        return hospitalizations;
+    }
+
+    private static List<ReportDTO> reports(Random random, int count) {
+        List<ReportDTO> reports = new ArrayList<>();
+        for (long id = 1; id <= count; id++)
+            reports.add(ReportDTO.builder()
+                .id(id)
+                .version((long) random.nextInt(10))
+                .type(ReportType.values()[random.nextInt(ReportType.values().length)])
+                .status(random.nextBoolean() ? ReportStatus.DRAFT : ReportStatus.PUBLISHED)
+                .title(sentence(random, 6))
+                .content(html(random, 2800))
+                .patientId((long) random.nextInt(1000))
+                .authorId((long) random.nextInt(20))
+                .authorFirstName(WORDS[random.nextInt(WORDS.length)])
+                .authorLastName(WORDS[random.nextInt(WORDS.length)])
+                .createdDate(LocalDate.of(2015 + random.nextInt(5), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .build());
+        return reports;
+    }
+
+    private static String name(Random random) {
+        return Character.toUpperCase(WORDS[random.nextInt(WORDS.length)].charAt(0)) + " " + sentence(random, 3);
+    }
+
+    private static String html(Random random, int size) {
+        StringBuilder html = new StringBuilder(size + 256);
+        while (html.length() < size)
+            html.append("<p>").append(sentence(random, 40)).append("</p>");
+        return html.toString();
+    }
+
+    private static String sentence(Random random, int maxWords) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = random.nextInt(maxWords) + 1; i > 0; i--) {
+            if (sentence.length() > 0)
+                sentence.append(' ');
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.append('.').toString();
+    }
+
+    private static void append(String report, String page, String format, int bytes, int gzipped, double serializeMicros,
+                               double deserializeMicros) throws IOException {
+        File file = new File(report);
+        boolean header = !file.exists();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (header)
+                out.println("timestamp,java,page,format,bytes,gzip_bytes,serialize_us,deserialize_us");
+            out.printf(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%.1f,%.1f%n", Instant.now(), System.getProperty("java.version"), page,
+                format, bytes, gzipped, serializeMicros, deserializeMicros);
+        }
+    }
+
+    private static final class Page {
+
+        private final List<?> items;
+
+        private final Class<?> type;
+
+        private Page(List<?> items, Class<?> type) {
+            this.items = items;
+            this.type = type;
+        }
+    }
+}
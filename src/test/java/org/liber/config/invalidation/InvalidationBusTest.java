@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.config.invalidation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.TenantContext;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the {@link InvalidationBus}.
+ */
+public class InvalidationBusTest {
+
+    private ApplicationProperties applicationProperties;
+    private final List<InvalidationBus> buses = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getInvalidation().setCoalesceMillis(60_000);
+        applicationProperties.getInvalidation().setMaxKeysPerCache(3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        buses.forEach(InvalidationBus::destroy);
+    }
+
+    @Test
+    public void testEvictionsReachEveryInstance() {
+        Set<LocalInvalidationTransport> group = ConcurrentHashMap.newKeySet();
+        InvalidationBus first = bus(new LocalInvalidationTransport(group));
+        InvalidationBus second = bus(new LocalInvalidationTransport(group));
+        InvalidationListener local = subscribe(first, "users");
+        InvalidationListener remote = subscribe(second, "users");
+        InvalidationListener other = subscribe(second, "reports");
+
+        TenantContext.runAs("clinic_a", () -> first.publishAfterCommit("users", "john"));
+
+        verify(local).evict("clinic_a", "john");
+        verifyNoInteractions(remote);
+        first.flush();
+        verify(remote).evict("clinic_a", "john");
+        verifyNoInteractions(other);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBurstsAreCoalesced() {
+        InvalidationTransport transport = mock(InvalidationTransport.class);
+        InvalidationBus bus = bus(transport);
+
+        bus.publishAfterCommit("users", "john");
+        bus.publishAfterCommit("users", "john");
+        bus.publishAfterCommit("users", "mary");
+        for (int i = 0; i < 5; i++)
+            bus.publishAfterCommit("reports", "report-" + i + "-");
+        bus.flush();
+
+        ArgumentCaptor<List<Invalidation>> sent = ArgumentCaptor.forClass(List.class);
+        verify(transport).send(sent.capture());
+        assertThat(sent.getValue()).containsExactly(
+            new Invalidation(TenantContext.DEFAULT_TENANT, "users", "john"),
+            new Invalidation(TenantContext.DEFAULT_TENANT, "users", "mary"),
+            new Invalidation(TenantContext.DEFAULT_TENANT, "reports", null));
+        bus.flush();
+        verify(transport).send(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEverythingIsEvictedWhenInvalidationsWereMissed() {
+        InvalidationTransport transport = mock(InvalidationTransport.class);
+        InvalidationBus bus = bus(transport);
+        InvalidationListener users = subscribe(bus, "users");
+        InvalidationListener reports = subscribe(bus, "reports");
+        ArgumentCaptor<Runnable> onReset = ArgumentCaptor.forClass(Runnable.class);
+        verify(transport).start(any(Consumer.class), onReset.capture());
+
+        onReset.getValue().run();
+
+        verify(users).evictAll();
+        verify(reports).evictAll();
+    }
+
+    private InvalidationBus bus(InvalidationTransport transport) {
+        InvalidationBus bus = new InvalidationBus(transport, applicationProperties);
+        bus.afterPropertiesSet();
+        buses.add(bus);
+        return bus;
+    }
+
+    private static InvalidationListener subscribe(InvalidationBus bus, String cache) {
+        InvalidationListener listener = mock(InvalidationListener.class);
+        bus.subscribe(cache, listener);
+        return listener;
+    }
+}
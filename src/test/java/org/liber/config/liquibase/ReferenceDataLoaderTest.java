@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.liquibase;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link ReferenceDataLoader}, on the H2 multi-row {@code MERGE} path.
+ */
+public class ReferenceDataLoaderTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:reference-data;DB_CLOSE_DELAY=-1", "sa", "");
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE country (id BIGINT PRIMARY KEY, name VARCHAR(100) NOT NULL)");
+            statement.execute("CREATE TABLE state (id BIGINT PRIMARY KEY, country_id BIGINT, name VARCHAR(100), abbreviation VARCHAR(10))");
+            statement.execute("CREATE TABLE reference_data_load (data_set VARCHAR(20) PRIMARY KEY, checksum VARCHAR(64) NOT NULL, "
+                + "row_count INTEGER NOT NULL, loaded_date TIMESTAMP NOT NULL)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testLoadsBundledDataOnce() throws Exception {
+        ReferenceDataLoader loader = new ReferenceDataLoader(connection);
+
+        int countries = loader.load(ReferenceDataLoader.DataSet.COUNTRY);
+        int states = loader.load(ReferenceDataLoader.DataSet.STATE);
+
+        // several full MERGE statements plus a shorter last one
+        assertThat(states).isGreaterThan(1000);
+        assertThat(count("country")).isEqualTo(countries);
+        assertThat(count("state")).isEqualTo(states);
+        assertThat(loader.load(ReferenceDataLoader.DataSet.COUNTRY)).isZero();
+        assertThat(loader.load(ReferenceDataLoader.DataSet.STATE)).isZero();
+    }
+
+    @Test
+    public void testChangedFileIsMerged(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("countries.csv");
+        Files.write(file, "id,english_name,native\n1,Brazil,Brasil\n2,Portugal,Portugal\n".getBytes(StandardCharsets.UTF_8));
+        ReferenceDataLoader loader = new ReferenceDataLoader(connection, directory.toUri().toString());
+        loader.load(ReferenceDataLoader.DataSet.COUNTRY);
+
+        Files.write(file, "id,english_name,native\n1,Brazil,\"Brasil, República\"\n3,Angola,\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(loader.load(ReferenceDataLoader.DataSet.COUNTRY)).isEqualTo(2);
+        assertThat(count("country")).isEqualTo(3);
+        assertThat(name(1)).isEqualTo("Brasil, República");
+        assertThat(name(3)).isEmpty();
+    }
+
+    private int count(String table) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private String name(long id) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name FROM country WHERE id = " + id)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.config.tenancy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.config.ApplicationProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TenantFilterTest {
+
+    private TenantFilter tenantFilter;
+
+    private AtomicReference<String> tenantInChain;
+
+    private FilterChain filterChain;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties.Tenancy tenancy = new ApplicationProperties.Tenancy();
+        tenancy.setTenants(Arrays.asList("clinic_a", "clinic_b"));
+        tenantFilter = new TenantFilter(new TenantRegistry(tenancy));
+        tenantInChain = new AtomicReference<>();
+        filterChain = (request, response) -> tenantInChain.set(TenantContext.getTenant());
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testDefaultTenantWithoutHeader() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tenantFilter.doFilter(new MockHttpServletRequest(), response, filterChain);
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(tenantInChain.get()).isEqualTo(TenantContext.DEFAULT_TENANT);
+    }
+
+    @Test
+    public void testTenantFromHeader() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(TenantFilter.TENANT_HEADER, "clinic_a");
+        tenantFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        assertThat(tenantInChain.get()).isEqualTo("clinic_a");
+        assertThat(TenantContext.getTenant()).isEqualTo(TenantContext.DEFAULT_TENANT);
+    }
+
+    @Test
+    public void testUnknownTenantInHeader() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(TenantFilter.TENANT_HEADER, "clinic_z");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tenantFilter.doFilter(request, response, filterChain);
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        assertThat(tenantInChain.get()).isNull();
+    }
+
+    @Test
+    public void testTenantOfTokenWinsOverHeader() throws Exception {
+        authenticate("clinic_b");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(TenantFilter.TENANT_HEADER, "clinic_a");
+        tenantFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+        assertThat(tenantInChain.get()).isEqualTo("clinic_b");
+    }
+
+    @Test
+    public void testUnknownTenantInToken() throws Exception {
+        authenticate("clinic_z");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        tenantFilter.doFilter(new MockHttpServletRequest(), response, filterChain);
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.UNAUTHORIZED.value());
+        assertThat(tenantInChain.get()).isNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    private void authenticate(String tenant) {
+        UsernamePasswordAuthenticationToken authentication =
+            new UsernamePasswordAuthenticationToken("test-user", "token", Collections.emptyList());
+        authentication.setDetails(tenant);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link AuthorityMaskExpressionRoot}.
+ */
+public class AuthorityMaskExpressionRootTest {
+
+    private static final List<GrantedAuthority> AUTHORITIES = Arrays.asList(
+        new SimpleGrantedAuthority(AuthoritiesConstants.SOCIAL_ASSISTANT), new SimpleGrantedAuthority("ROLE_AUDITOR"));
+
+    @Test
+    public void testChecksAuthoritiesOfAuthenticatedUser() {
+        AuthenticatedUser principal = new AuthenticatedUser("user", "", AUTHORITIES);
+        AuthorityMaskExpressionRoot root = new AuthorityMaskExpressionRoot(new UsernamePasswordAuthenticationToken(principal, "token", AUTHORITIES));
+
+        assertThat(root.hasAuthority(AuthoritiesConstants.SOCIAL_ASSISTANT)).isTrue();
+        assertThat(root.hasAuthority(AuthoritiesConstants.ADMIN)).isFalse();
+        assertThat(root.hasAnyAuthority(AuthoritiesConstants.DENTIST, AuthoritiesConstants.SOCIAL_ASSISTANT)).isTrue();
+        assertThat(root.hasAnyAuthority(AuthoritiesConstants.DENTIST, AuthoritiesConstants.PSYCHIATRIST)).isFalse();
+        assertThat(root.hasAuthority("ROLE_AUDITOR")).isTrue();
+        assertThat(root.hasAuthority("ROLE_OTHER")).isFalse();
+        assertThat(root.hasRole("SOCIAL_ASSISTANT")).isTrue();
+        assertThat(root.isAuthenticated()).isTrue();
+    }
+
+    @Test
+    public void testChecksAuthoritiesOfOtherPrincipals() {
+        AuthorityMaskExpressionRoot root = new AuthorityMaskExpressionRoot(new UsernamePasswordAuthenticationToken("user", "password", AUTHORITIES));
+
+        assertThat(root.hasAnyAuthority(AuthoritiesConstants.ADMIN, AuthoritiesConstants.SOCIAL_ASSISTANT)).isTrue();
+        assertThat(root.hasAuthority(AuthoritiesConstants.ADMIN)).isFalse();
+    }
+
+    @Test
+    public void testAnonymousIsNotAuthenticated() {
+        List<GrantedAuthority> authorities = Arrays.asList(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
+        AuthorityMaskExpressionRoot root = new AuthorityMaskExpressionRoot(new AnonymousAuthenticationToken("key", "anonymous", authorities));
+
+        assertThat(root.isAnonymous()).isTrue();
+        assertThat(root.isAuthenticated()).isFalse();
+        assertThat(root.hasAuthority(AuthoritiesConstants.ANONYMOUS)).isTrue();
+    }
+}
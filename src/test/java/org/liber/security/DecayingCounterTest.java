@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Test class for the {@link DecayingCounter}.
+ */
+public class DecayingCounterTest {
+
+    private static final long HALF_LIFE = TimeUnit.MINUTES.toNanos(5);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testIncrementAndDecay() {
+        DecayingCounter counter = new DecayingCounter(4, 4, HALF_LIFE, clock::get);
+        counter.increment("admin");
+        counter.increment("admin");
+        assertThat(counter.get("admin")).isCloseTo(2, within(1e-9));
+
+        clock.addAndGet(HALF_LIFE);
+        assertThat(counter.get("admin")).isCloseTo(1, within(1e-9));
+        assertThat(counter.get("user")).isZero();
+    }
+
+    @Test
+    public void testReset() {
+        DecayingCounter counter = new DecayingCounter(4, 4, HALF_LIFE, clock::get);
+        counter.increment("admin");
+        counter.reset("admin");
+        assertThat(counter.get("admin")).isZero();
+    }
+
+    @Test
+    public void testFullStripeEvictsColdestKey() {
+        DecayingCounter counter = new DecayingCounter(1, 2, HALF_LIFE, clock::get);
+        counter.increment("hot");
+        counter.increment("hot");
+        counter.increment("cold");
+        counter.increment("new");
+
+        assertThat(counter.get("hot")).isCloseTo(2, within(1e-9));
+        assertThat(counter.get("cold")).isZero();
+        assertThat(counter.get("new")).isCloseTo(1, within(1e-9));
+    }
+}
@@ -87,4 +87,20 @@ public class SecurityUtilsUnitTest {
         assertThat(SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN)).isFalse();
     }
 
+    @Test
+    public void testIsCurrentUserInAnyRoleWithAuthenticatedUser() {
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        Collection<GrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.PSYCHOLOGIST));
+        authorities.add(new SimpleGrantedAuthority("ROLE_AUDITOR"));
+        AuthenticatedUser principal = new AuthenticatedUser("user", "", authorities);
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(principal, "token", authorities));
+        SecurityContextHolder.setContext(securityContext);
+
+        assertThat(SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.CLINICAL_STAFF)).isTrue();
+        assertThat(SecurityUtils.isCurrentUserInAnyRole(AuthorityMask.ADMIN | AuthorityMask.SECRETARY)).isFalse();
+        assertThat(SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN, AuthoritiesConstants.PSYCHOLOGIST)).isTrue();
+        assertThat(SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN, "ROLE_AUDITOR")).isTrue();
+        assertThat(SecurityUtils.isAuthenticated()).isTrue();
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.security.jwt;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.tenancy.TenantContext;
+import org.liber.domain.entities.TokenRevocation;
+import org.liber.domain.repository.TokenRevocationRepository;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the {@link RevokedTokens}.
+ */
+public class RevokedTokensTest {
+
+    private static final String TENANT = TenantContext.DEFAULT_TENANT;
+
+    private TokenRevocationRepository repository;
+
+    private RevokedTokens revokedTokens;
+
+    @BeforeEach
+    public void setup() {
+        repository = mock(TokenRevocationRepository.class);
+        revokedTokens = new RevokedTokens(repository, new ApplicationProperties(), new JHipsterProperties());
+    }
+
+    @Test
+    public void testRevokesTokensOfUserIssuedUntilNow() {
+        Instant before = Instant.now().minusSeconds(10);
+        revokedTokens.revokeUser("John");
+
+        assertThat(revokedTokens.isRevoked(TENANT, "john", null, before)).isTrue();
+        assertThat(revokedTokens.isRevoked(TENANT, "JOHN", "id", null)).isTrue();
+        assertThat(revokedTokens.isRevoked(TENANT, "john", null, Instant.now().plusSeconds(1))).isFalse();
+        assertThat(revokedTokens.isRevoked(TENANT, "mary", null, before)).isFalse();
+        assertThat(revokedTokens.isRevoked("clinic_a", "john", null, before)).isFalse();
+        verify(repository).save(any(TokenRevocation.class));
+    }
+
+    @Test
+    public void testSparesTokensIssuedLaterInTheSameSecond() {
+        revokedTokens.revokeUser("john");
+        Instant after = Instant.now().plusMillis(1);
+
+        assertThat(revokedTokens.isRevoked(TENANT, "john", null, after.minusMillis(2))).isTrue();
+        assertThat(revokedTokens.isRevoked(TENANT, "john", null, after)).isFalse();
+    }
+
+    @Test
+    public void testRevokesSingleToken() {
+        revokedTokens.revokeToken("a", Instant.now().plusSeconds(60));
+
+        assertThat(revokedTokens.isRevoked(TENANT, "john", "a", Instant.now())).isTrue();
+        assertThat(revokedTokens.isRevoked(TENANT, "john", "b", Instant.now())).isFalse();
+    }
+
+    @Test
+    public void testRefreshReadsRevocationsOfOtherInstances() {
+        Instant issuedAt = Instant.now().minusSeconds(10);
+        assertThat(revokedTokens.isRevoked(TENANT, "john", null, issuedAt)).isFalse();
+        when(repository.findAllInForceCreatedSince(any(), any())).thenReturn(Collections.singletonList(revocation("john", Instant.now())));
+
+        revokedTokens.refresh();
+
+        assertThat(revokedTokens.isRevoked(TENANT, "john", null, issuedAt)).isTrue();
+    }
+
+    @Test
+    public void testGrowsAndDropsExpiredRevocations() {
+        for (int i = 0; i < 3000; i++)
+            revokedTokens.revokeToken("t" + i, Instant.now().plusSeconds(i < 1500 ? -1 : 60));
+
+        assertThat(revokedTokens.isRevoked(TENANT, null, "t2999", null)).isTrue();
+        revokedTokens.refresh();
+
+        assertThat(revokedTokens.isRevoked(TENANT, null, "t0", null)).isFalse();
+        assertThat(revokedTokens.isRevoked(TENANT, null, "t2999", null)).isTrue();
+    }
+
+    private static TokenRevocation revocation(String login, Instant revokedBefore) {
+        TokenRevocation revocation = new TokenRevocation();
+        revocation.setLogin(login);
+        revocation.setRevokedBefore(revokedBefore);
+        revocation.setExpiresAt(revokedBefore.plusSeconds(3600));
+        return revocation;
+    }
+}
@@ -19,13 +19,17 @@
 
 package org.liber.security.jwt;
 
+import org.liber.config.tenancy.TenantContext;
 import org.liber.security.AuthoritiesConstants;
 
 import java.security.Key;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -39,17 +43,24 @@ import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class TokenProviderTest {
 
     private static final long ONE_MINUTE = 60000;
 
     private Key key;
+    private RevokedTokens revokedTokens;
     private TokenProvider tokenProvider;
 
     @BeforeEach
     public void setup() {
-        tokenProvider = new TokenProvider( new JHipsterProperties());
+        revokedTokens = mock(RevokedTokens.class);
+        tokenProvider = new TokenProvider(new JHipsterProperties(), revokedTokens);
         key = Keys.hmacShaKeyFor(Decoders.BASE64
             .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8"));
 
@@ -102,6 +113,60 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testReturnFalseWhenJWTisRevoked() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        when(revokedTokens.isRevoked(eq(TenantContext.DEFAULT_TENANT), eq("anonymous"), any(), any())).thenReturn(true);
+
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+    }
+
+    @Test
+    public void testChecksRevocationWithIssueTimeInMilliseconds() {
+        Instant before = Instant.now();
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        Instant after = Instant.now();
+        ArgumentCaptor<Instant> issuedAt = ArgumentCaptor.forClass(Instant.class);
+
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+        verify(revokedTokens).isRevoked(eq(TenantContext.DEFAULT_TENANT), eq("anonymous"), any(), issuedAt.capture());
+        assertThat(issuedAt.getValue()).isBetween(before.truncatedTo(ChronoUnit.MILLIS), after);
+    }
+
+    @Test
+    public void testRevokeTokenById() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        String id = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getId();
+
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+        assertThat(tokenProvider.revoke(token)).isTrue();
+        verify(revokedTokens).revokeToken(eq(id), any());
+    }
+
+    @Test
+    public void testTenantOfTokenInAuthenticationDetails() {
+        TenantContext.setTenant("clinic_a");
+        String token;
+        try {
+            token = tokenProvider.createToken(createAuthentication(), false);
+        } finally {
+            TenantContext.clear();
+        }
+
+        assertThat(tokenProvider.getAuthentication(token).getDetails()).isEqualTo("clinic_a");
+    }
+
+    @Test
+    public void testDefaultTenantWhenTokenHasNone() {
+        String token = Jwts.builder()
+            .setSubject("anonymous")
+            .claim("auth", AuthoritiesConstants.ANONYMOUS)
+            .signWith(key, SignatureAlgorithm.HS512)
+            .compact();
+
+        assertThat(tokenProvider.getAuthentication(token).getDetails()).isEqualTo(TenantContext.DEFAULT_TENANT);
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
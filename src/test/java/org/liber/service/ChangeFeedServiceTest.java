@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.config.ApplicationProperties;
+import org.liber.domain.entities.Patient;
+import org.liber.domain.enums.ChangeKind;
+import org.liber.security.AuthoritiesConstants;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link ChangeFeedService}.
+ */
+public class ChangeFeedServiceTest {
+
+    private ChangeFeedService changeFeedService;
+
+    @BeforeEach
+    public void setup() {
+        changeFeedService = new ChangeFeedService(new ApplicationProperties(), new ObjectMapper(), new SimpleMeterRegistry());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("user", "user",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.SOCIAL_ASSISTANT))));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        changeFeedService.destroy();
+    }
+
+    @Test
+    public void testEverySubscriberGetsTheSameFrames() throws InterruptedException {
+        ResponseBodyEmitter first = changeFeedService.subscribe(null);
+        ResponseBodyEmitter second = changeFeedService.subscribe(null);
+        ResponseBodyEmitter third = changeFeedService.subscribe(null);
+        for (long id = 1; id <= 20; id++) {
+            Patient patient = new Patient();
+            patient.setId(id);
+            changeFeedService.patientChanged(patient, ChangeKind.UPDATED);
+        }
+        changeFeedService.heartbeat();
+        changeFeedService.heartbeat();
+
+        String frames = await(first, 23);
+        assertThat(await(second, 23)).isEqualTo(frames);
+        assertThat(await(third, 23)).isEqualTo(frames);
+        assertThat(frames).contains("event:change\ndata:{").contains(":heartbeat\n\n:heartbeat\n\n").doesNotContain("\n\n\n");
+    }
+
+    /**
+     * Waits for the sender threads to hand the emitter the given number of events, sent before the emitter was bound
+     * to a response, and returns their text.
+     */
+    private static String await(ResponseBodyEmitter emitter, int events) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            String text = sent(emitter);
+            if (text.split("\n\n", -1).length - 1 >= events || System.currentTimeMillis() > deadline)
+                return text;
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String sent(ResponseBodyEmitter emitter) {
+        synchronized (emitter) {
+            Set<ResponseBodyEmitter.DataWithMediaType> sent = (Set<ResponseBodyEmitter.DataWithMediaType>) ReflectionTestUtils.getField(emitter, "earlySendAttempts");
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : sent)
+                text.append(part.getData());
+            return text.toString();
+        }
+    }
+}
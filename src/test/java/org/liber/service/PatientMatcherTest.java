@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import org.junit.jupiter.api.Test;
+import org.liber.domain.entities.PatientDocument;
+import org.liber.domain.enums.Sex;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PatientMatcher}.
+ */
+public class PatientMatcherTest {
+
+    private static final LocalDate BIRTH_DATE = LocalDate.of(1985, 3, 7);
+
+    @Test
+    public void testMisspelledPatientSharesKeysAndScoresHigh() {
+        PatientMatcher.Record first = record(1L, "Luiz Gonçalves de Souza", "Maria Aparecida", BIRTH_DATE, Sex.MALE, documents(1L, "123.456.789-00"));
+        PatientMatcher.Record second = record(2L, "Luís Gonsalves Sousa", "Maria Aparecida", BIRTH_DATE, Sex.MALE, Collections.emptyMap());
+
+        assertThat(PatientMatcher.matchKeys(first)).containsAll(PatientMatcher.matchKeys(second));
+        assertThat(PatientMatcher.score(first, second)).isGreaterThanOrEqualTo(80);
+    }
+
+    @Test
+    public void testTypoInBirthDateStillMatchesOnNames() {
+        PatientMatcher.Record first = record(1L, "Ana Paula Ribeiro", "Joana Ribeiro", BIRTH_DATE, Sex.FEMALE, Collections.emptyMap());
+        PatientMatcher.Record second = record(2L, "Ana Paula Ribeiro", "Joana Ribeiro", LocalDate.of(1985, 7, 3), Sex.FEMALE, Collections.emptyMap());
+
+        assertThat(PatientMatcher.matchKeys(first)).anyMatch(PatientMatcher.matchKeys(second)::contains);
+        assertThat(PatientMatcher.score(first, second)).isBetween(70, 90);
+    }
+
+    @Test
+    public void testSameDocumentNumberIsAKey() {
+        PatientMatcher.Record first = record(1L, "João Pedro", "Rita", BIRTH_DATE, Sex.MALE, documents(2L, PatientDocument.normalize("mg-12.345.678")));
+        PatientMatcher.Record second = record(2L, "J. Pedro Alves", "Rita Alves", LocalDate.of(1986, 1, 1), Sex.MALE, documents(2L, "MG12345678"));
+
+        assertThat(PatientMatcher.matchKeys(first)).contains("D:2:MG12345678");
+        assertThat(PatientMatcher.matchKeys(second)).contains("D:2:MG12345678");
+    }
+
+    @Test
+    public void testNamesakesScoreLow() {
+        PatientMatcher.Record first = record(1L, "José da Silva", "Francisca da Silva", BIRTH_DATE, Sex.MALE, Collections.emptyMap());
+        PatientMatcher.Record second = record(2L, "José da Silva", "Antônia Pereira", LocalDate.of(1962, 11, 20), Sex.MALE, Collections.emptyMap());
+
+        assertThat(PatientMatcher.score(first, second)).isLessThan(70);
+    }
+
+    @Test
+    public void testConflictingDocumentsScoreLow() {
+        PatientMatcher.Record first = record(1L, "Maria Santos", "Lúcia Santos", BIRTH_DATE, Sex.FEMALE, documents(1L, "11111111111"));
+        PatientMatcher.Record second = record(2L, "Maria Santos", "Lúcia Santos", BIRTH_DATE, Sex.FEMALE, documents(1L, "22222222222"));
+
+        assertThat(PatientMatcher.score(first, second)).isLessThan(70);
+    }
+
+    @Test
+    public void testKeysHaveNoSeparators() {
+        PatientMatcher.Record record = record(1L, "Maria  das Dores", "Ana Maria", BIRTH_DATE, Sex.FEMALE, documents(3L, "AB 12|34"));
+
+        assertThat(PatientMatcher.matchKeys(record)).allSatisfy(key -> assertThat(key).doesNotContain(" ", "|"));
+    }
+
+    private static PatientMatcher.Record record(Long id, String name, String motherName, LocalDate birthDate, Sex sex, Map<Long, String> documents) {
+        return new PatientMatcher.Record(id, name, motherName, birthDate, sex, documents);
+    }
+
+    private static Map<Long, String> documents(Long type, String value) {
+        Map<Long, String> documents = new HashMap<>();
+        documents.put(type, PatientDocument.normalize(value));
+        return documents;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.config.ApplicationProperties;
+import org.liber.domain.enums.PurgeStatus;
+import org.liber.service.dto.PatientPurgeDTO;
+import org.liber.service.dto.PatientPurgeJobDTO;
+import org.liber.service.errors.BadRequestAlertException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the {@link PatientPurgeJobService}.
+ */
+public class PatientPurgeJobServiceTest {
+
+    private PatientPurgeService patientPurgeService;
+    private PatientPurgeJobService patientPurgeJobService;
+
+    @BeforeEach
+    public void setup() {
+        patientPurgeService = mock(PatientPurgeService.class);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPurge().setBatchSize(2);
+        patientPurgeJobService = new PatientPurgeJobService(patientPurgeService, applicationProperties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        patientPurgeJobService.destroy();
+    }
+
+    @Test
+    public void testListedPatientsArePurgedInBatches() throws InterruptedException {
+        when(patientPurgeService.purge(anyCollection())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+
+        PatientPurgeJobDTO job = await(patientPurgeJobService.start(listed(1L, 2L, 3L, 2L, 4L, 5L)));
+
+        assertThat(job.getStatus()).isEqualTo(PurgeStatus.DONE);
+        assertThat(job.getTotal()).isEqualTo(5);
+        assertThat(job.getPurged()).isEqualTo(5);
+        verify(patientPurgeService).purge(Arrays.asList(1L, 2L));
+        verify(patientPurgeService).purge(Arrays.asList(3L, 4L));
+        verify(patientPurgeService).purge(Collections.singletonList(5L));
+    }
+
+    @Test
+    public void testInactivePatientsArePagedAfterTheLastIdChecked() throws InterruptedException {
+        Instant before = Instant.parse("2015-01-01T00:00:00Z");
+        when(patientPurgeService.countInactiveSince(before)).thenReturn(3L);
+        when(patientPurgeService.getIdsInactiveSince(before, 0L, 2)).thenReturn(Arrays.asList(4L, 9L));
+        when(patientPurgeService.getIdsInactiveSince(before, 9L, 2)).thenReturn(Collections.singletonList(12L));
+        when(patientPurgeService.getIdsInactiveSince(before, 12L, 2)).thenReturn(Collections.emptyList());
+        when(patientPurgeService.purgeInactiveSince(Arrays.asList(4L, 9L), before)).thenReturn(1);
+        when(patientPurgeService.purgeInactiveSince(Collections.singletonList(12L), before)).thenReturn(1);
+        PatientPurgeDTO purge = new PatientPurgeDTO();
+        purge.setInactiveBefore(LocalDate.of(2015, 1, 1));
+
+        PatientPurgeJobDTO job = await(patientPurgeJobService.start(purge));
+
+        assertThat(job.getStatus()).isEqualTo(PurgeStatus.DONE);
+        assertThat(job.getTotal()).isEqualTo(3);
+        assertThat(job.getProcessed()).isEqualTo(3);
+        assertThat(job.getPurged()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailureKeepsTheProgressMade() throws InterruptedException {
+        when(patientPurgeService.purge(anyCollection())).thenReturn(2).thenThrow(new IllegalStateException("deadlock"));
+
+        PatientPurgeJobDTO job = await(patientPurgeJobService.start(listed(1L, 2L, 3L)));
+
+        assertThat(job.getStatus()).isEqualTo(PurgeStatus.FAILED);
+        assertThat(job.getPurged()).isEqualTo(2);
+        assertThat(job.getError()).isEqualTo("deadlock");
+    }
+
+    @Test
+    public void testExactlyOneCriterionIsRequired() {
+        PatientPurgeDTO both = listed(1L);
+        both.setInactiveBefore(LocalDate.of(2015, 1, 1));
+
+        assertThatThrownBy(() -> patientPurgeJobService.start(new PatientPurgeDTO())).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> patientPurgeJobService.start(both)).isInstanceOf(BadRequestAlertException.class);
+        verifyNoInteractions(patientPurgeService);
+    }
+
+    private PatientPurgeJobDTO await(PatientPurgeJobDTO job) throws InterruptedException {
+        for (int i = 0; i < 100 && (job.getStatus() == PurgeStatus.QUEUED || job.getStatus() == PurgeStatus.RUNNING); i++) {
+            Thread.sleep(20);
+            job = patientPurgeJobService.getJob(job.getJobId());
+        }
+        return job;
+    }
+
+    private static PatientPurgeDTO listed(Long... patientIds) {
+        PatientPurgeDTO purge = new PatientPurgeDTO();
+        purge.setPatientIds(Arrays.asList(patientIds));
+        return purge;
+    }
+}
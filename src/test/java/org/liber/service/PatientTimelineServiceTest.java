@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.domain.entities.*;
+import org.liber.domain.repository.*;
+import org.liber.service.dto.PatientTimelineDTO;
+import org.liber.service.dto.TimelineEntryDTO;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the {@link PatientTimelineService}.
+ */
+public class PatientTimelineServiceTest {
+
+    private static final Long PATIENT_ID = 1L;
+
+    private final List<Hospitalization> hospitalizations = new ArrayList<>();
+
+    private PatientTimelineService patientTimelineService;
+
+    @BeforeEach
+    public void setup() {
+        PatientRepository patientRepository = mock(PatientRepository.class);
+        HospitalizationRepository hospitalizationRepository = mock(HospitalizationRepository.class);
+        ArchivedHospitalizationRepository archivedHospitalizationRepository = mock(ArchivedHospitalizationRepository.class);
+        ReportRepository reportRepository = mock(ReportRepository.class);
+        ArchivedReportRepository archivedReportRepository = mock(ArchivedReportRepository.class);
+        Patient patient = patient();
+        when(patientRepository.findWithDocumentsById(PATIENT_ID)).thenReturn(Optional.of(patient));
+        when(hospitalizationRepository.findAllWithReleaseReasonByPatientId(eq(PATIENT_ID), any(), any())).thenAnswer(invocation -> {
+            LocalDate before = invocation.getArgument(1);
+            Pageable pageable = invocation.getArgument(2);
+            return hospitalizations.stream()
+                .filter(hospitalization -> hospitalization.getStartDate().isBefore(before))
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+        });
+        patientTimelineService = new PatientTimelineService(patientRepository, hospitalizationRepository, reportRepository,
+            archivedHospitalizationRepository, archivedReportRepository);
+        for (int i = 0; i < 7; i++) {
+            Hospitalization hospitalization = new Hospitalization();
+            hospitalization.setPatient(patient);
+            hospitalization.setStartDate(LocalDate.of(2020, 1, 1).minusMonths(i));
+            hospitalization.setEndDate(hospitalization.getStartDate().plusDays(10));
+            hospitalizations.add(hospitalization);
+        }
+    }
+
+    @Test
+    public void testEveryPageOfHospitalizationsIsReachable() {
+        List<LocalDate> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PatientTimelineDTO page = patientTimelineService.getTimeline(PATIENT_ID, cursor, 2);
+            for (TimelineEntryDTO entry : page.getEntries())
+                seen.add(entry.getHospitalization().getStartDate());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        assertThat(seen).containsExactlyElementsOf(hospitalizations.stream().map(Hospitalization::getStartDate).collect(Collectors.toList()));
+        assertThat(pages).isEqualTo(4);
+    }
+
+    private static Patient patient() {
+        City city = new City();
+        city.setId(1L);
+        MaritalStatus maritalStatus = new MaritalStatus();
+        maritalStatus.setId(1L);
+        Profession profession = new Profession();
+        profession.setId(1L);
+        Scholarity scholarity = new Scholarity();
+        scholarity.setId(1L);
+        Patient patient = new Patient();
+        patient.setId(PATIENT_ID);
+        patient.setName("Paciente");
+        patient.setAddressCity(city);
+        patient.setBirthPlace(city);
+        patient.setMaritalStatus(maritalStatus);
+        patient.setProfession(profession);
+        patient.setScholarity(scholarity);
+        patient.setWorking(true);
+        patient.setDocuments(Collections.emptySet());
+        return patient;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import org.liber.utils.CompressionUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what storing report content compressed saves on PostgreSQL: the bytes stored, the bytes each read brings
+ * over the connection and the time of a read, decompression included.
+ * <p>
+ * For each size, HTML built from a fixed seed is stored as {@code TEXT}, where PostgreSQL compresses it itself, and in
+ * {@code bytea} compressed by each {@link CompressionUtils.Codec}, in a temporary table shaped as {@code report}. Each
+ * is read back by id as {@link ReportContentService} stores it, after as many warm-up reads.
+ * <p>
+ * Settings are system properties: {@code benchmark.url} ({@code jdbc:postgresql://localhost:5432/liber}),
+ * {@code benchmark.username} ({@code liber}), {@code benchmark.password} (empty), {@code benchmark.sizes}, the
+ * content sizes in bytes ({@code 62000,3000000}), {@code benchmark.reads} (200) and {@code benchmark.report}, a CSV
+ * file each result is appended to. Run it with {@code exec:java@report-content-benchmark}.
+ */
+public class ReportContentBenchmark {
+
+    private static final String[] WORDS = {"paciente", "relata", "melhora", "do", "sono", "e", "apetite", "nega",
+        "uso", "de", "substâncias", "desde", "a", "última", "consulta", "família", "presente", "na", "visita",
+        "orientado", "quanto", "ao", "tratamento", "mantém", "acompanhamento", "psicológico", "semanal", "com",
+        "adesão", "às", "atividades", "terapêuticas", "refere", "ansiedade", "leve", "no", "período", "noturno"};
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("benchmark.url", "jdbc:postgresql://localhost:5432/liber");
+        int reads = Integer.getInteger("benchmark.reads", 200);
+        String report = System.getProperty("benchmark.report");
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : System.getProperty("benchmark.sizes", "62000,3000000").split(","))
+            sizes.add(Integer.valueOf(size.trim()));
+
+        try (Connection connection = DriverManager.getConnection(url, System.getProperty("benchmark.username", "liber"),
+            System.getProperty("benchmark.password", ""))) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create temporary table report_content_benchmark (id bigint primary key, content text, "
+                    + "compressed_content bytea)");
+            }
+            System.out.printf("%-12s %-8s %14s %14s %12s%n", "content", "storage", "stored bytes", "bytes per read", "ms per read");
+            long id = 0;
+            for (int size : sizes) {
+                String content = html(size);
+                for (String storage : storages()) {
+                    id++;
+                    insert(connection, id, content, storage);
+                    long storedBytes = storedBytes(connection, id);
+                    read(connection, id, reads);
+                    long start = System.nanoTime();
+                    long bytesRead = read(connection, id, reads);
+                    double millisPerRead = (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1) / reads;
+                    System.out.printf("%-12s %-8s %,14d %,14d %12.1f%n", size / 1000 + " KB HTML", storage, storedBytes,
+                        bytesRead / reads, millisPerRead);
+                    if (report != null)
+                        append(report, size, storage, storedBytes, bytesRead / reads, millisPerRead);
+                }
+            }
+        }
+    }
+
+    private static List<String> storages() {
+        List<String> storages = new ArrayList<>();
+        storages.add("TEXT");
+        for (CompressionUtils.Codec codec : CompressionUtils.Codec.values())
+            storages.add(codec.name());
+        return storages;
+    }
+
+    private static void insert(Connection connection, long id, String content, String storage) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+            "insert into report_content_benchmark (id, content, compressed_content) values (?, ?, ?)")) {
+            insert.setLong(1, id);
+            if (storage.equals("TEXT")) {
+                insert.setString(2, content);
+                insert.setNull(3, Types.BINARY);
+            } else {
+                insert.setNull(2, Types.VARCHAR);
+                insert.setBytes(3, CompressionUtils.compress(content, CompressionUtils.Codec.valueOf(storage)));
+            }
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Gets the size of the stored value, after the compression PostgreSQL applies to large values itself.
+     */
+    private static long storedBytes(Connection connection, long id) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+            "select coalesce(pg_column_size(content), pg_column_size(compressed_content)) from report_content_benchmark where id = ?")) {
+            select.setLong(1, id);
+            try (ResultSet result = select.executeQuery()) {
+                result.next();
+                return result.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Reads the content as many times, returning the bytes of the values received.
+     */
+    private static long read(Connection connection, long id, int reads) throws SQLException {
+        long bytes = 0;
+        try (PreparedStatement select = connection.prepareStatement(
+            "select content, compressed_content from report_content_benchmark where id = ?")) {
+            for (int i = 0; i < reads; i++) {
+                select.setLong(1, id);
+                try (ResultSet result = select.executeQuery()) {
+                    result.next();
+                    String content = result.getString(1);
+                    if (content != null) {
+                        bytes += content.getBytes(StandardCharsets.UTF_8).length;
+                    } else {
+                        byte[] compressed = result.getBytes(2);
+                        bytes += compressed.length;
+                        content = CompressionUtils.decompress(compressed);
+                    }
+                    if (content.isEmpty())
+                        throw new IllegalStateException("Empty content read back");
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Builds report-like HTML of about a size, with paragraphs, lists and tables of words from a fixed seed.
+     */
+    private static String html(int size) {
+        Random random = new Random(size);
+        StringBuilder html = new StringBuilder(size + 256);
+        while (html.length() < size) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    html.append("<ul>");
+                    for (int i = random.nextInt(5) + 2; i > 0; i--)
+                        html.append("<li>").append(sentence(random, 8)).append("</li>");
+                    html.append("</ul>");
+                    break;
+                case 1:
+                    html.append("<table><tbody>");
+                    for (int i = random.nextInt(4) + 2; i > 0; i--)
+                        html.append("<tr><td>").append(sentence(random, 3)).append("</td><td>")
+                            .append(random.nextInt(1000)).append(" mg</td></tr>");
+                    html.append("</tbody></table>");
+                    break;
+                default:
+                    html.append("<p>").append(sentence(random, 40)).append("</p>");
+            }
+        }
+        return html.toString();
+    }
+
+    private static String sentence(Random random, int maxWords) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = random.nextInt(maxWords) + 1; i > 0; i--) {
+            if (sentence.length() > 0)
+                sentence.append(' ');
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.append('.').toString();
+    }
+
+    private static void append(String report, int size, String storage, long storedBytes, long bytesPerRead,
+                               double millisPerRead) throws IOException {
+        File file = new File(report);
+        boolean header = !file.exists();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (header)
+                out.println("timestamp,java,content_bytes,storage,stored_bytes,bytes_per_read,ms_per_read");
+            out.printf(Locale.ROOT, "%s,%s,%d,%s,%d,%d,%.2f%n", Instant.now(), System.getProperty("java.version"), size, storage,
+                storedBytes, bytesPerRead, millisPerRead);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.config.ApplicationProperties;
+import org.liber.domain.repository.ReportRepository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the {@link ReportPartitionService}.
+ */
+public class ReportPartitionServiceTest {
+
+    private ReportRepository reportRepository;
+    private ApplicationProperties applicationProperties;
+    private ReportPartitionService reportPartitionService;
+
+    @BeforeEach
+    public void setup() {
+        reportRepository = mock(ReportRepository.class);
+        applicationProperties = new ApplicationProperties();
+        reportPartitionService = new ReportPartitionService(reportRepository, applicationProperties);
+    }
+
+    @Test
+    public void testMonthlyPartitionsCoverTheIntervalsAhead() {
+        assertThat(reportPartitionService.coveredUntil(LocalDate.of(2026, 10, 19))).isEqualTo(Instant.parse("2027-02-01T00:00:00Z"));
+        assertThat(reportPartitionService.coveredUntil(LocalDate.of(2026, 12, 31))).isEqualTo(Instant.parse("2027-04-01T00:00:00Z"));
+    }
+
+    @Test
+    public void testYearlyPartitionsCoverTheIntervalsAhead() {
+        applicationProperties.getReportPartitions().setInterval(ApplicationProperties.ReportPartitions.Interval.YEAR);
+        applicationProperties.getReportPartitions().setAhead(1);
+
+        assertThat(reportPartitionService.coveredUntil(LocalDate.of(2026, 10, 19))).isEqualTo(Instant.parse("2028-01-01T00:00:00Z"));
+
+        reportPartitionService.createPartitions();
+
+        verify(reportRepository).createPartitions(any(Instant.class), eq("year"));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.liber.config.ApplicationProperties;
+import org.liber.config.invalidation.InvalidationBus;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.domain.enums.ReportType;
+import org.liber.service.dto.PatientDTO;
+import org.liber.service.dto.ReportDTO;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the {@link ReportPdfService}.
+ */
+public class ReportPdfServiceTest {
+
+    private static final String KEY = "report-1-3";
+
+    @TempDir
+    public Path directory;
+
+    private ReportPdfCache reportPdfCache;
+
+    private ReportPdfService reportPdfService;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getReportPdf().setCacheDirectory(directory.toString());
+        applicationProperties.getReportPdf().setLatencyBudgetMillis(60000);
+        reportPdfCache = spy(new ReportPdfCache(applicationProperties, mock(InvalidationBus.class)));
+        ReportService reportService = mock(ReportService.class);
+        when(reportService.getVersion(1L)).thenReturn(3L);
+        when(reportService.getReportById(1L)).thenReturn(ReportDTO.builder()
+            .id(1L).version(3L).type(ReportType.PSYCHOLOGICAL).status(ReportStatus.PUBLISHED).title("Evolução")
+            .content("<p>Paciente sem intercorrências.</p>").patientId(2L).authorFirstName("Ana").authorLastName("Souza")
+            .createdDate(LocalDate.of(2022, 3, 1)).build());
+        PatientService patientService = mock(PatientService.class);
+        when(patientService.getPatientById(2L)).thenReturn(PatientDTO.builder().id(2L).name("João").build());
+        reportPdfService = new ReportPdfService(reportService, patientService, reportPdfCache, applicationProperties,
+            new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void destroy() {
+        reportPdfService.destroy();
+    }
+
+    @Test
+    public void testServedFileSurvivesEviction() throws IOException {
+        reportPdfService.renderReport(1L).getFile().get().close();
+
+        try (FileChannel file = reportPdfService.renderReport(1L).getFile().get()) {
+            reportPdfCache.evictAll();
+            assertThat(reportPdfCache.open(KEY)).isEmpty();
+            assertThat(read(file)).startsWith("%PDF");
+        }
+        verify(reportPdfCache, times(1)).store(eq(KEY), any());
+    }
+
+    @Test
+    public void testFileEvictedOnceRenderedIsRenderedAgain() throws IOException {
+        // not cached, then evicted before the request opens it
+        doReturn(Optional.empty()).doReturn(Optional.empty()).doCallRealMethod().when(reportPdfCache).open(KEY);
+
+        try (FileChannel file = reportPdfService.renderReport(1L).getFile().get()) {
+            assertThat(read(file)).startsWith("%PDF");
+        }
+        verify(reportPdfCache, times(2)).store(eq(KEY), any());
+    }
+
+    private static String read(FileChannel file) throws IOException {
+        return StreamUtils.copyToString(Channels.newInputStream(file), StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+package org.liber.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link BloomFilter}.
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testContainsEveryElementAdded() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++)
+            filter.add("login:user" + i);
+
+        for (int i = 0; i < 1000; i++)
+            assertThat(filter.mightContain("login:user" + i)).isTrue();
+    }
+
+    @Test
+    public void testFalsePositivesStayNearTheRate() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++)
+            filter.add("token:" + i);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++)
+            if (filter.mightContain("other:" + i))
+                falsePositives++;
+        assertThat(falsePositives).isLessThan(2000);
+    }
+
+    @Test
+    public void testEmptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(10, 0.01);
+
+        assertThat(filter.mightContain("")).isFalse();
+        assertThat(filter.mightContain("login:admin")).isFalse();
+    }
+}
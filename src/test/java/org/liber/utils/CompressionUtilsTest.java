@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link CompressionUtils}.
+ */
+public class CompressionUtilsTest {
+
+    @Test
+    public void testRoundTripWithEveryCodec() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            builder.append("<p>Evolução do paciente ").append(i).append(", sem intercorrências.</p>");
+        String text = builder.toString();
+
+        for (CompressionUtils.Codec codec : CompressionUtils.Codec.values()) {
+            byte[] compressed = CompressionUtils.compress(text, codec);
+            assertThat(compressed.length).isLessThan(text.length() / 4);
+            assertThat(CompressionUtils.decompress(compressed)).isEqualTo(text);
+        }
+    }
+
+    @Test
+    public void testEmptyText() {
+        for (CompressionUtils.Codec codec : CompressionUtils.Codec.values())
+            assertThat(CompressionUtils.decompress(CompressionUtils.compress("", codec))).isEmpty();
+    }
+}
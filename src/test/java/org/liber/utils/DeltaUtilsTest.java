@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link DeltaUtils}.
+ */
+public class DeltaUtilsTest {
+
+    @Test
+    public void testSmallEditOfLargeText() {
+        byte[] base = html(20000).getBytes(StandardCharsets.UTF_8);
+        String edited = new String(base, StandardCharsets.UTF_8).replace("<p>paragraph 1234 ", "<p>changed paragraph 1234 ");
+        byte[] target = edited.getBytes(StandardCharsets.UTF_8);
+
+        byte[] delta = DeltaUtils.diff(base, target);
+
+        assertThat(delta.length).isLessThan(100);
+        assertThat(DeltaUtils.patch(base, delta)).isEqualTo(target);
+    }
+
+    @Test
+    public void testUnrelatedTexts() {
+        Random random = new Random(42);
+        byte[] base = new byte[5000];
+        byte[] target = new byte[3000];
+        random.nextBytes(base);
+        random.nextBytes(target);
+
+        assertThat(DeltaUtils.patch(base, DeltaUtils.diff(base, target))).isEqualTo(target);
+    }
+
+    @Test
+    public void testEmptyAndShortTexts() {
+        byte[] empty = new byte[0];
+        byte[] text = "ação".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(DeltaUtils.patch(empty, DeltaUtils.diff(empty, text))).isEqualTo(text);
+        assertThat(DeltaUtils.patch(text, DeltaUtils.diff(text, empty))).isEqualTo(empty);
+        assertThat(DeltaUtils.patch(text, DeltaUtils.diff(text, text))).isEqualTo(text);
+    }
+
+    @Test
+    public void testMovedAndRepeatedBlocks() {
+        String base = html(500);
+        String target = base.substring(base.length() / 2) + base + base.substring(0, base.length() / 3);
+        byte[] baseBytes = base.getBytes(StandardCharsets.UTF_8);
+        byte[] targetBytes = target.getBytes(StandardCharsets.UTF_8);
+
+        byte[] delta = DeltaUtils.diff(baseBytes, targetBytes);
+
+        assertThat(delta.length).isLessThan(100);
+        assertThat(DeltaUtils.patch(baseBytes, delta)).isEqualTo(targetBytes);
+    }
+
+    @Test
+    public void testChainIntoBuffers() {
+        byte[] first = html(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] second = html(1100).getBytes(StandardCharsets.UTF_8);
+        byte[] third = html(900).getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = new byte[second.length];
+        byte[] spare = new byte[second.length];
+
+        int length = DeltaUtils.inflate(DeltaUtils.deflate(first), buffer);
+        length = DeltaUtils.patch(buffer, length, DeltaUtils.diff(first, second), spare);
+        assertThat(spare).isEqualTo(second);
+        length = DeltaUtils.patch(spare, length, DeltaUtils.diff(second, third), buffer);
+        assertThat(Arrays.copyOf(buffer, length)).isEqualTo(third);
+    }
+
+    @Test
+    public void testDeflateRoundTrip() {
+        byte[] data = html(1000).getBytes(StandardCharsets.UTF_8);
+
+        assertThat(DeltaUtils.inflate(DeltaUtils.deflate(data))).isEqualTo(data);
+        assertThat(DeltaUtils.inflate(DeltaUtils.deflate(data), new byte[data.length])).isEqualTo(data.length);
+        assertThatThrownBy(() -> DeltaUtils.inflate(DeltaUtils.deflate(data), new byte[data.length - 1])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String html(int paragraphs) {
+        StringBuilder builder = new StringBuilder("<html><body>");
+        for (int i = 0; i < paragraphs; i++)
+            builder.append("<p>paragraph ").append(i).append(" of the report, paciente estável</p>\n");
+        return builder.append("</body></html>").toString();
+    }
+}
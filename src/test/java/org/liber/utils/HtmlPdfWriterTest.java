@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link HtmlPdfWriter}.
+ */
+public class HtmlPdfWriterTest {
+
+    @Test
+    public void testTableCellTextSurvives() throws IOException {
+        HtmlPdfWriter pdf = new HtmlPdfWriter("João");
+        pdf.newPage();
+        pdf.paragraph("Prescrição", HtmlPdfWriter.Style.TITLE);
+        pdf.html("<p>Conduta:</p><table><thead><tr><th>Medicamento</th><th>Dose</th></tr></thead>"
+            + "<tbody><tr><td>Dipirona</td><td><b>500 mg</b> de 6/6h</td></tr></tbody></table>", SanitizeUtils.CONTENT);
+
+        try (PDDocument document = PDDocument.load(write(pdf))) {
+            String text = new PDFTextStripper().getText(document);
+            assertThat(text).contains("Prescrição", "Conduta:", "Medicamento", "Dose", "Dipirona", "500 mg de 6/6h");
+        }
+    }
+
+    @Test
+    public void testCharactersOutsideWinAnsiSurvive() throws IOException {
+        HtmlPdfWriter pdf = new HtmlPdfWriter("");
+        pdf.html("<p>Δ temperatura ≥ 38,5 °C</p>", SanitizeUtils.CONTENT);
+
+        try (PDDocument document = PDDocument.load(write(pdf))) {
+            assertThat(new PDFTextStripper().getText(document)).contains("Δ temperatura ≥ 38,5 °C");
+        }
+    }
+
+    @Test
+    public void testEachNewPageStartsAPage() throws IOException {
+        HtmlPdfWriter pdf = new HtmlPdfWriter("");
+        pdf.newPage();
+        pdf.paragraph("Evolução", HtmlPdfWriter.Style.TITLE);
+        pdf.newPage();
+        pdf.paragraph("Anamnese", HtmlPdfWriter.Style.TITLE);
+
+        try (PDDocument document = PDDocument.load(write(pdf))) {
+            assertThat(document.getNumberOfPages()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testLongTextBreaksIntoPages() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++)
+            text.append("paciente relata melhora ");
+        HtmlPdfWriter pdf = new HtmlPdfWriter("");
+        pdf.paragraph(text.toString(), HtmlPdfWriter.Style.BODY);
+
+        try (PDDocument document = PDDocument.load(write(pdf))) {
+            assertThat(document.getNumberOfPages()).isGreaterThan(1);
+        }
+    }
+
+    @Test
+    public void testOnlyDataImagesArePrinted() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            HtmlPdfWriter pdf = new HtmlPdfWriter("");
+            pdf.html("<p><img src=\"data:image/png;base64," + png() + "\" alt=\"curva\" /></p>"
+                + "<p><img src=\"http://localhost:" + server.getAddress().getPort() + "/raio-x.png\" alt=\"raio-x\" /></p>",
+                SanitizeUtils.CONTENT);
+
+            try (PDDocument document = PDDocument.load(write(pdf))) {
+                assertThat(new PDFTextStripper().getText(document)).contains("raio-x").doesNotContain("curva");
+                int images = 0;
+                for (COSName name : document.getPage(0).getResources().getXObjectNames())
+                    if (document.getPage(0).getResources().getXObject(name) instanceof PDImageXObject)
+                        images++;
+                assertThat(images).isEqualTo(1);
+            }
+            assertThat(requests).hasValue(0);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static byte[] write(HtmlPdfWriter pdf) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdf.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static String png() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", out);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PhoneticUtils}.
+ */
+public class PhoneticUtilsTest {
+
+    @Test
+    public void testSpellingsThatSoundAlike() {
+        assertThat(PhoneticUtils.encode("Luiz")).isEqualTo(PhoneticUtils.encode("Luís"));
+        assertThat(PhoneticUtils.encode("Thiago")).isEqualTo(PhoneticUtils.encode("Tiago"));
+        assertThat(PhoneticUtils.encode("Souza")).isEqualTo(PhoneticUtils.encode("Sousa"));
+        assertThat(PhoneticUtils.encode("Phelipe")).isEqualTo(PhoneticUtils.encode("Filipe"));
+        assertThat(PhoneticUtils.encode("Walter")).isEqualTo(PhoneticUtils.encode("Valter"));
+        assertThat(PhoneticUtils.encode("Jéssica")).isEqualTo(PhoneticUtils.encode("Gessika"));
+        assertThat(PhoneticUtils.encode("Christina")).isEqualTo(PhoneticUtils.encode("Cristina"));
+        assertThat(PhoneticUtils.encode("Gonçalves")).isEqualTo(PhoneticUtils.encode("Gonsalves"));
+        assertThat(PhoneticUtils.encode("Guilherme")).isEqualTo(PhoneticUtils.encode("Guilerme"));
+    }
+
+    @Test
+    public void testDifferentNames() {
+        assertThat(PhoneticUtils.encode("Guilherme")).isNotEqualTo(PhoneticUtils.encode("Jilherme"));
+        assertThat(PhoneticUtils.encode("Paulo")).isNotEqualTo(PhoneticUtils.encode("Pedro"));
+        assertThat(PhoneticUtils.encode("Ana")).isNotEqualTo(PhoneticUtils.encode("Maria"));
+    }
+
+    @Test
+    public void testWordsAndConnectives() {
+        assertThat(PhoneticUtils.words(" Maria  das Dores-Silva ")).containsExactly("maria", "dores", "silva");
+        assertThat(PhoneticUtils.encode("Maria da Silva")).isEqualTo(PhoneticUtils.encode("Maria Silva"));
+        assertThat(PhoneticUtils.encodeFirst("José dos Santos")).isEqualTo(PhoneticUtils.encode("Jose"));
+        assertThat(PhoneticUtils.encode(null)).isEmpty();
+        assertThat(PhoneticUtils.encodeFirst("123")).isEmpty();
+    }
+
+    @Test
+    public void testSimilarity() {
+        assertThat(PhoneticUtils.similarity("José da Silva", "JOSE SILVA")).isEqualTo(1);
+        assertThat(PhoneticUtils.similarity("Maria Aparecida Souza", "Maria Aparecida Sousa")).isGreaterThan(0.95);
+        assertThat(PhoneticUtils.similarity("Maria Aparecida Souza", "Pedro Henrique Lima")).isLessThan(0.6);
+        assertThat(PhoneticUtils.similarity("Maria", null)).isZero();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020 - 2022 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link VirtualThreadUtils}, on whichever JDK runs the build.
+ */
+public class VirtualThreadUtilsTest {
+
+    @Test
+    public void testSupportFollowsRuntime() {
+        boolean hasVirtualThreads;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            hasVirtualThreads = true;
+        } catch (NoSuchMethodException e) {
+            hasVirtualThreads = false;
+        }
+
+        assertThat(VirtualThreadUtils.isSupported()).isEqualTo(hasVirtualThreads);
+    }
+
+    @Test
+    public void testExecutorRunsOnNamedVirtualThreads() throws Exception {
+        if (!VirtualThreadUtils.isSupported()) {
+            assertThatThrownBy(() -> VirtualThreadUtils.executor("liber-test-")).isInstanceOf(IllegalStateException.class);
+            return;
+        }
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+
+        VirtualThreadUtils.executor("liber-test-").execute(() -> thread.complete(Thread.currentThread()));
+
+        Thread worker = thread.get(5, TimeUnit.SECONDS);
+        assertThat(worker.getName()).isEqualTo("liber-test-0");
+        assertThat(Thread.class.getMethod("isVirtual").invoke(worker)).isEqualTo(true);
+    }
+}
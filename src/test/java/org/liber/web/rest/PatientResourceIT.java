@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.LiberApp;
+import org.liber.domain.entities.*;
+import org.liber.domain.enums.Sex;
+import org.liber.security.AuthoritiesConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the {@link PatientResource} REST controller.
+ */
+@AutoConfigureMockMvc
+@WithMockUser(authorities = AuthoritiesConstants.SOCIAL_ASSISTANT)
+@SpringBootTest(classes = LiberApp.class)
+@Transactional
+public class PatientResourceIT {
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restPatientMockMvc;
+
+    private Patient patient;
+
+    /**
+     * Creates a patient, with the city, marital status, scholarity and profession it refers to.
+     *
+     * @param em the entity manager.
+     * @return the patient.
+     */
+    public static Patient createEntity(EntityManager em) {
+        Country country = new Country();
+        country.setId(990001L);
+        country.setName("Brasil");
+        em.persist(country);
+        State state = new State();
+        state.setId(990001L);
+        state.setName("Minas Gerais");
+        state.setAbbreviation("MG");
+        state.setCountry(country);
+        em.persist(state);
+        City city = new City();
+        city.setId(990001L);
+        city.setName("Belo Horizonte");
+        city.setState(state);
+        em.persist(city);
+        MaritalStatus maritalStatus = new MaritalStatus();
+        maritalStatus.setName("it marital status");
+        em.persist(maritalStatus);
+        Scholarity scholarity = new Scholarity();
+        scholarity.setName("it scholarity");
+        em.persist(scholarity);
+        Profession profession = new Profession();
+        profession.setName("it profession");
+        em.persist(profession);
+
+        Patient patient = new Patient();
+        patient.setName("João da Silva");
+        patient.setBirthDate(LocalDate.of(1980, 1, 1));
+        patient.setSex(Sex.MALE);
+        patient.setBirthPlace(city);
+        patient.setMotherName("Maria da Silva");
+        patient.setMaritalStatus(maritalStatus);
+        patient.setScholarity(scholarity);
+        patient.setProfession(profession);
+        patient.setWorking(true);
+        patient.setAddressCity(city);
+        em.persist(patient);
+        em.flush();
+        return patient;
+    }
+
+    @BeforeEach
+    public void initTest() {
+        patient = createEntity(em);
+    }
+
+    @Test
+    public void testGetPatientNotModified() throws Exception {
+        String eTag = restPatientMockMvc.perform(get("/api/patients/{id}", patient.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + patient.getVersion() + "\""))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restPatientMockMvc.perform(get("/api/patients/{id}", patient.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    public void testUpdatePatientWithETags() throws Exception {
+        MvcResult found = restPatientMockMvc.perform(get("/api/patients/{id}", patient.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+        String staleETag = found.getResponse().getHeader(HttpHeaders.ETAG);
+        String body = found.getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String eTag = restPatientMockMvc.perform(put("/api/patients")
+            .header(HttpHeaders.IF_MATCH, staleETag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).isNotEqualTo(staleETag);
+
+        // the ETag of the update is the current version
+        restPatientMockMvc.perform(get("/api/patients/{id}", patient.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+        restPatientMockMvc.perform(put("/api/patients")
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+            .andExpect(status().isOk());
+
+        restPatientMockMvc.perform(put("/api/patients")
+            .header(HttpHeaders.IF_MATCH, staleETag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.versionMismatch"));
+    }
+}
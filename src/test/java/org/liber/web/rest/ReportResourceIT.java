@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020 - 2021 Hudson Orsine Assumpção.
+ *
+ * This file is part of Liber Server.
+ *
+ * Liber Server is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * Liber Server is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Liber Server.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.liber.web.rest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.liber.LiberApp;
+import org.liber.domain.entities.Report;
+import org.liber.domain.enums.ReportStatus;
+import org.liber.domain.enums.ReportType;
+import org.liber.domain.repository.UserRepository;
+import org.liber.security.AuthoritiesConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for the {@link ReportResource} REST controller.
+ */
+@AutoConfigureMockMvc
+@WithMockUser(username = "admin", authorities = AuthoritiesConstants.PSYCHOLOGIST)
+@SpringBootTest(classes = LiberApp.class)
+@Transactional
+public class ReportResourceIT {
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MockMvc restReportMockMvc;
+
+    private Report report;
+
+    @BeforeEach
+    public void initTest() {
+        report = new Report();
+        report.setType(ReportType.PSYCHOLOGICAL);
+        report.setStatus(ReportStatus.DRAFT);
+        report.setTitle("Evolução");
+        report.setContent("<p>Paciente sem intercorrências.</p>");
+        report.setPatient(PatientResourceIT.createEntity(em));
+        report.setAuthor(userRepository.findOneByLogin("admin").get());
+        em.persist(report);
+        em.flush();
+    }
+
+    @Test
+    public void testGetReportNotModified() throws Exception {
+        String eTag = restReportMockMvc.perform(get("/api/reports/{id}", report.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + report.getVersion() + "\""))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restReportMockMvc.perform(get("/api/reports/{id}", report.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag))
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    public void testUpdateReportWithETags() throws Exception {
+        MvcResult found = restReportMockMvc.perform(get("/api/reports/{id}", report.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+        String staleETag = found.getResponse().getHeader(HttpHeaders.ETAG);
+        String body = found.getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String eTag = restReportMockMvc.perform(put("/api/reports")
+            .header(HttpHeaders.IF_MATCH, staleETag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body.replace("Evolução", "Evolução revisada")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.title").value("Evolução revisada"))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).isNotEqualTo(staleETag);
+
+        // the ETag of the update is the current version
+        restReportMockMvc.perform(get("/api/reports/{id}", report.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+        restReportMockMvc.perform(put("/api/reports")
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+            .andExpect(status().isOk());
+
+        restReportMockMvc.perform(put("/api/reports")
+            .header(HttpHeaders.IF_MATCH, staleETag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.versionMismatch"));
+    }
+}
@@ -28,6 +28,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
@@ -113,4 +114,38 @@ public class UserJWTControllerIT {
             .andExpect(jsonPath("$.id_token").doesNotExist())
             .andExpect(header().doesNotExist("Authorization"));
     }
+
+    @Test
+    public void testAuthorizeIsThrottledAfterTooManyFailures() throws Exception {
+        LoginVM login = new LoginVM();
+        login.setUsername("throttled-user");
+        login.setPassword("wrong password");
+        for (int i = 0; i < 5; i++)
+            mockMvc.perform(post("/api/authenticate")
+                .with(request -> remoteAddr(request, "192.0.2.10"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(login)))
+                .andExpect(status().isUnauthorized());
+
+        // five failures decay to one less than the limit of five after log2(5/4) half-lives of 300s
+        mockMvc.perform(post("/api/authenticate")
+            .with(request -> remoteAddr(request, "192.0.2.10"))
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "97"))
+            .andExpect(jsonPath("$.message").value("error.tooManyAttempts"));
+
+        login.setUsername("other-user");
+        mockMvc.perform(post("/api/authenticate")
+            .with(request -> remoteAddr(request, "192.0.2.10"))
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(status().isUnauthorized());
+    }
+
+    private static MockHttpServletRequest remoteAddr(MockHttpServletRequest request, String address) {
+        request.setRemoteAddr(address);
+        return request;
+    }
 }